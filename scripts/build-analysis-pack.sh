@@ -0,0 +1,15 @@
+#!/bin/sh
+# Precomputes the analysis tables (exact dealer outcome chances and
+# hit, stand and double EVs for 1-8 decks, S17/H17, peek/no-peek) into
+# build/analysis.pack. Processes map the pack read-only with
+# AnalysisPack.open, so every JVM on the host shares one copy; Main
+# does with --pack=build/analysis.pack.
+#
+# Print a table from the pack:
+#   java -cp build/classes AnalysisPack build/analysis.pack 6 S17
+set -e
+cd "$(dirname "$0")/.."
+
+mkdir -p build/classes
+javac -encoding UTF-8 -d build/classes src/*.java
+java -cp build/classes AnalysisPack build build/analysis.pack
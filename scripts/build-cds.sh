@@ -0,0 +1,21 @@
+#!/bin/sh
+# Builds build/Blackjack.jar from src, then an AppCDS archive of the
+# classes a short scripted game loads, so later launches map them in
+# instead of loading and verifying them again. The checked-in
+# Blackjack.jar is left alone.
+#
+# Run the game with the archive:
+#   java -XX:SharedArchiveFile=build/Blackjack.jsa -jar build/Blackjack.jar
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf build/classes
+mkdir -p build/classes
+javac -encoding UTF-8 -d build/classes src/*.java
+jar --create --file build/Blackjack.jar --main-class Main -C build/classes .
+
+# decks, hands, bankroll, simulate, then a round with a simulation
+printf '6\n1\n1000\ny\ndeal\nsimulate 1000\nstand\nexit\n' \
+    | java -XX:ArchiveClassesAtExit=build/Blackjack.jsa -jar build/Blackjack.jar > /dev/null
+
+echo "Wrote build/Blackjack.jar and build/Blackjack.jsa"
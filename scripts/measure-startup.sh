@@ -0,0 +1,29 @@
+#!/bin/sh
+# Measures startup and first-simulate latency with and without the
+# AppCDS archive and the background warm-up. Each case gets the same
+# pretend second at the prompts. Run scripts/build-cds.sh first.
+#
+# Usage: scripts/measure-startup.sh [runs] [iterations]
+set -e
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+ITERATIONS=${2:-10000}
+
+run() {
+    label=$1
+    shift
+    echo "== $label"
+    i=0
+    while [ "$i" -lt "$RUNS" ]; do
+        start=$(date +%s%N)
+        java "$@" -cp build/Blackjack.jar Warmup "$MODE" 1000 "$ITERATIONS" \
+            | tr '\n' ' '
+        echo "(wall $(( ($(date +%s%N) - start) / 1000000 )) ms)"
+        i=$((i + 1))
+    done
+}
+
+MODE=--no-warm-up run "cold" -Xshare:auto
+MODE=--no-warm-up run "AppCDS" -XX:SharedArchiveFile=build/Blackjack.jsa
+MODE=--warm-up run "warm-up" -Xshare:auto
+MODE=--warm-up run "AppCDS + warm-up" -XX:SharedArchiveFile=build/Blackjack.jsa
@@ -0,0 +1,190 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test for AdviceService. It starts the service on a free local
+ * port, and client threads post random positions from a fixed set
+ * for a while, singly or in batches. It reports sustained requests
+ * and positions per second, latency percentiles, and how many
+ * positions were computed, waited for or served from the cache.
+ *
+ * A fixed set small enough for the cache soon measures cache hits,
+ * so the positions computed per second are reported on their own.
+ * With 0 positions every request is a new position, with a shoe of
+ * its own, and the whole run measures computation.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class AdviceLoadTest {
+    private AdviceLoadTest()
+    {}
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 0 && args[0].equals("--help")) {
+            System.out.println("Usage: AdviceLoadTest [clients] [seconds] [positions] [batch size] [iterations] [chart]");
+            return;
+        }
+
+        int numOfClients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int numOfPositions = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 2_000;
+        String chart = args.length > 5 ? args[5] : "strategies/basic-s17-das.csv";
+
+        AdviceService service = new AdviceService(Strategy.load(Paths.get(chart)), Rules.STANDARD,
+                Runtime.getRuntime().availableProcessors());
+        service.start(0);
+
+        List<String> positions = positions(numOfPositions, iterations);
+        boolean isDistinct = numOfPositions == 0;
+        URI uri = URI.create("http://localhost:" + service.getPort()
+                + (batchSize > 1 ? "/advice/batch" : "/advice"));
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+
+        AtomicLong failures = new AtomicLong();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService clients = Executors.newFixedThreadPool(numOfClients);
+        List<Future<long[]>> latencies = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < numOfClients; i++) {
+            Rng rng = Rng.stream(1, i);
+            latencies.add(clients.submit(() -> {
+                long[] times = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    String body = batchSize > 1 ? batch(positions, batchSize, iterations, rng)
+                            : isDistinct ? distinct(iterations, rng)
+                            : positions.get(rng.nextInt(positions.size()));
+                    long sent = System.nanoTime();
+                    HttpResponse<String> response = client.send(
+                            HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    if (response.statusCode() != 200) failures.incrementAndGet();
+
+                    if (count == times.length) times = Arrays.copyOf(times, count * 2);
+                    times[count++] = System.nanoTime() - sent;
+                }
+                return Arrays.copyOf(times, count);
+            }));
+        }
+
+        long[] all = new long[0];
+        for (Future<long[]> future : latencies) {
+            long[] times = future.get();
+            int length = all.length;
+            all = Arrays.copyOf(all, length + times.length);
+            System.arraycopy(times, 0, all, length, times.length);
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        long computations = service.getComputations();
+        service.stop();
+
+        Arrays.sort(all);
+        System.out.printf("%d clients, %s, batches of %d, %d iterations per action%n", numOfClients,
+                isDistinct ? "distinct positions" : numOfPositions + " positions", batchSize, iterations);
+        System.out.printf("Requests: %d in %.1f s, %.0f/s (%.0f positions/s), %d failed%n",
+                all.length, elapsed, all.length / elapsed, all.length * batchSize / elapsed, failures.get());
+        System.out.printf("Computed: %d positions, %.0f/s (cache misses)%n",
+                computations, computations / elapsed);
+        if (all.length > 0) {
+            System.out.printf("Latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+        }
+        System.out.println("Service: " + service.getStats());
+        System.exit(0);
+    }
+
+    /**
+     * Makes random two-card positions that have a decision to make.
+     *
+     * @param  num         number of positions
+     * @param  iterations  iterations to ask for
+     * @return             request bodies
+     */
+    private static List<String> positions(int num, int iterations)
+    {
+        Rng rng = new Rng(42);
+        List<String> positions = new ArrayList<>();
+
+        while (positions.size() < num) {
+            positions.add(position(iterations, "\"decks\":6", rng));
+        }
+        return positions;
+    }
+
+    /**
+     * Makes a random two-card position with a decision to make, from
+     * a 6-deck shoe missing a random few cards of each rank, so it is
+     * all but never asked for twice.
+     *
+     * @param  iterations  iterations to ask for
+     * @param  rng         random number generator
+     * @return             request body
+     */
+    private static String distinct(int iterations, Rng rng)
+    {
+        StringBuilder shoe = new StringBuilder("\"shoe\":[");
+        for (int rank = 0; rank < 13; rank++) {
+            if (rank > 0) shoe.append(',');
+            shoe.append(24 - rng.nextInt(9));
+        }
+        return position(iterations, shoe.append(']').toString(), rng);
+    }
+
+    /**
+     * Makes a random two-card position with a decision to make.
+     *
+     * @param  iterations  iterations to ask for
+     * @param  shoe        JSON member describing the shoe
+     * @param  rng         random number generator
+     * @return             request body
+     */
+    private static String position(int iterations, String shoe, Rng rng)
+    {
+        int first;
+        int second;
+        do {
+            first = rng.nextInt(13);
+            second = rng.nextInt(13);
+        } while (HandState.score(HandState.next(HandState.next(HandState.EMPTY, first), second)) == 21);
+
+        return "{\"player\":[\"" + Card.RANKS[first] + "\",\"" + Card.RANKS[second]
+                + "\"],\"dealer\":\"" + Card.RANKS[rng.nextInt(13)]
+                + "\"," + shoe + ",\"iterations\":" + iterations + "}";
+    }
+
+    /**
+     * Makes a batch request of random positions.
+     *
+     * @param  positions   positions to pick from, or none for distinct ones
+     * @param  size        positions in the batch
+     * @param  iterations  iterations to ask for in distinct positions
+     * @param  rng         random number generator
+     * @return             request body
+     */
+    private static String batch(List<String> positions, int size, int iterations, Rng rng)
+    {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) body.append(',');
+            body.append(positions.isEmpty() ? distinct(iterations, rng)
+                    : positions.get(rng.nextInt(positions.size())));
+        }
+        return body.append(']').toString();
+    }
+}
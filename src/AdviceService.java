@@ -0,0 +1,533 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local HTTP service that answers "what should I do here, and what
+ * is each action worth?" for any position. A position is the player's
+ * cards, the dealer's upcard, and the shoe before they were dealt,
+ * as a number of decks or the count of each rank:
+ *
+ *   POST /advice        {"player": ["10", "6"], "dealer": "10", "decks": 6}
+ *   POST /advice/batch  [{...}, {...}]
+ *   GET  /stats
+ *
+ * Each legal action is taken on many deals of the dealer's hole card
+ * and the cards after it, and the rest of the round is played with a
+ * strategy chart. Every action sees the same cards, so the differences
+ * between their EVs are more precise than the EVs themselves.
+ *
+ * Requests for a position being computed wait for that computation
+ * instead of starting another, and finished positions are cached.
+ * Batches are computed in parallel.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class AdviceService {
+    private static final String[] ACTIONS = {"hit", "stand", "double", "split", "surrender"};
+    private static final int DEFAULT_ITERATIONS = 20_000;
+    private static final int MAX_ITERATIONS = 1_000_000;
+    private static final int MAX_BATCH = 1_000;
+    // Threads that read requests and wait for their answers
+    private static final int NUM_OF_REQUEST_THREADS = 64;
+
+    private final Strategy strategy;
+    private final Rules rules;
+    private final ExecutorService computePool;
+    // Positions being computed, which later requests wait for
+    private final Map<Position, CompletableFuture<Advice>> IN_FLIGHT = new ConcurrentHashMap<>();
+    private final BoundedCache<Position, Advice> cache = new BoundedCache<>(4096);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder computations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private HttpServer server;
+    private ExecutorService requestPool;
+
+    /**
+     * Position to advise on
+     *
+     * @param  playerRanks  rank indices of the player's cards
+     * @param  upcardRank   rank index of the dealer's upcard
+     * @param  rankCounts   cards of each rank in the shoe before the deal
+     * @param  iterations   deals to play for each action
+     */
+    public record Position(List<Integer> playerRanks, int upcardRank,
+                           List<Integer> rankCounts, int iterations)
+    {}
+
+    /**
+     * Advice for a position
+     *
+     * @param  evs             net units won per unit bet for each action,
+     *                         NaN if it isn't allowed
+     * @param  standardErrors  standard error of each EV
+     * @param  best            action with the highest EV
+     */
+    public record Advice(double[] evs, double[] standardErrors, int best)
+    {}
+
+    /**
+     * Constructor for a service
+     *
+     * @param  strategy        chart that plays the rest of each round
+     * @param  rules           table rules
+     * @param  computeThreads  threads that compute positions
+     */
+    public AdviceService(Strategy strategy, Rules rules, int computeThreads)
+    {
+        this.strategy = strategy;
+        this.rules = rules;
+        this.computePool = Executors.newFixedThreadPool(computeThreads);
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String chart = args.length > 1 ? args[1] : "strategies/basic-s17-das.csv";
+        Rules rules = args.length > 2 ? Rules.parse(args[2]) : Rules.STANDARD;
+
+        AdviceService service = new AdviceService(Strategy.load(Paths.get(chart)), rules,
+                Runtime.getRuntime().availableProcessors());
+        service.start(port);
+        System.out.println("Advice service on http://localhost:" + service.getPort()
+                + "/advice (" + rules + ")");
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the port the service listens on.
+     *
+     * @return port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of positions computed rather than served from
+     * the cache or another request's computation.
+     *
+     * @return positions computed
+     */
+    public long getComputations()
+    {
+        return computations.sum();
+    }
+
+    /**
+     * Gets the service's counters as JSON.
+     *
+     * @return requests, positions computed, requests that waited for
+     *         another's computation, and cache hits
+     */
+    public String getStats()
+    {
+        return "{\"requests\":" + requests.sum() + ",\"computations\":" + computations.sum()
+                + ",\"coalesced\":" + coalesced.sum() + ",\"cacheHits\":" + cacheHits.sum() + "}";
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Starts listening on the loopback address.
+     *
+     * @param  port         port, or 0 for any free port
+     * @throws IOException  if the port can't be bound
+     */
+    public void start(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        requestPool = Executors.newFixedThreadPool(NUM_OF_REQUEST_THREADS);
+        server.setExecutor(requestPool);
+
+        server.createContext("/advice", exchange -> handle(exchange, false));
+        server.createContext("/advice/batch", exchange -> handle(exchange, true));
+        server.createContext("/stats", exchange -> respond(exchange, 200, getStats()));
+        server.start();
+    }
+
+    /**
+     * Stops listening and shuts down the threads.
+     */
+    public void stop()
+    {
+        server.stop(0);
+        requestPool.shutdown();
+        computePool.shutdown();
+    }
+
+    /**
+     * Gets advice for a position. If it is being computed for another
+     * request, this waits for that computation.
+     *
+     * @param  position  position to advise on
+     * @return           advice, once it is computed
+     */
+    public CompletableFuture<Advice> advise(Position position)
+    {
+        Advice cached = cache.get(position);
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Advice> created = new CompletableFuture<>();
+        CompletableFuture<Advice> running = IN_FLIGHT.putIfAbsent(position, created);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        // It may have finished between the cache check and now
+        cached = cache.get(position);
+        if (cached != null) {
+            IN_FLIGHT.remove(position, created);
+            cacheHits.increment();
+            created.complete(cached);
+            return created;
+        }
+
+        computePool.execute(() -> {
+            try {
+                computations.increment();
+                Advice advice = compute(position);
+                // Cached before it leaves IN_FLIGHT, so no request misses both
+                cache.put(position, advice);
+                created.complete(advice);
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            } finally {
+                IN_FLIGHT.remove(position, created);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Answers one request for /advice or /advice/batch.
+     *
+     * @param  exchange  request and response
+     * @param  isBatch   whether the body is an array of positions
+     */
+    private void handle(HttpExchange exchange, boolean isBatch) throws IOException
+    {
+        requests.increment();
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, error("Use POST"));
+            return;
+        }
+
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            Object json = Json.parse(body);
+            StringBuilder response = new StringBuilder();
+
+            if (!isBatch) {
+                Position position = parsePosition(json);
+                appendAdvice(response, position, advise(position).join());
+            } else {
+                if (!(json instanceof List<?> items)) throw new IllegalArgumentException("Expected an array");
+                if (items.size() > MAX_BATCH) throw new IllegalArgumentException("At most " + MAX_BATCH + " positions");
+
+                // Every position starts before any is waited for. A bad
+                // position gets an error in its place instead of failing the batch.
+                List<Position> positions = new ArrayList<>();
+                List<CompletableFuture<Advice>> advice = new ArrayList<>();
+                for (Object item : items) {
+                    try {
+                        Position position = parsePosition(item);
+                        positions.add(position);
+                        advice.add(advise(position));
+                    } catch (IllegalArgumentException e) {
+                        positions.add(null);
+                        advice.add(CompletableFuture.failedFuture(e));
+                    }
+                }
+
+                response.append('[');
+                for (int i = 0; i < positions.size(); i++) {
+                    if (i > 0) response.append(',');
+                    try {
+                        appendAdvice(response, positions.get(i), advice.get(i).join());
+                    } catch (CompletionException e) {
+                        response.append(error(String.valueOf(e.getCause().getMessage())));
+                    }
+                }
+                response.append(']');
+            }
+
+            respond(exchange, 200, response.toString());
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (CompletionException e) {
+            int status = e.getCause() instanceof IllegalArgumentException ? 400 : 500;
+            respond(exchange, status, error(String.valueOf(e.getCause().getMessage())));
+        }
+    }
+
+    /**
+     * Plays every legal action on many deals of the position.
+     *
+     * @param  position  position to advise on
+     * @return           EV of each action
+     */
+    private Advice compute(Position position)
+    {
+        Blackjack base = new Blackjack(rules);
+        int[] rankCounts = position.rankCounts().stream().mapToInt(Integer::intValue).toArray();
+        base.setShoe(CompositionShoe.ofRanks(rankCounts));
+        int[] playerRanks = position.playerRanks().stream().mapToInt(Integer::intValue).toArray();
+
+        // The same seed for every action and for every request for the position
+        long seed = position.hashCode();
+        Blackjack probe = deal(base, playerRanks, position, new Rng(seed));
+        if (probe == null) throw new IllegalArgumentException("The dealer always has blackjack");
+        if (!probe.isRoundOngoing()) throw new IllegalArgumentException("The hand has no decision to make");
+
+        double[] evs = new double[ACTIONS.length];
+        double[] standardErrors = new double[ACTIONS.length];
+        int best = -1;
+        for (int action = 0; action < ACTIONS.length; action++) {
+            if (!isLegal(probe, action)) {
+                evs[action] = Double.NaN;
+                standardErrors[action] = Double.NaN;
+                continue;
+            }
+
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (int i = 0; i < position.iterations(); i++) {
+                // Deal i gets its own stream, so every action plays the same cards on it
+                Blackjack game = deal(base, playerRanks, position, Rng.stream(seed, i));
+                Strategy.act(game, action);
+                strategy.play(game);
+
+                double net = Strategy.netUnits(game);
+                sum += net;
+                sumOfSquares += net * net;
+            }
+
+            int n = position.iterations();
+            evs[action] = sum / n;
+            standardErrors[action] = Math.sqrt(Math.max(0, sumOfSquares / n - evs[action] * evs[action]) / n);
+            if (best < 0 || evs[action] > evs[best]) best = action;
+        }
+
+        return new Advice(evs, standardErrors, best);
+    }
+
+    /**
+     * Deals the position on a copy of a game. If the dealer peeks,
+     * deals with a dealer blackjack are dealt again, since the player
+     * never gets to act on them.
+     *
+     * @param  base         game whose shoe to deal from
+     * @param  playerRanks  rank indices of the player's cards
+     * @param  position     position being dealt
+     * @param  rng          random number generator for the cards
+     * @return              game at the player's decision, or null if no deal gets there
+     */
+    private Blackjack deal(Blackjack base, int[] playerRanks, Position position, Rng rng)
+    {
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            Blackjack game = new Blackjack(base);
+            game.setRng(rng);
+            game.deal(playerRanks, position.upcardRank());
+            if (game.isRoundOngoing() || !rules.dealerPeeks()
+                    || game.getDealerHand().getState() != HandState.BLACKJACK) {
+                return game;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a position from a request.
+     *
+     * @param  json  parsed request
+     * @return       position
+     */
+    private static Position parsePosition(Object json)
+    {
+        if (!(json instanceof Map<?, ?> request)) throw new IllegalArgumentException("Expected an object");
+
+        if (!(request.get("player") instanceof List<?> cards) || cards.size() < 2) {
+            throw new IllegalArgumentException("player must list at least 2 cards");
+        }
+        List<Integer> playerRanks = new ArrayList<>();
+        for (Object card : cards) {
+            playerRanks.add(parseRank(card));
+        }
+        int upcardRank = parseRank(request.get("dealer"));
+
+        List<Integer> rankCounts = new ArrayList<>();
+        if (request.get("shoe") instanceof List<?> counts) {
+            if (counts.size() != 13) throw new IllegalArgumentException("shoe must count each of the 13 ranks, 2 to A");
+            for (Object count : counts) {
+                rankCounts.add(parseWhole(count, "shoe counts", 0, Integer.MAX_VALUE));
+            }
+        } else {
+            int decks = parseWhole(request.containsKey("decks") ? request.get("decks") : 6.0,
+                    "decks", 1, 100_000);
+            for (int rank = 0; rank < 13; rank++) {
+                rankCounts.add(4 * decks);
+            }
+        }
+
+        // The position's cards must be in the shoe
+        int[] needed = new int[13];
+        for (int rank : playerRanks) needed[rank]++;
+        needed[upcardRank]++;
+        for (int rank = 0; rank < 13; rank++) {
+            if (needed[rank] > rankCounts.get(rank)) {
+                throw new IllegalArgumentException("The shoe doesn't hold the position's " + Card.RANKS[rank] + "s");
+            }
+        }
+
+        Object iterations = request.containsKey("iterations") ? request.get("iterations") : (double) DEFAULT_ITERATIONS;
+        return new Position(playerRanks, upcardRank, rankCounts,
+                parseWhole(iterations, "iterations", 1, MAX_ITERATIONS));
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Appends a position's advice as JSON.
+     *
+     * @param  out       where to append
+     * @param  position  position advised on
+     * @param  advice    its advice
+     */
+    private static void appendAdvice(StringBuilder out, Position position, Advice advice)
+    {
+        out.append("{\"player\":[");
+        for (int i = 0; i < position.playerRanks().size(); i++) {
+            if (i > 0) out.append(',');
+            Json.appendString(out, Card.RANKS[position.playerRanks().get(i)]);
+        }
+        out.append("],\"dealer\":");
+        Json.appendString(out, Card.RANKS[position.upcardRank()]);
+        out.append(",\"iterations\":").append(position.iterations());
+        out.append(",\"best\":\"").append(ACTIONS[advice.best()]).append("\",\"actions\":{");
+
+        boolean isFirst = true;
+        for (int action = 0; action < ACTIONS.length; action++) {
+            if (Double.isNaN(advice.evs()[action])) continue;
+            if (!isFirst) out.append(',');
+            isFirst = false;
+
+            out.append('"').append(ACTIONS[action]).append("\":{\"ev\":")
+                    .append(round(advice.evs()[action]))
+                    .append(",\"error\":").append(round(advice.standardErrors()[action]))
+                    .append('}');
+        }
+        out.append("}}");
+    }
+
+    /**
+     * Determines whether an action can be taken on the current hand.
+     *
+     * @param  game    game at a decision
+     * @param  action  index in ACTIONS
+     * @return         whether it is allowed
+     */
+    private static boolean isLegal(Blackjack game, int action)
+    {
+        return switch (action) {
+            case Strategy.DOUBLE -> game.canDoubleDown();
+            case Strategy.SPLIT -> game.canSplit();
+            case Strategy.SURRENDER -> game.canSurrender();
+            default -> true;
+        };
+    }
+
+    /**
+     * Reads a card's rank, such as "A", "10" or "K".
+     *
+     * @param  json  rank as a string or number
+     * @return       rank index
+     */
+    private static int parseRank(Object json)
+    {
+        String rank = json instanceof Double number && number == Math.rint(number)
+                ? String.valueOf(number.intValue()) : String.valueOf(json).toUpperCase();
+        if (rank.equals("1") || rank.equals("11")) rank = "A";
+        if (rank.equals("T")) rank = "10";
+
+        int index = Arrays.asList(Card.RANKS).indexOf(rank);
+        if (index < 0) throw new IllegalArgumentException("Not a card: " + json);
+        return index;
+    }
+
+    /**
+     * Reads a whole number in a range.
+     *
+     * @param  json  number
+     * @param  name  what it is, for the error
+     * @param  min   lowest allowed
+     * @param  max   highest allowed
+     * @return       the number
+     */
+    private static int parseWhole(Object json, String name, int min, int max)
+    {
+        if (!(json instanceof Double number) || number != Math.rint(number) || number < min || number > max) {
+            throw new IllegalArgumentException(name + " must be a whole number from " + min + " to " + max);
+        }
+        return number.intValue();
+    }
+
+    private static double round(double value)
+    {
+        return Math.round(value * 100_000) / 100_000.0;
+    }
+
+    private static String error(String message)
+    {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     *
+     * @param  exchange  request and response
+     * @param  status    HTTP status
+     * @param  body      JSON to send
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Precomputed analysis tables for the standard tables: 1-8 decks,
+ * dealer standing or hitting on soft 17, and peeking or not. These
+ * are the same on every run, so scripts/build-analysis-pack.sh
+ * computes them once into a pack file, and each process maps the
+ * file read-only. Every JVM on a host shares the one copy in the
+ * page cache, and a lookup is a read at a computed offset.
+ *
+ * For each table the pack holds the exact chance of each dealer
+ * outcome by upcard (DealerProbabilities, conditioned on no dealer
+ * blackjack when the dealer peeks) and the EV of hitting, standing
+ * and doubling for every hand state against every upcard. The EVs
+ * play on optimally by hitting or standing, and draw the player's
+ * cards from the full shoe less the upcard.
+ *
+ * Layout, little-endian: a header of MAGIC, VERSION and the table
+ * dimensions, then one block per table. A block is the dealer
+ * outcomes [upcard][outcome] followed by the EVs [state][upcard][action],
+ * all doubles, NaN for states a player can't stand on.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class AnalysisPack {
+    public static final int MAGIC = 0x424A4150;
+    public static final int VERSION = 1;
+    public static final int MAX_DECKS = 8;
+    // Actions in the pack: Strategy.HIT, STAND and DOUBLE
+    public static final int NUM_OF_ACTIONS = 3;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int NUM_OF_COLUMNS = DealerProbabilities.NUM_OF_COLUMNS;
+    private static final int NUM_OF_OUTCOMES = DealerProbabilities.NUM_OF_OUTCOMES;
+    private static final int DEALER_BYTES = 8 * NUM_OF_COLUMNS * NUM_OF_OUTCOMES;
+    private static final int TABLE_BYTES =
+            DEALER_BYTES + 8 * HandState.NUM_OF_STATES * NUM_OF_COLUMNS * NUM_OF_ACTIONS;
+    // Decks, soft 17 rule and peek rule
+    private static final int NUM_OF_TABLES = MAX_DECKS * 2 * 2;
+
+    private final MappedByteBuffer pack;
+
+    /**
+     * Constructor for a loaded pack
+     *
+     * @param  pack  mapping of the whole file, checked already
+     */
+    private AnalysisPack(MappedByteBuffer pack)
+    {
+        this.pack = pack;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 2 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            build(Paths.get(args[1]));
+            System.out.printf("Wrote %s (%d bytes) in %d ms%n", args[1],
+                    HEADER_BYTES + (long) NUM_OF_TABLES * TABLE_BYTES, (System.nanoTime() - start) / 1_000_000);
+            return;
+        } else if (args.length == 0) {
+            System.out.println("Usage: AnalysisPack build (file)");
+            System.out.println("       AnalysisPack (file) [decks] [rules]");
+            return;
+        }
+
+        AnalysisPack pack = open(Paths.get(args[0]));
+        int numOfDecks = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        Rules rules = args.length > 2 ? Rules.parse(args[2]) : Rules.STANDARD;
+        String[] upcards = {"2", "3", "4", "5", "6", "7", "8", "9", "10", "A"};
+        String[] outcomes = {"17", "18", "19", "20", "21", "BJ", "bust"};
+
+        System.out.println(numOfDecks + " decks, " + rules);
+        System.out.print("\nDealer");
+        for (String outcome : outcomes) System.out.printf("%8s", outcome);
+        System.out.println();
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            System.out.printf("%6s", upcards[column]);
+            for (int outcome = 0; outcome < NUM_OF_OUTCOMES; outcome++) {
+                System.out.printf("%8.4f", pack.dealerProbability(numOfDecks, rules, column, outcome));
+            }
+            System.out.println();
+        }
+
+        // Best action by the pack's EVs, for checking against a chart
+        System.out.print("\nHand ");
+        for (String upcard : upcards) System.out.printf("%3s", upcard);
+        System.out.println();
+        for (int total = 5; total <= 21; total++) printBestActions(pack, numOfDecks, rules, "H" + total,
+                HandState.HARD + total);
+        for (int total = 13; total <= 21; total++) printBestActions(pack, numOfDecks, rules, "S" + total,
+                HandState.SOFT + total - 12);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the chance the dealer's hand ends a certain way. When the
+     * dealer peeks, this is after the peek, so there is no blackjack.
+     *
+     * @param  numOfDecks    decks in the shoe (1-8)
+     * @param  rules         table rules; only the soft 17 and peek rules matter
+     * @param  upcardColumn  column of the upcard, as in Strategy.upcardColumn
+     * @param  outcome       0-4 for 17-21, DealerProbabilities.BLACKJACK or BUST
+     * @return               probability of the outcome
+     */
+    public double dealerProbability(int numOfDecks, Rules rules, int upcardColumn, int outcome)
+    {
+        return pack.getDouble(tableOffset(numOfDecks, rules)
+                + 8 * (upcardColumn * NUM_OF_OUTCOMES + outcome));
+    }
+
+    /**
+     * Gets the EV of an action on a hand, in units of its bet.
+     *
+     * @param  numOfDecks    decks in the shoe (1-8)
+     * @param  rules         table rules; only the soft 17 and peek rules matter
+     * @param  state         HandState of the hand
+     * @param  upcardColumn  column of the upcard, as in Strategy.upcardColumn
+     * @param  action        Strategy.HIT, STAND or DOUBLE
+     * @return               EV, or NaN for a state that isn't a hand to play
+     */
+    public double ev(int numOfDecks, Rules rules, int state, int upcardColumn, int action)
+    {
+        return pack.getDouble(tableOffset(numOfDecks, rules) + DEALER_BYTES
+                + 8 * ((state * NUM_OF_COLUMNS + upcardColumn) * NUM_OF_ACTIONS + action));
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Maps a pack read-only and checks its header and size.
+     *
+     * @param  file         pack written by build
+     * @return              the pack
+     * @throws IOException  if it can't be read or isn't this version's pack
+     */
+    public static AnalysisPack open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            if (size != HEADER_BYTES + (long) NUM_OF_TABLES * TABLE_BYTES) {
+                throw new IOException("Not an analysis pack of this version: " + file);
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer pack = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            pack.order(ByteOrder.LITTLE_ENDIAN);
+            if (pack.getInt(0) != MAGIC || pack.getInt(4) != VERSION || pack.getInt(8) != MAX_DECKS
+                    || pack.getInt(12) != NUM_OF_COLUMNS || pack.getInt(16) != NUM_OF_OUTCOMES
+                    || pack.getInt(20) != HandState.NUM_OF_STATES || pack.getInt(24) != NUM_OF_ACTIONS) {
+                throw new IOException("Not an analysis pack of this version: " + file);
+            }
+            return new AnalysisPack(pack);
+        }
+    }
+
+    /**
+     * Computes every table and writes the pack. It is written to a
+     * temporary file first and moved into place, so a process never
+     * maps a half-written pack.
+     *
+     * @param  file         where to write
+     * @throws IOException  if writing fails
+     */
+    public static void build(Path file) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + NUM_OF_TABLES * TABLE_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(MAX_DECKS).putInt(NUM_OF_COLUMNS)
+                .putInt(NUM_OF_OUTCOMES).putInt(HandState.NUM_OF_STATES).putInt(NUM_OF_ACTIONS);
+
+        for (int numOfDecks = 1; numOfDecks <= MAX_DECKS; numOfDecks++) {
+            for (boolean hitsSoft17 : new boolean[] {false, true}) {
+                Rules rules = Rules.STANDARD.withDealerHitsSoft17(hitsSoft17);
+
+                // The dealer's chances don't depend on peeking, only what is known of them
+                double[][] outcomes = new double[NUM_OF_COLUMNS][];
+                for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+                    int[] counts = DealerProbabilities.fullShoe(numOfDecks);
+                    counts[column]--;
+                    outcomes[column] = DealerProbabilities.compute(counts, column,
+                            rules.dealerSoftStandScore());
+                }
+
+                for (boolean peeks : new boolean[] {true, false}) {
+                    buffer.position(tableOffset(numOfDecks, rules.withDealerPeeks(peeks)));
+                    writeTable(buffer, numOfDecks, outcomes, peeks);
+                }
+            }
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, "analysis", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes one table's block at the buffer's position.
+     *
+     * @param  buffer      where to write
+     * @param  numOfDecks  decks in the shoe
+     * @param  outcomes    dealer outcome chances by upcard, before any peek
+     * @param  peeks       whether the dealer peeks
+     */
+    private static void writeTable(ByteBuffer buffer, int numOfDecks, double[][] outcomes, boolean peeks)
+    {
+        double[][] known = new double[NUM_OF_COLUMNS][];
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            boolean canHaveBlackjack = column >= 8;
+            known[column] = peeks && canHaveBlackjack
+                    ? DealerProbabilities.withoutBlackjack(outcomes[column]) : outcomes[column];
+            for (double probability : known[column]) buffer.putDouble(probability);
+        }
+
+        double[][][] evs = new double[HandState.NUM_OF_STATES][NUM_OF_COLUMNS][];
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            int[] counts = DealerProbabilities.fullShoe(numOfDecks);
+            counts[column]--;
+            PlayerEvs player = new PlayerEvs(counts, known[column]);
+
+            for (int state = 0; state < HandState.NUM_OF_STATES; state++) {
+                evs[state][column] = player.evs(state);
+            }
+        }
+
+        for (int state = 0; state < HandState.NUM_OF_STATES; state++) {
+            for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+                for (double ev : evs[state][column]) buffer.putDouble(ev);
+            }
+        }
+    }
+
+    /**
+     * Gets where a table's block starts.
+     *
+     * @param  numOfDecks  decks in the shoe (1-8)
+     * @param  rules       table rules
+     * @return             byte offset in the pack
+     */
+    private static int tableOffset(int numOfDecks, Rules rules)
+    {
+        if (numOfDecks < 1 || numOfDecks > MAX_DECKS) {
+            throw new IllegalArgumentException("The pack covers 1 to " + MAX_DECKS + " decks");
+        }
+
+        int table = ((numOfDecks - 1) * 2 + (rules.dealerHitsSoft17() ? 1 : 0)) * 2
+                + (rules.dealerPeeks() ? 0 : 1);
+        return HEADER_BYTES + table * TABLE_BYTES;
+    }
+
+    /**
+     * Prints the best action for a hand against every upcard.
+     *
+     * @param  pack        pack to read
+     * @param  numOfDecks  decks in the shoe
+     * @param  rules       table rules
+     * @param  label       row label
+     * @param  state       HandState of the hand
+     */
+    private static void printBestActions(AnalysisPack pack, int numOfDecks, Rules rules, String label, int state)
+    {
+        System.out.printf("%-5s", label);
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            double hit = pack.ev(numOfDecks, rules, state, column, Strategy.HIT);
+            double stand = pack.ev(numOfDecks, rules, state, column, Strategy.STAND);
+            double doubleDown = pack.ev(numOfDecks, rules, state, column, Strategy.DOUBLE);
+
+            String best = doubleDown > Math.max(hit, stand) ? "D" : hit > stand ? "H" : "S";
+            System.out.printf("%3s", best);
+        }
+        System.out.println();
+    }
+
+    /**
+     * EVs of a player's hands against one upcard, with the player's
+     * cards drawn from a fixed shoe
+     */
+    private static class PlayerEvs {
+        private final double[] drawChances = new double[NUM_OF_COLUMNS];
+        private final double[] dealer;
+        // EV of hitting then playing on, NaN until computed
+        private final double[] hitEvs = new double[HandState.NUM_OF_STATES];
+
+        PlayerEvs(int[] counts, double[] dealer)
+        {
+            int remaining = 0;
+            for (int count : counts) remaining += count;
+            for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+                drawChances[column] = (double) counts[column] / remaining;
+            }
+            this.dealer = dealer;
+            Arrays.fill(hitEvs, Double.NaN);
+        }
+
+        /**
+         * Gets the EVs of hitting, standing and doubling a hand, in
+         * the order of Strategy.HIT, STAND and DOUBLE.
+         *
+         * @param  state  HandState of the hand
+         * @return        EVs, NaN if the state isn't a hand to play
+         */
+        double[] evs(int state)
+        {
+            double[] evs = new double[NUM_OF_ACTIONS];
+            if (state < HandState.PAIR || state == HandState.BLACKJACK || state == HandState.BUST
+                    || HandState.score(state) < 4) {
+                Arrays.fill(evs, Double.NaN);
+                return evs;
+            }
+
+            double doubled = 0;
+            for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+                doubled += drawChances[column] * stand(HandState.next(state, DealerProbabilities.rankOf(column)));
+            }
+
+            evs[Strategy.HIT] = hit(state);
+            evs[Strategy.STAND] = stand(state);
+            evs[Strategy.DOUBLE] = 2 * doubled;
+            return evs;
+        }
+
+        /**
+         * Gets the EV of standing, which a bust hand has already lost.
+         *
+         * @param  state  HandState of the hand
+         * @return        EV of standing
+         */
+        double stand(int state)
+        {
+            if (state == HandState.BUST) return -1;
+
+            int score = HandState.score(state);
+            double ev = dealer[DealerProbabilities.BUST] - dealer[DealerProbabilities.BLACKJACK];
+            for (int outcome = 0; outcome <= 4; outcome++) {
+                int dealerScore = 17 + outcome;
+                if (score > dealerScore) {
+                    ev += dealer[outcome];
+                } else if (score < dealerScore) {
+                    ev -= dealer[outcome];
+                }
+            }
+            return ev;
+        }
+
+        /**
+         * Gets the EV of hitting, then hitting or standing, whichever
+         * is better, after each card.
+         *
+         * @param  state  HandState of the hand, not bust
+         * @return        EV of hitting
+         */
+        double hit(int state)
+        {
+            if (!Double.isNaN(hitEvs[state])) return hitEvs[state];
+
+            double ev = 0;
+            for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+                int next = HandState.next(state, DealerProbabilities.rankOf(column));
+                ev += drawChances[column] * (next == HandState.BUST ? -1 : Math.max(stand(next), hit(next)));
+            }
+            hitEvs[state] = ev;
+            return ev;
+        }
+    }
+}
@@ -1,16 +1,35 @@
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Keeps track of the player's bets and bankroll.
- * Blackjack pays 3 to 2
+ * Blackjack pays 3 to 2 unless the table's rules say otherwise
+ *
+ * Money is kept as a whole number of minor units (cents), so long
+ * sessions don't drift from rounding. Payouts that come to a fraction
+ * of a cent are rounded down, as a casino pays them. Each round is
+ * settled in one call, which updates the session's statistics.
  *
  * @author Daniel Kim
  * @version 3-25-22
  */
 public class Bankroll {
-    private double funds;
-    private double currentBet = 1;
+    /**
+     * Minor units (cents) in a dollar
+     */
+    public static final int MINOR_UNITS = 100;
+
+    private long funds;
+    private long currentBet = MINOR_UNITS;
+    private double blackjackPayout = 1.5;
+    // Amount of each side bet placed on every hand, in minor units
+    private final Map<SideBet, Long> SIDE_BETS = new EnumMap<>(SideBet.class);
+    // Funds before the round in play was paid for
+    private long fundsBeforeRound;
+    private SessionStats stats = new SessionStats(0);
 
     /**
      * Empty constructor
@@ -28,10 +47,30 @@ public class Bankroll {
      * @return current balance
      */
     public double getFunds()
+    {
+        return toDollars(funds);
+    }
+
+    /**
+     * Gets the current balance in minor units
+     *
+     * @return current balance in cents
+     */
+    public long getFundsInMinorUnits()
     {
         return funds;
     }
 
+    /**
+     * Gets the statistics of the rounds settled since the funds were set
+     *
+     * @return session statistics
+     */
+    public SessionStats getStats()
+    {
+        return stats;
+    }
+
     /**
      * Gets the current balance as a formatted String
      *
@@ -39,7 +78,7 @@ public class Bankroll {
      */
     public String toString()
     {
-        return formatMoney(funds);
+        return formatMoney(toDollars(funds));
     }
 
     /**
@@ -49,7 +88,17 @@ public class Bankroll {
      */
     public double getCurrentBet()
     {
-        return currentBet;
+        return toDollars(currentBet);
+    }
+
+    /**
+     * Gets the profit per unit bet on a blackjack
+     *
+     * @return blackjack payout, 1.5 for 3:2
+     */
+    public double getBlackjackPayout()
+    {
+        return blackjackPayout;
     }
 
     /**
@@ -63,41 +112,138 @@ public class Bankroll {
         return numOfHands * currentBet <= funds;
     }
 
+    /**
+     * Gets the amount of a side bet placed on each hand.
+     *
+     * @param  sideBet  side bet
+     * @return          amount, 0 if not placed
+     */
+    public double getSideBet(SideBet sideBet)
+    {
+        return toDollars(SIDE_BETS.getOrDefault(sideBet, 0L));
+    }
+
+    /**
+     * Gets the total of the side bets placed on each hand.
+     *
+     * @return total side bets per hand
+     */
+    public double getSideBetTotal()
+    {
+        return toDollars(sideBetTotal());
+    }
+
+    /**
+     * Determines whether the player can pay insurance, half the bet,
+     * on every hand.
+     *
+     * @param  numOfHands  number of hands to insure
+     * @return             whether player has sufficient funds
+     */
+    public boolean canPayInsurance(int numOfHands)
+    {
+        return numOfHands * roundDown(0.5 * currentBet) <= funds;
+    }
+
+    /**
+     * Determines whether the player can pay the bet and side bets
+     * of a new round.
+     *
+     * @param  numOfHands  number of hands to duplicate bets on
+     * @return             whether player has sufficient funds
+     */
+    public boolean canPayRound(int numOfHands)
+    {
+        return numOfHands * (currentBet + sideBetTotal()) <= funds;
+    }
+
+    /**
+     * Gets the total of the side bets placed on each hand.
+     *
+     * @return total in minor units
+     */
+    private long sideBetTotal()
+    {
+        long total = 0;
+        for (long amount : SIDE_BETS.values()) total += amount;
+        return total;
+    }
+
     /*
      * Mutators
      */
 
     /**
-     * Sets the player's bankroll
+     * Sets the player's bankroll and starts a new session of statistics
      *
      * @param  amount  available funds
      */
     public void setFunds(double amount)
     {
-        this.funds = amount;
+        this.funds = toMinorUnits(amount);
+        this.fundsBeforeRound = funds;
+        this.stats = new SessionStats(funds);
     }
 
     /**
      * Gives funds to player if they have won/tied.
      *
-     * @param  winType        1 = normal win, 2 = blackjack, 3 = tie
+     * @param  winType        1 = normal win, 2 = blackjack, 3 = tie,
+     *                        4 = surrendered
      * @param  betMultiplier  how much of the original bet this hand is worth
      */
     public void receiveBet(int winType, double betMultiplier)
     {
-        double betChange = betMultiplier * currentBet;
+        funds += payout(winType, betMultiplier);
+    }
 
-        switch (winType) {
-            case 1 ->
-                    // Profit is original bet, also returns original bet
-                    funds += 2 * betChange;
-            case 2 ->
-                    // Blackjack pays 3:2, also returns original bet
-                    funds += 2.5 * betChange;
-            case 3 ->
-                    // Tied, so bet is returned
-                    funds += betChange;
+    /**
+     * Pays out every hand of a finished round at once and adds the
+     * round to the statistics. The round's net includes its side bets.
+     *
+     * @param  hands       the player's hands
+     * @param  dealerHand  the dealer's hand
+     * @return             net result of the round, in dollars
+     */
+    public double settleRound(List<Hand> hands, Hand dealerHand)
+    {
+        long total = 0;
+        for (Hand hand : hands) {
+            total += payout(hand.determineHandResult(dealerHand), hand.getBetMultiplier());
+            // Insurance was paid when taken, so a win returns it with 2 to 1
+            if (dealerHand.isBlackjack()) total += 3 * roundDown(hand.getInsurance() * currentBet);
         }
+        funds += total;
+
+        long net = funds - fundsBeforeRound;
+        stats.record(net, funds);
+        fundsBeforeRound = funds;
+        return toDollars(net);
+    }
+
+    /**
+     * Determines how much a hand returns, including its bet.
+     *
+     * @param  winType        0 = loss, 1 = normal win, 2 = blackjack,
+     *                        3 = tie, 4 = surrendered
+     * @param  betMultiplier  how much of the original bet this hand is worth
+     * @return                amount returned, in minor units
+     */
+    private long payout(int winType, double betMultiplier)
+    {
+        double betChange = betMultiplier * currentBet;
+
+        return switch (winType) {
+            // Profit is original bet, also returns original bet
+            case 1 -> Math.round(2 * betChange);
+            // Blackjack pays 3:2 or 6:5, also returns original bet
+            case 2 -> roundDown((1 + blackjackPayout) * betChange);
+            // Tied, so bet is returned
+            case 3 -> Math.round(betChange);
+            // Surrendered, so half of the bet is returned
+            case 4 -> roundDown(0.5 * betChange);
+            default -> 0;
+        };
     }
 
     /**
@@ -107,7 +253,71 @@ public class Bankroll {
      */
     public void setBet(double bet)
     {
-        currentBet = bet;
+        currentBet = toMinorUnits(bet);
+    }
+
+    /**
+     * Sets the profit per unit bet on a blackjack, from the
+     * table's rules.
+     *
+     * @param  payout  blackjack payout, 1.5 for 3:2 and 1.2 for 6:5
+     */
+    public void setBlackjackPayout(double payout)
+    {
+        blackjackPayout = payout;
+    }
+
+    /**
+     * Places a side bet on every hand of the following rounds.
+     *
+     * @param  sideBet  side bet
+     * @param  amount   amount per hand, 0 to stop betting it
+     */
+    public void setSideBet(SideBet sideBet, double amount)
+    {
+        if (toMinorUnits(amount) > 0) {
+            SIDE_BETS.put(sideBet, toMinorUnits(amount));
+        } else {
+            SIDE_BETS.remove(sideBet);
+        }
+    }
+
+    /**
+     * Pays the bets and side bets of a new round.
+     *
+     * @param  numOfHands  number of hands to duplicate bets on
+     */
+    public void payRound(int numOfHands)
+    {
+        fundsBeforeRound = funds;
+        funds -= numOfHands * (currentBet + sideBetTotal());
+    }
+
+    /**
+     * Gives funds to the player for a side bet's outcome.
+     *
+     * @param  sideBet  side bet
+     * @param  outcome  outcome from SideBet.outcome, -1 if lost
+     * @return          profit, negative if the side bet lost
+     */
+    public double receiveSideBet(SideBet sideBet, int outcome)
+    {
+        long amount = SIDE_BETS.getOrDefault(sideBet, 0L);
+        long profit = outcome < 0 ? -amount : roundDown(amount * sideBet.getPayout(outcome));
+
+        // The bet was paid up front, so a win returns it with the profit
+        if (outcome >= 0) funds += amount + profit;
+        return toDollars(profit);
+    }
+
+    /**
+     * Pays insurance, half the bet, on every hand.
+     *
+     * @param  numOfHands  number of hands insured
+     */
+    public void payInsurance(int numOfHands)
+    {
+        funds -= numOfHands * roundDown(0.5 * currentBet);
     }
 
     /**
@@ -132,6 +342,60 @@ public class Bankroll {
      * Static methods
      */
 
+    /**
+     * Determines how many bets a hand won or lost, net of the bet.
+     *
+     * @param  winType          0 = loss, 1 = normal win, 2 = blackjack,
+     *                          3 = tie, 4 = surrendered
+     * @param  betMultiplier    how much of the original bet this hand is worth
+     * @param  blackjackPayout  profit per unit bet on a blackjack
+     * @return                  net change in units of the original bet
+     */
+    public static double netUnits(int winType, double betMultiplier, double blackjackPayout)
+    {
+        return switch (winType) {
+            case 1 -> betMultiplier;
+            case 2 -> blackjackPayout * betMultiplier;
+            case 3 -> 0;
+            case 4 -> -0.5 * betMultiplier;
+            default -> -betMultiplier;
+        };
+    }
+
+    /**
+     * Converts dollars to the nearest minor unit.
+     *
+     * @param  amount  dollars
+     * @return         cents
+     */
+    public static long toMinorUnits(double amount)
+    {
+        return Math.round(amount * MINOR_UNITS);
+    }
+
+    /**
+     * Converts minor units to dollars.
+     *
+     * @param  amount  cents
+     * @return         dollars
+     */
+    public static double toDollars(long amount)
+    {
+        return (double) amount / MINOR_UNITS;
+    }
+
+    /**
+     * Rounds an amount in minor units down to a whole one, allowing
+     * for floating point error in products like 1.5 * 3.
+     *
+     * @param  amount  minor units, possibly fractional
+     * @return         whole minor units
+     */
+    private static long roundDown(double amount)
+    {
+        return (long) Math.floor(amount + 1e-9);
+    }
+
     /**
      * Turns a double into a readable String currency value.
      *
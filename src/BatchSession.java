@@ -0,0 +1,364 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Plays commands from a script without prompts or colors, for
+ * running many sessions from other programs. It takes the same
+ * commands as Main (deal, insurance, even-money, no-insurance, hit,
+ * stand, double, split, surrender, simulate, set-bet, set-hands,
+ * set-decks, side-bet, side-bets, stats, kelly and exit) one per line,
+ * ignoring blank lines and lines starting with #.
+ *
+ * Output is one line per event, as space separated key=value pairs:
+ *
+ *   round=1 dealer=KS,7H:17 hands=10C,9D:19:win:1.00 net=10.00 balance=1010.00
+ *   offer=insurance blackjack=0.30769 ev=-0.03846
+ *   simulate=1000 better=... worse=... blackjack=... won=... tied=... lost=...
+ *   side-bet=pp win=0.06862 ev=-0.04250
+ *   stats=120 net=-35.00 mean=-0.29 sd=11.52 drawdown=80.00 streak=6
+ *   error=... line=12
+ *
+ * A hand is its cards, score, result (win, lose, blackjack, push or
+ * surrender) and bet multiplier, and hands are separated by ";".
+ * Rounds with side bets end with side=, each side bet's code, outcome
+ * and profit for each hand, separated by ";". An offer of insurance
+ * (or even money) gives the chance of a dealer blackjack and the EV
+ * of taking it, and must be answered before the hands are played.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class BatchSession {
+    private static final String[] RESULTS = {"lose", "win", "blackjack", "push", "surrender"};
+
+    private final Blackjack game;
+    private final Bankroll bankroll;
+    private final PrintWriter out;
+    private long numOfRounds = 0;
+    // Sizes each bet from the shoe when set
+    private KellySizer kellySizer;
+    // Side bet results of the round in play, printed when it ends
+    private final StringBuilder sideResults = new StringBuilder();
+
+    /**
+     * Constructor for a session
+     *
+     * @param  game      game to play
+     * @param  bankroll  bankroll to bet from
+     * @param  out       where to write results
+     */
+    public BatchSession(Blackjack game, Bankroll bankroll, PrintWriter out)
+    {
+        this.game = game;
+        this.bankroll = bankroll;
+        this.out = out;
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Runs every command until the input ends or says exit.
+     *
+     * @param  in           commands, one per line
+     * @throws IOException  if reading fails
+     */
+    public void run(BufferedReader in) throws IOException
+    {
+        int lineNumber = 0;
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            // Splitting on a single character skips the regex engine
+            String error = execute(line.split(" "));
+            if (error == null) break;
+            if (!error.isEmpty()) {
+                out.println("error=" + error.replace(' ', '_') + " line=" + lineNumber);
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Runs one command.
+     *
+     * @param  command  command and its argument
+     * @return          "" if it worked, an error, or null to exit
+     */
+    private String execute(String[] command)
+    {
+        switch (command[0]) {
+            case "exit":
+                return null;
+            case "deal":
+                if (game.isRoundOngoing()) return "round in progress";
+                if (kellySizer != null) {
+                    double kellyBet = kellySizer.betFor(game.getShoe(), bankroll.getFunds(),
+                            game.getNumOfHands());
+                    if (kellyBet > 0) bankroll.setBet(kellyBet);
+                }
+                if (!bankroll.canPayRound(game.getNumOfHands())) return "insufficient funds";
+
+                bankroll.payRound(game.getNumOfHands());
+                game.deal();
+                settleSideBets();
+                if (game.isInsuranceOffered()) printInsuranceOffer();
+                break;
+            case "insurance":
+            case "even-money":
+                if (!game.isInsuranceOffered()) return "no insurance offered";
+                if (!bankroll.canPayInsurance(game.getNumOfHands())) return "insufficient funds";
+                bankroll.payInsurance(game.getNumOfHands());
+                game.insure();
+                break;
+            case "no-insurance":
+                if (!game.isInsuranceOffered()) return "no insurance offered";
+                game.declineInsurance();
+                break;
+            case "hit":
+                if (!game.isRoundOngoing()) return "no round in progress";
+                if (game.isInsuranceOffered()) return "insurance offered";
+                game.hit();
+                break;
+            case "stand":
+                if (!game.isRoundOngoing()) return "no round in progress";
+                if (game.isInsuranceOffered()) return "insurance offered";
+                game.stand();
+                break;
+            case "double":
+                if (game.isInsuranceOffered()) return "insurance offered";
+                if (!game.isRoundOngoing() || !game.canDoubleDown()) return "can't double";
+                if (!bankroll.canPayBet(1)) return "insufficient funds";
+                game.doubleDown();
+                bankroll.payBet();
+                break;
+            case "split":
+                if (game.isInsuranceOffered()) return "insurance offered";
+                if (!game.isRoundOngoing() || !game.canSplit()) return "can't split";
+                if (!bankroll.canPayBet(1)) return "insufficient funds";
+                game.split();
+                bankroll.payBet();
+                break;
+            case "surrender":
+                if (game.isInsuranceOffered()) return "insurance offered";
+                if (!game.isRoundOngoing() || !game.canSurrender()) return "can't surrender";
+                game.surrender();
+                break;
+            case "simulate":
+                if (!game.isRoundOngoing()) return "no round in progress";
+                Integer iterations = command.length > 1 ? parseCount(command[1]) : 10000;
+                if (iterations == null) return "not a number";
+                printSimulation(iterations);
+                return "";
+            case "set-bet":
+                if (game.isRoundOngoing()) return "round in progress";
+                if (command.length < 2 || !Main.isNumber(command[1], false)) return "not a number";
+
+                double bet = Double.parseDouble(command[1]);
+                if (bet * game.getNumOfHands() > bankroll.getFunds()) return "insufficient funds";
+                bankroll.setBet(bet);
+                return "";
+            case "side-bet":
+                SideBet sideBet = command.length > 2 ? SideBet.fromCode(command[1]) : null;
+                if (sideBet == null) return "unknown side bet";
+                if (!Main.isNumber(command[2], false)) return "not a number";
+                bankroll.setSideBet(sideBet, Double.parseDouble(command[2]));
+                return "";
+            case "side-bets":
+                for (SideBet odds : SideBet.values()) {
+                    double winChance = 0;
+                    for (double probability : odds.probabilities(game.getShoe())) {
+                        winChance += probability;
+                    }
+                    out.printf("side-bet=%s win=%.5f ev=%.5f%n", odds.getCode(), winChance,
+                            odds.expectedValue(game.getShoe()));
+                }
+                return "";
+            case "stats":
+                SessionStats stats = bankroll.getStats();
+                out.println("stats=" + stats.getNumOfRounds()
+                        + " net=" + formatNumber(stats.getTotal())
+                        + " mean=" + formatNumber(stats.getMean())
+                        + " sd=" + formatNumber(stats.getStandardDeviation())
+                        + " drawdown=" + formatNumber(stats.getMaxDrawdown())
+                        + " streak=" + stats.getLongestLosingStreak());
+                return "";
+            case "kelly":
+                if (command.length > 1 && command[1].equals("off")) {
+                    kellySizer = null;
+                    return "";
+                }
+                if (command.length < 4 || !Main.isNumber(command[1], false)
+                        || !Main.isNumber(command[2], false) || !Main.isNumber(command[3], false)) {
+                    return "need fraction, min bet and max bet";
+                }
+
+                try {
+                    kellySizer = new KellySizer(game.getRules(), Double.parseDouble(command[1]),
+                            Double.parseDouble(command[2]), Double.parseDouble(command[3]));
+                } catch (IllegalArgumentException e) {
+                    return e.getMessage();
+                }
+                return "";
+            case "set-hands":
+            case "set-decks":
+                if (game.isRoundOngoing()) return "round in progress";
+                Integer num = command.length > 1 ? parseCount(command[1]) : null;
+                if (num == null) return "must be a positive number";
+
+                if (command[0].equals("set-hands")) {
+                    game.setNumOfHands(num);
+                } else {
+                    game.setNumOfDecks(num);
+                }
+                return "";
+            default:
+                return "unknown command " + command[0];
+        }
+
+        if (!game.isRoundOngoing()) settleRound();
+        return "";
+    }
+
+    /**
+     * Pays out a finished round and prints it.
+     */
+    private void settleRound()
+    {
+        double net = bankroll.settleRound(game.getPlayerHands(), game.getDealerHand());
+        numOfRounds++;
+        StringBuilder line = new StringBuilder("round=").append(numOfRounds);
+        line.append(" dealer=");
+        appendHand(line, game.getDealerHand());
+
+        line.append(" hands=");
+        List<Hand> hands = game.getPlayerHands();
+        for (int i = 0; i < hands.size(); i++) {
+            Hand hand = hands.get(i);
+            int result = hand.determineHandResult(game.getDealerHand());
+
+            if (i > 0) line.append(';');
+            appendHand(line, hand);
+            line.append(':').append(RESULTS[result]);
+            line.append(':').append(formatNumber(hand.getBetMultiplier()));
+        }
+
+        line.append(" net=").append(formatNumber(net));
+        line.append(" balance=").append(formatNumber(bankroll.getFunds()));
+        if (sideResults.length() > 0) {
+            line.append(" side=").append(sideResults);
+            sideResults.setLength(0);
+        }
+        out.println(line);
+    }
+
+    /**
+     * Settles the side bets of a round that was just dealt.
+     */
+    private void settleSideBets()
+    {
+        List<Card> dealerCards = game.getDealerHand().getCards();
+
+        for (SideBet sideBet : SideBet.values()) {
+            if (bankroll.getSideBet(sideBet) == 0) continue;
+
+            for (Hand hand : game.getPlayerHands()) {
+                int outcome = sideBet.outcome(hand.getCards(), dealerCards);
+                double profit = bankroll.receiveSideBet(sideBet, outcome);
+
+                if (sideResults.length() > 0) sideResults.append(';');
+                sideResults.append(sideBet.getCode()).append(':')
+                        .append(sideBet.getOutcomeName(outcome).replace(' ', '_')).append(':')
+                        .append(formatNumber(profit));
+            }
+        }
+    }
+
+    /**
+     * Prints the insurance offer of a round that was just dealt, as
+     * even money if every hand is a blackjack.
+     */
+    private void printInsuranceOffer()
+    {
+        boolean isEvenMoney = true;
+        for (Hand hand : game.getPlayerHands()) {
+            if (!hand.isBlackjack()) isEvenMoney = false;
+        }
+
+        out.printf("offer=%s blackjack=%.5f ev=%.5f%n", isEvenMoney ? "even-money" : "insurance",
+                game.getDealerBlackjackProbability(), game.getInsuranceEv());
+    }
+
+    /**
+     * Simulates hitting the current hand and prints the rates. The
+     * simulation plays a copy with its own random number generator,
+     * seeded by the position, so the game's cards are the same with
+     * or without it and seeded scripts print the same rates.
+     *
+     * @param  iterations  number of times to hit
+     */
+    private void printSimulation(int iterations)
+    {
+        Blackjack snapshot = new Blackjack(game);
+        snapshot.setRng(new Rng(game.getStateHash()));
+        SimulationSnapshot rates = SimulationSnapshot.of(Simulator.run(snapshot, iterations), iterations);
+        out.printf("simulate=%d better=%.4f worse=%.4f blackjack=%.4f won=%.4f tied=%.4f lost=%.4f%n",
+                iterations, rates.betterRate(), rates.worseRate(), rates.blackjackRate(),
+                rates.winRate(), rates.tieRate(), rates.lossRate());
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Appends a hand's cards and total, such as 10C,9D:19 or 10C,6D,8S:24.
+     *
+     * @param  line  line being built
+     * @param  hand  hand to append
+     */
+    private static void appendHand(StringBuilder line, Hand hand)
+    {
+        List<Card> cards = hand.getCards();
+        for (int i = 0; i < cards.size(); i++) {
+            if (i > 0) line.append(',');
+            line.append(cards.get(i).toPlainString());
+        }
+        line.append(':').append(hand.handScore(true));
+    }
+
+    /**
+     * Parses a positive whole number.
+     *
+     * @param  text  number to parse
+     * @return       the number, or null if it isn't one
+     */
+    private static Integer parseCount(String text)
+    {
+        if (!Main.isNumber(text, true)) return null;
+        int num = Integer.parseInt(text);
+        return num > 0 ? num : null;
+    }
+
+    /**
+     * Formats an amount with two decimals and no grouping.
+     *
+     * @param  num  amount
+     * @return      amount such as -12.50
+     */
+    private static String formatNumber(double num)
+    {
+        // Cheaper than String.format, which runs once per hand
+        long cents = Math.round(Math.abs(num) * 100);
+        String fraction = cents % 100 < 10 ? ".0" + cents % 100 : "." + cents % 100;
+        return (num < 0 && cents != 0 ? "-" : "") + cents / 100 + fraction;
+    }
+}
@@ -0,0 +1,264 @@
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Times the engine's workloads in-process, so its health can be
+ * checked on any host without a separate benchmark build: full
+ * rounds from deal until the last hand is resolved, from a shoe and
+ * from a continuous shuffling machine, the latency of
+ * simulating a position at several iteration counts, and drawing
+ * cards from shoes of several sizes. Each workload also reports how
+ * many bytes it allocates.
+ *
+ * The report is one line per workload under a line describing the
+ * machine, so reports from different hosts and versions can be put
+ * side by side. Main runs it with the bench command or --bench.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class Benchmark {
+    // Iteration counts the simulation latency is measured at
+    private static final int[] SIMULATE_ITERATIONS = {1_000, 10_000, 100_000};
+    private static final int[] DECK_COUNTS = {1, 2, 6, 8};
+    // Fewest and most simulations timed at each iteration count
+    private static final int MIN_SAMPLES = 5;
+    private static final int MAX_SAMPLES = 2_000;
+    // Rounds or draws between checks of the clock
+    private static final int BATCH = 1_000;
+    // Fraction of the shoe left at the cut card
+    private static final double PENETRATION = 0.25;
+
+    // Results go here so the JIT can't drop the work that made them
+    private static long sink = 0;
+
+    /**
+     * How much work a timed workload did, how long it took and how
+     * many bytes it allocated, or -1 if that can't be measured
+     */
+    private record Measurement(long operations, long nanos, long bytes)
+    {
+        double perSecond()
+        {
+            return operations * 1e9 / nanos;
+        }
+
+        String allocation(String unit)
+        {
+            if (bytes < 0) return "alloc n/a";
+            return String.format("%.0f B/%s  %.1f MB/s", (double) bytes / operations, unit,
+                    bytes * 1e3 / nanos);
+        }
+    }
+
+    private Benchmark()
+    {}
+
+    public static void main(String[] args)
+    {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 0.5;
+        Rules rules = args.length > 1 ? Rules.parse(args[1]) : Rules.STANDARD;
+
+        System.out.print(run(rules, seconds));
+    }
+
+    /**
+     * Warms up, then runs every workload for about the given time.
+     *
+     * @param  rules    rules of the table to play
+     * @param  seconds  time to spend on each workload
+     * @return          report, one line per workload
+     */
+    public static String run(Rules rules, double seconds)
+    {
+        long nanos = (long) (seconds * 1e9);
+        Runtime runtime = Runtime.getRuntime();
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("bench: Java %s, %s %s, %d cpu(s), %d MB heap, %s, %.1f s per workload%n",
+                System.getProperty("java.version"), System.getProperty("os.name"),
+                System.getProperty("os.arch"), runtime.availableProcessors(),
+                runtime.maxMemory() >> 20, rules, seconds));
+
+        // Measure compiled code, not the interpreter
+        Warmup.run(rules);
+
+        Measurement rounds = timeRounds(rules, new CardShoe(6), nanos);
+        report.append(String.format("%-16s %,14.0f rounds/s  %s%n", "rounds",
+                rounds.perSecond(), rounds.allocation("round")));
+        Measurement continuous = timeRounds(rules, new ContinuousShoe(6, 1, 12), nanos);
+        report.append(String.format("%-16s %,14.0f rounds/s  %s%n", "rounds csm",
+                continuous.perSecond(), continuous.allocation("round")));
+
+        for (int iterations : SIMULATE_ITERATIONS) {
+            report.append(timeSimulations(rules, iterations, nanos));
+        }
+
+        for (int numOfDecks : DECK_COUNTS) {
+            Measurement draws = timeDraws(numOfDecks, nanos);
+            report.append(String.format("%-16s %,14.0f draws/s   %s%n", "draw " + numOfDecks + " deck(s)",
+                    draws.perSecond(), draws.allocation("draw")));
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * Plays full rounds, hitting below 17, for about the given time.
+     * A continuous shuffling machine never reaches the cut card, so it
+     * is never refilled.
+     *
+     * @param  rules  rules of the table to play
+     * @param  shoe   6-deck shoe to deal from
+     * @param  nanos  time to spend
+     * @return        rounds played
+     */
+    private static Measurement timeRounds(Rules rules, Shoe shoe, long nanos)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setShoe(shoe);
+        game.setRng(new Rng(1));
+        int cutCard = (int) (PENETRATION * 52 * 6);
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long rounds = 0;
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                if (game.getShoe().size() < cutCard) game.fillShoe();
+
+                game.deal();
+                while (game.isRoundOngoing()) {
+                    if (HandState.score(game.getCurrentHand().getState()) < 17) {
+                        game.hit();
+                    } else {
+                        game.stand();
+                    }
+                }
+                sink += game.getDealerHand().getState();
+            }
+            rounds += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+
+        return new Measurement(rounds, elapsed, bytesUsedSince(bytesBefore));
+    }
+
+    /**
+     * Times simulations of freshly dealt positions, doing the work
+     * Simulator.simulate does when the position isn't cached.
+     *
+     * @param  rules       rules of the table to play
+     * @param  iterations  number of times each position is hit
+     * @param  nanos       time to spend
+     * @return             report line with the latency percentiles
+     */
+    private static String timeSimulations(Rules rules, int iterations, long nanos)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(6);
+        game.setRng(new Rng(2));
+        int cutCard = (int) (PENETRATION * 52 * 6);
+
+        long[] samples = new long[MAX_SAMPLES];
+        int numOfSamples = 0;
+        long busy = 0;
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        while (numOfSamples < MAX_SAMPLES
+                && (numOfSamples < MIN_SAMPLES || System.nanoTime() - start < nanos)) {
+            do {
+                if (game.getShoe().size() < cutCard) game.fillShoe();
+                game.deal();
+                game.declineInsurance();
+            } while (!game.isRoundOngoing());
+
+            long before = System.nanoTime();
+            String report = SimulationSnapshot.of(Simulator.run(game, iterations), iterations).toReport();
+            long sample = System.nanoTime() - before;
+
+            sink += report.length();
+            samples[numOfSamples++] = sample;
+            busy += sample;
+        }
+
+        Measurement simulated = new Measurement((long) numOfSamples * iterations, busy,
+                bytesUsedSince(bytesBefore));
+        Arrays.sort(samples, 0, numOfSamples);
+        return String.format("%-16s p50 %.3f ms  p90 %.3f ms  p99 %.3f ms  max %.3f ms  (%d runs)  %s%n",
+                "simulate " + iterations, percentile(samples, numOfSamples, 0.5) / 1e6,
+                percentile(samples, numOfSamples, 0.9) / 1e6, percentile(samples, numOfSamples, 0.99) / 1e6,
+                samples[numOfSamples - 1] / 1e6, numOfSamples, simulated.allocation("iteration"));
+    }
+
+    /**
+     * Draws cards from a shoe, refilling it when it runs out, for
+     * about the given time.
+     *
+     * @param  numOfDecks  decks in the shoe
+     * @param  nanos       time to spend
+     * @return             cards drawn
+     */
+    private static Measurement timeDraws(int numOfDecks, long nanos)
+    {
+        Shoe shoe = new CardShoe(numOfDecks);
+        Rng rng = new Rng(3);
+
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long draws = 0;
+        long elapsed;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                sink += shoe.draw(rng).getRankIndex();
+                if (shoe.size() == 0) shoe.fill();
+            }
+            draws += BATCH;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+
+        return new Measurement(draws, elapsed, bytesUsedSince(bytesBefore));
+    }
+
+    /**
+     * Gets a percentile of sorted samples, by the nearest rank.
+     *
+     * @param  sorted    samples in increasing order
+     * @param  length    number of samples
+     * @param  fraction  percentile as a fraction, such as 0.99
+     * @return           the sample at that percentile
+     */
+    private static long percentile(long[] sorted, int length, double fraction)
+    {
+        int rank = (int) Math.ceil(fraction * length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Gets the bytes this thread has allocated so far.
+     *
+     * @return bytes allocated, or -1 if the JVM can't tell
+     */
+    private static long allocatedBytes()
+    {
+        if (ManagementFactory.getThreadMXBean() instanceof ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the bytes this thread has allocated since an earlier reading.
+     *
+     * @param  before  earlier reading of allocatedBytes
+     * @return         bytes allocated since, or -1 if the JVM can't tell
+     */
+    private static long bytesUsedSince(long before)
+    {
+        return before < 0 ? -1 : allocatedBytes() - before;
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * How many units to bet at each true count. Entry i is the bet when
+ * the floored true count is i; counts below 0 bet entry 0 and counts
+ * past the end bet the last entry. Ramps are written as their
+ * entries joined by dashes, such as 1-1-2-4-8.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class BetRamp {
+    /**
+     * Bets one unit at every count
+     */
+    public static final BetRamp FLAT = new BetRamp(new int[] {1});
+
+    private final int[] UNITS;
+
+    /**
+     * Constructor for a ramp
+     *
+     * @param  units  units to bet at true counts 0, 1, 2, ...
+     */
+    public BetRamp(int[] units)
+    {
+        if (units.length == 0) {
+            throw new IllegalArgumentException("A ramp needs at least one bet");
+        }
+        for (int bet : units) {
+            if (bet < 0) throw new IllegalArgumentException("Bets can't be negative");
+        }
+
+        this.UNITS = units.clone();
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the bet for a true count.
+     *
+     * @param  trueCount  true count of the shoe
+     * @return            units to bet
+     */
+    public int betFor(double trueCount)
+    {
+        int count = (int) Math.floor(trueCount);
+        return UNITS[Math.max(0, Math.min(UNITS.length - 1, count))];
+    }
+
+    /**
+     * Gets the number of entries in the ramp.
+     *
+     * @return entries
+     */
+    public int size()
+    {
+        return UNITS.length;
+    }
+
+    /**
+     * Gets the bet of one entry.
+     *
+     * @param  index  entry, the floored true count
+     * @return        units to bet
+     */
+    public int get(int index)
+    {
+        return UNITS[index];
+    }
+
+    /**
+     * Gets a copy of the ramp with one entry changed.
+     *
+     * @param  index  entry to change
+     * @param  units  units to bet at that entry
+     * @return        new ramp
+     */
+    public BetRamp with(int index, int units)
+    {
+        int[] changed = UNITS.clone();
+        changed[index] = units;
+        return new BetRamp(changed);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        return other instanceof BetRamp ramp && Arrays.equals(UNITS, ramp.UNITS);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(UNITS);
+    }
+
+    /**
+     * Returns the entries joined by dashes.
+     *
+     * @return ramp such as 1-1-2-4-8
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < UNITS.length; i++) {
+            if (i > 0) text.append('-');
+            text.append(UNITS[i]);
+        }
+        return text.toString();
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Parses a ramp written by toString.
+     *
+     * @param  text  entries joined by dashes
+     * @return       ramp
+     */
+    public static BetRamp parse(String text)
+    {
+        String[] entries = text.strip().split("-");
+        int[] units = new int[entries.length];
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                units[i] = Integer.parseInt(entries[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a bet ramp: " + text);
+        }
+        return new BetRamp(units);
+    }
+}
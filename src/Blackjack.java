@@ -1,34 +1,73 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Can represent an individual blackjack table.
- * Rules: The dealer must draw to 16 and stand on all 17s,
- * the dealer peeks for blackjack, unlimited splits are
- * allowed, and there is no surrender.
+ * Rules: By default, the dealer must draw to 16 and stand on
+ * all 17s, the dealer peeks for blackjack, unlimited splits
+ * are allowed, and there is no surrender or insurance. Other
+ * tables can be built with a different set of Rules.
  *
  * @author Daniel Kim
  * @version 3-25-22
  */
 public class Blackjack
 {
-    private final List<Card> SHOE;
+    private Shoe shoe;
     private final List<Hand> PLAYER_HANDS;
     private final Hand DEALER_HAND;
+    private final Rules RULES;
+
+    /*
+     * The rules are unpacked into constants when the table is built,
+     * so the engine never has to look them up during a round.
+     */
+    private final int DEALER_SOFT_STAND_SCORE;
+    private final boolean DEALER_PEEKS;
+    private final boolean DOUBLE_AFTER_SPLIT;
+    private final boolean LATE_SURRENDER;
+    private final boolean INSURANCE;
+    private final int MAX_SPLIT_HANDS;
+    private final long RULES_KEY;
     private boolean isRoundOngoing = false;
+    // Insurance is offered before the dealer peeks, until the player answers
+    private boolean isInsuranceOffered = false;
     private int currentHandIndex = 0;
     private int numOfHands = 1;
     private int numOfDecks = 1;
+    private Rng rng = new Rng();
+    // Rank index the next card drawn must have, -1 for any
+    private int nextRank = -1;
 
     /**
      * Empty constructor
      */
     public Blackjack()
     {
+        this(Rules.STANDARD);
+    }
+
+    /**
+     * Constructor for a table with the given rules
+     *
+     * @param  rules  rules of the table
+     */
+    public Blackjack(Rules rules)
+    {
+        RULES = rules;
+        DEALER_SOFT_STAND_SCORE = rules.dealerSoftStandScore();
+        DEALER_PEEKS = rules.dealerPeeks();
+        DOUBLE_AFTER_SPLIT = rules.doubleAfterSplit();
+        LATE_SURRENDER = rules.lateSurrender();
+        INSURANCE = rules.insurance();
+        MAX_SPLIT_HANDS = rules.maxSplitHands();
+        RULES_KEY = Zobrist.settingKey(1, rules.hashCode());
         DEALER_HAND = new Hand();
         PLAYER_HANDS = new ArrayList<>();
-        SHOE = new ArrayList<>();
-        fillShoe();
+        shoe = new CardShoe(numOfDecks);
     }
 
     /**
@@ -38,13 +77,24 @@ public class Blackjack
      */
     public Blackjack(Blackjack table)
     {
-        SHOE = new ArrayList<>(table.getShoe());
+        RULES = table.getRules();
+        DEALER_SOFT_STAND_SCORE = table.DEALER_SOFT_STAND_SCORE;
+        DEALER_PEEKS = table.DEALER_PEEKS;
+        DOUBLE_AFTER_SPLIT = table.DOUBLE_AFTER_SPLIT;
+        LATE_SURRENDER = table.LATE_SURRENDER;
+        INSURANCE = table.INSURANCE;
+        MAX_SPLIT_HANDS = table.MAX_SPLIT_HANDS;
+        RULES_KEY = table.RULES_KEY;
+        shoe = table.getShoe().copy();
         PLAYER_HANDS = new ArrayList<>();
         DEALER_HAND = new Hand(table.getDealerHand());
         isRoundOngoing = table.isRoundOngoing();
+        isInsuranceOffered = table.isInsuranceOffered();
         currentHandIndex = table.getCurrentHandIndex();
         numOfHands = table.getNumOfHands();
         numOfDecks = table.getNumOfDecks();
+        // Copies draw from the same stream, so a run is reproducible
+        rng = table.getRng();
 
         for (Hand hand : table.getPlayerHands()) {
             PLAYER_HANDS.add(new Hand(hand));
@@ -65,6 +115,28 @@ public class Blackjack
         return isRoundOngoing;
     }
 
+    /**
+     * Gets whether the player is being offered insurance, or even
+     * money on a blackjack. The hands can't be played until it is
+     * taken or declined.
+     *
+     * @return whether insurance is offered
+     */
+    public boolean isInsuranceOffered()
+    {
+        return isInsuranceOffered;
+    }
+
+    /**
+     * Gets the rules of the table.
+     *
+     * @return rules the table was built with
+     */
+    public Rules getRules()
+    {
+        return RULES;
+    }
+
     /**
      * Gets the dealer's hand.
      *
@@ -95,6 +167,16 @@ public class Blackjack
         return currentHandIndex;
     }
 
+    /**
+     * Gets the dealer's face-up card.
+     *
+     * @return first card of the dealer's hand
+     */
+    public Card getUpcard()
+    {
+        return DEALER_HAND.getCards().get(0);
+    }
+
     /**
      * Gets the hand the player is currently playing.
      *
@@ -125,12 +207,169 @@ public class Blackjack
         return numOfDecks;
     }
 
+    /**
+     * Gets the random number generator cards are drawn with.
+     *
+     * @return random number generator
+     */
+    public Rng getRng()
+    {
+        return rng;
+    }
+
+    /**
+     * Gets the number of cards of a rank left in the shoe.
+     *
+     * @param  rank  rank index (0-12)
+     * @return       cards of the rank in the shoe
+     */
+    public int getRankCount(int rank)
+    {
+        return shoe.getRankCount(rank);
+    }
+
+    /**
+     * Gets a hash of everything that decides how the current hand
+     * plays out: its ranks, the dealer's upcard and hole card, the
+     * ranks left in the shoe, whether insurance is on offer, the
+     * number of decks and the rules. Simulations play against the
+     * real hole card, which an infinite shoe's hash can't tell apart,
+     * so it is hashed on its own. Positions with the same hash can
+     * share simulation results. Every part is kept up to date as
+     * cards are drawn, so this takes constant time.
+     *
+     * @return hash of the position
+     */
+    public long getStateHash()
+    {
+        long hash = shoe.getHash() ^ RULES_KEY ^ Zobrist.settingKey(0, numOfDecks);
+
+        if (DEALER_HAND.numberOfCards() > 0) {
+            hash ^= Zobrist.upcardKey(DEALER_HAND.getCards().get(0).getRankIndex());
+        }
+        if (DEALER_HAND.numberOfCards() > 1) {
+            hash ^= Zobrist.settingKey(2, DEALER_HAND.getCards().get(1).getRankIndex());
+        }
+        if (isInsuranceOffered) hash ^= Zobrist.settingKey(3, 1);
+        if (currentHandIndex < PLAYER_HANDS.size()) {
+            hash ^= Rng.mix(getCurrentHand().getCompositionHash());
+        }
+
+        return hash;
+    }
+
+    /**
+     * Gets the chance that the dealer has blackjack, as far as the
+     * player can tell. The hole card is one of the cards the player
+     * hasn't seen: the ones in the shoe and the hole card itself. The
+     * shoe keeps its rank counts as cards are drawn, so this takes
+     * constant time. Once the dealer has peeked, a round still in
+     * play has no dealer blackjack.
+     *
+     * @return probability of a dealer blackjack
+     */
+    public double getDealerBlackjackProbability()
+    {
+        if (!isRoundOngoing) return DEALER_HAND.isBlackjack() ? 1 : 0;
+        if (DEALER_PEEKS && !isInsuranceOffered) return 0;
+
+        int upcardRank = getUpcard().getRankIndex();
+        int holeRank = DEALER_HAND.getCards().get(1).getRankIndex();
+        int completing;
+        boolean isHoleCompleting;
+
+        if (upcardRank == 12) {
+            // Ranks 8-11 are 10, J, Q and K
+            completing = 0;
+            for (int rank = 8; rank < 12; rank++) completing += shoe.getRankCount(rank);
+            isHoleCompleting = holeRank >= 8 && holeRank < 12;
+        } else if (upcardRank >= 8) {
+            completing = shoe.getRankCount(12);
+            isHoleCompleting = holeRank == 12;
+        } else {
+            return 0;
+        }
+
+        int unseen = shoe.size();
+        // An infinite shoe never lost the hole card
+        if (!shoe.isInfinite()) {
+            unseen++;
+            if (isHoleCompleting) completing++;
+        }
+        return (double) completing / unseen;
+    }
+
+    /**
+     * Gets the EV of taking insurance, in units of the original bet.
+     * Insurance costs half the bet and pays 2 to 1 on a dealer
+     * blackjack. Even money is insurance on a blackjack, so it has
+     * the same EV compared to declining.
+     *
+     * @return expected net units of taking insurance
+     */
+    public double getInsuranceEv()
+    {
+        double probability = getDealerBlackjackProbability();
+        return 0.5 * (2 * probability - (1 - probability));
+    }
+
     /**
      * Gets the current shoe
      *
      * @return shoe of cards
      */
-    public List<Card> getShoe() { return SHOE; }
+    public Shoe getShoe() { return shoe; }
+
+    /**
+     * Determines whether the current hand can be doubled down.
+     * It must have two cards, and if it came from a split, the
+     * rules must allow doubling after splitting.
+     *
+     * @return whether the current hand can double
+     */
+    public boolean canDoubleDown()
+    {
+        Hand currentHand = getCurrentHand();
+
+        return currentHand.numberOfCards() == 2
+                && (DOUBLE_AFTER_SPLIT || !currentHand.isSplitHand());
+    }
+
+    /**
+     * Determines whether the current hand can be split. It must
+     * be splittable and its seat must not have reached the split
+     * limit.
+     *
+     * @return whether the current hand can split
+     */
+    public boolean canSplit()
+    {
+        Hand currentHand = getCurrentHand();
+
+        if (!currentHand.isSplittable()) return false;
+
+        int seatHands = 0;
+        for (Hand hand : PLAYER_HANDS) {
+            if (hand.getSeat() == currentHand.getSeat()) seatHands++;
+        }
+
+        return seatHands < MAX_SPLIT_HANDS;
+    }
+
+    /**
+     * Determines whether the current hand can be surrendered.
+     * Late surrender must be offered, and the hand must be the
+     * first two cards of a seat.
+     *
+     * @return whether the current hand can surrender
+     */
+    public boolean canSurrender()
+    {
+        Hand currentHand = getCurrentHand();
+
+        return LATE_SURRENDER && currentHand.numberOfCards() == 2
+                && !currentHand.isSplitHand();
+    }
 
     /**
      * Returns the String status of the round - current hands,
@@ -190,15 +429,76 @@ public class Blackjack
             result += "Unresolved hands: " +
                     (PLAYER_HANDS.size() - currentHandIndex) + "\n";
         }
-        result += "Cards remaining: " + SHOE.size();
+        result += "Cards remaining: " + shoe;
 
         return result;
     }
 
+    /**
+     * Writes the table in binary: rules, settings, hands and the
+     * shoe. Cards take one byte each.
+     *
+     * @param  out          where to write
+     * @throws IOException  if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeBoolean(RULES.dealerHitsSoft17());
+        out.writeBoolean(RULES.doubleAfterSplit());
+        out.writeInt(RULES.maxSplitHands());
+        out.writeBoolean(RULES.lateSurrender());
+        out.writeDouble(RULES.blackjackPayout());
+        out.writeBoolean(RULES.dealerPeeks());
+        out.writeBoolean(RULES.insurance());
+
+        out.writeInt(numOfDecks);
+        out.writeInt(numOfHands);
+        out.writeBoolean(isRoundOngoing);
+        out.writeInt(currentHandIndex);
+        out.writeBoolean(isInsuranceOffered);
+
+        writeCards(out, DEALER_HAND.getCards());
+        out.writeInt(PLAYER_HANDS.size());
+        for (Hand hand : PLAYER_HANDS) {
+            out.writeDouble(hand.getBetMultiplier());
+            out.writeInt(hand.getSeat());
+            out.writeBoolean(hand.isSplitHand());
+            out.writeBoolean(hand.isSurrendered());
+            out.writeDouble(hand.getInsurance());
+            writeCards(out, hand.getCards());
+        }
+        shoe.writeTo(out);
+    }
+
     /*
      * Mutators
      */
 
+    /**
+     * Sets the random number generator cards are drawn with.
+     *
+     * @param  rng  random number generator
+     */
+    public void setRng(Rng rng)
+    {
+        this.rng = rng;
+    }
+
+    /**
+     * Makes the next card drawn a random card of a given rank. This
+     * lets simulations sample each rank of the next card separately.
+     *
+     * @param  rank  rank index (0-12), must be in the shoe
+     */
+    public void setNextRank(int rank)
+    {
+        if (shoe.getRankCount(rank) == 0) {
+            throw new IllegalArgumentException("No card of rank " + Card.RANKS[rank] + " in the shoe");
+        }
+
+        nextRank = rank;
+    }
+
     /**
      * Sets the number of hands to play.
      *
@@ -227,33 +527,29 @@ public class Blackjack
         }
 
         this.numOfDecks = num;
-        SHOE.clear();
-        fillShoe();
+        shoe.reset(num);
     }
 
     /**
-     * Fills the shoe (box of cards) with the appropriate cards
-     * of a 52-card deck for as many decks as there are.
+     * Reshuffles the shoe (box of cards): whatever is left is taken
+     * back and it is filled with the appropriate cards of a 52-card
+     * deck for as many decks as there are.
      */
     public void fillShoe()
     {
-        String[] ranks = new String[]
-                {"2", "3", "4", "5", "6", "7",
-                        "8", "9", "10", "J", "Q", "K", "A"};
+        shoe.fill();
+    }
 
-        // For each rank
-        for (String rank : ranks) {
-            /*
-             * Repeat loop of 4 (number of each rank in a 52-card deck)
-             * for how many decks there are
-             */
-            for (int i = 0; i < numOfDecks; i++) {
-                // Loop through suits
-                for (int j = 0; j < 4; j++) {
-                    SHOE.add(new Card(rank, j));
-                }
-            }
-        }
+    /**
+     * Replaces the shoe, for example with a CompositionShoe for
+     * very many decks. The number of decks becomes the shoe's.
+     *
+     * @param  shoe  shoe to deal from
+     */
+    public void setShoe(Shoe shoe)
+    {
+        this.shoe = shoe;
+        this.numOfDecks = shoe.getNumOfDecks();
     }
 
     /**
@@ -274,10 +570,16 @@ public class Blackjack
                 // Dealt one at a time to each hand
                 draw(PLAYER_HANDS.get(j), false);
             }
-            // Detect dealer blackjacks ("peek") to stop the round
-            draw(DEALER_HAND, true);
+            /*
+             * Detect dealer blackjacks ("peek") to stop the round. An
+             * ace up offers insurance first, and the peek waits for it.
+             */
+            isInsuranceOffered = i == 1 && INSURANCE && getUpcard().getRankIndex() == 12;
+            draw(DEALER_HAND, DEALER_PEEKS && !isInsuranceOffered);
         }
 
+        if (isInsuranceOffered) return;
+
         /*
          * If the first hand is a blackjack, resolve and begin testing
          * for subsequent blackjacks
@@ -285,6 +587,85 @@ public class Blackjack
         if (PLAYER_HANDS.get(0).isBlackjack()) resolveHand();
     }
 
+    /**
+     * Starts a round with chosen cards, for analyzing a position. The
+     * first hand gets the player's cards and the dealer gets the upcard
+     * and a random hole card, all drawn from the shoe.
+     *
+     * @param  playerRanks  rank indices of the first hand's cards
+     * @param  upcardRank   rank index of the dealer's upcard
+     */
+    public void deal(int[] playerRanks, int upcardRank)
+    {
+        resetHands();
+        isRoundOngoing = true;
+        isInsuranceOffered = false;
+        currentHandIndex = 0;
+
+        for (int rank : playerRanks) {
+            setNextRank(rank);
+            draw(PLAYER_HANDS.get(0), false);
+        }
+        setNextRank(upcardRank);
+        draw(DEALER_HAND, false);
+        draw(DEALER_HAND, DEALER_PEEKS);
+
+        // Extra cards can make 21 or bust, which leaves nothing to decide
+        if (isRoundOngoing && HandState.score(PLAYER_HANDS.get(0).getState()) >= 21) resolveHand();
+    }
+
+    /**
+     * Takes the insurance offered, half the bet on every hand, then
+     * lets the dealer peek. On a blackjack this is even money.
+     */
+    public void insure()
+    {
+        if (!isInsuranceOffered) return;
+
+        for (Hand hand : PLAYER_HANDS) {
+            hand.setInsurance(0.5 * hand.getBetMultiplier());
+        }
+        endInsuranceOffer();
+    }
+
+    /**
+     * Declines the insurance offered, then lets the dealer peek.
+     */
+    public void declineInsurance()
+    {
+        if (!isInsuranceOffered) return;
+
+        endInsuranceOffer();
+    }
+
+    /**
+     * Ends the insurance offer and carries on as deal would have:
+     * the dealer peeks, then a first hand blackjack is resolved.
+     */
+    private void endInsuranceOffer()
+    {
+        isInsuranceOffered = false;
+
+        if ((DEALER_PEEKS && DEALER_HAND.isBlackjack()) || PLAYER_HANDS.get(0).isBlackjack()) {
+            resolveHand();
+        }
+    }
+
+    /**
+     * Declines insurance if it is still offered. The hands can't be
+     * played before the dealer peeks, so an action taken while it is
+     * offered only declines it.
+     *
+     * @return whether insurance was offered
+     */
+    private boolean declinedInsurance()
+    {
+        if (!isInsuranceOffered) return false;
+
+        declineInsurance();
+        return true;
+    }
+
     /**
      * Clears the player's hands.
      */
@@ -293,16 +674,40 @@ public class Blackjack
         PLAYER_HANDS.clear();
     }
 
+    /**
+     * Removes every player hand except the current one, which
+     * becomes the first and only hand of the round.
+     */
+    public void isolateCurrentHand()
+    {
+        Hand currentHand = getCurrentHand();
+
+        resetPlayerHands();
+        PLAYER_HANDS.add(currentHand);
+        currentHandIndex = 0;
+    }
+
     /**
      * Clears the player and dealer hands and puts numOfHands
-     * blank ones into the player's hand.
+     * blank ones into the player's hand. The last round's cards
+     * are discarded to the shoe.
      */
     public void resetHands()
     {
+        if (DEALER_HAND.numberOfCards() > 0) {
+            for (Hand hand : PLAYER_HANDS) {
+                for (Card card : hand.getCards()) shoe.discard(card);
+            }
+            for (Card card : DEALER_HAND.getCards()) shoe.discard(card);
+            shoe.endRound();
+        }
+
         resetPlayerHands();
         DEALER_HAND.clearCards();
         for (int i = 0; i < numOfHands; i++) {
-            PLAYER_HANDS.add(new Hand());
+            Hand hand = new Hand();
+            hand.setSeat(i);
+            PLAYER_HANDS.add(hand);
         }
     }
 
@@ -320,16 +725,20 @@ public class Blackjack
      */
     public void draw(Hand hand, boolean checkForResolution)
     {
-        int cardIndex = (int)
-                (Math.random() * SHOE.size()); // Get a random card
-        hand.addCard(SHOE.get(cardIndex));     // Add it to the hand
-        SHOE.remove(cardIndex);                // Remove it from the shoe
+        Card card;
+        if (nextRank < 0) {
+            card = shoe.draw(rng);             // Remove a random card from the shoe
+        } else {
+            card = shoe.draw(rng, nextRank);   // Remove a random card of nextRank
+            nextRank = -1;
+        }
+        hand.addCard(card);                    // Add it to the hand
 
-        if (SHOE.size() == 0) {
-            fillShoe();
+        if (shoe.size() == 0) {
+            shoe.fill();
         }
 
-        if (checkForResolution && hand.handScore(true) >= 21) {
+        if (checkForResolution && HandState.score(hand.getState()) >= 21) {
             resolveHand();
         }
     }
@@ -337,12 +746,12 @@ public class Blackjack
     /**
      * Moves onto the next hand. If there are none left, ends the player's
      * turn and goes through the dealer's. The dealer will automatically
-     * draw cards, continuing to do so until the score is at least a hard/soft
-     * 17 (rules).
+     * draw cards, continuing to do so until the score is at least a hard
+     * 17, or a soft 17 or 18 depending on the rules.
      */
     public void resolveHand()
     {
-        int dealerScore = DEALER_HAND.handScore(true);
+        int dealerScore = HandState.signedScore(DEALER_HAND.getState());
 
         // If no hands remain
         if (PLAYER_HANDS.size() - 1 - currentHandIndex == 0) {
@@ -353,7 +762,8 @@ public class Blackjack
             // If player has a hand that has not busted
             boolean validHand = false;
             for (Hand playerHand : PLAYER_HANDS) {
-                if (playerHand.handScore(true) <= 21) {
+                if (!playerHand.isSurrendered()
+                        && HandState.score(playerHand.getState()) <= 21) {
                     validHand = true;
                     break;
                 }
@@ -362,16 +772,18 @@ public class Blackjack
             if (validHand) {
                 /*
                  * Dealers are bound by strict rules. They cannot hit on or
-                 * after hard 17, and in some games (such as this one) not on
-                 * soft 17.
+                 * after hard 17, and in some games not on soft 17. Soft
+                 * scores are negative, so they are compared against the
+                 * negative of the lowest soft total the dealer stands on.
                  */
-                while (dealerScore < 17) {
+                while (dealerScore >= 0 ? dealerScore < 17
+                        : dealerScore > -DEALER_SOFT_STAND_SCORE) {
                     draw(DEALER_HAND, false);
-                    dealerScore = DEALER_HAND.handScore(true);
+                    dealerScore = HandState.signedScore(DEALER_HAND.getState());
                 }
             }
-        } else if (DEALER_HAND.isBlackjack()) {
-            // If dealer has blackjack, the round ends.
+        } else if (DEALER_PEEKS && DEALER_HAND.isBlackjack()) {
+            // If dealer has blackjack and peeked, the round ends.
             isRoundOngoing = false;
             // Take hand queue to the end
             currentHandIndex = PLAYER_HANDS.size() - 1;
@@ -395,6 +807,8 @@ public class Blackjack
      */
     public void stand()
     {
+        if (declinedInsurance()) return;
+
         resolveHand();
     }
 
@@ -404,7 +818,9 @@ public class Blackjack
      */
     public void hit()
     {
-        int playerScore = getCurrentHand().handScore(false);
+        if (declinedInsurance()) return;
+
+        int playerScore = HandState.score(getCurrentHand().getState());
 
         // If hand isn't empty (game ongoing) and player hasn't busted
         if (playerScore != 0 && playerScore <= 21) {
@@ -419,19 +835,28 @@ public class Blackjack
      */
     public void split()
     {
-        Hand currentHand = getCurrentHand();
+        if (declinedInsurance() || !canSplit()) return;
 
-        if (!currentHand.isSplittable()) return;
+        Hand currentHand = getCurrentHand();
 
         /*
-         * Create two new identical hands with each of the split cards.
-         * Both cards have the original bet, so the bet is effectively
+         * Create two new hands with each of the split cards. Both
+         * cards have the original bet, so the bet is effectively
          * doubled.
          */
         Hand splitHand = new Hand(currentHand.getBetMultiplier(),
                 currentHand.getCards().get(0)
         );
-        Hand splitHand2 = new Hand(splitHand);
+        splitHand.setSeat(currentHand.getSeat());
+        splitHand.setSplitHand(true);
+        // Each keeps its own card, so every card dealt is discarded once
+        Hand splitHand2 = new Hand(currentHand.getBetMultiplier(),
+                currentHand.getCards().get(1)
+        );
+        splitHand2.setSeat(currentHand.getSeat());
+        splitHand2.setSplitHand(true);
+        // The seat's insurance stays with its first hand
+        splitHand.setInsurance(currentHand.getInsurance());
 
         PLAYER_HANDS.remove(currentHandIndex);
 
@@ -453,19 +878,114 @@ public class Blackjack
     /**
      * Doubles down on a bet. This means doubling the bet on the hand,
      * hitting once, then standing. Can only happen when there are
-     * two cards.
+     * two cards, and after a split only if the rules allow it.
      */
     public void doubleDown()
     {
-        Hand currentHand = getCurrentHand();
+        if (declinedInsurance() || !canDoubleDown()) return;
 
-        if (currentHand.numberOfCards() != 2) return;
+        Hand currentHand = getCurrentHand();
 
         // Double the former multiplier
         currentHand.setBetMultiplier(2 * currentHand.getBetMultiplier());
 
-        // Hit once and stand
+        /*
+         * Hit once and stand. If the hit reached 21 or busted, the hand
+         * has already been resolved and standing would skip the next one.
+         */
+        int handIndex = currentHandIndex;
         hit();
-        stand();
+        if (isRoundOngoing && currentHandIndex == handIndex) {
+            stand();
+        }
+    }
+
+    /**
+     * Surrenders the current hand if the rules allow it, giving up
+     * half of its bet, and moves onto the next hand.
+     */
+    public void surrender()
+    {
+        if (declinedInsurance() || !canSurrender()) return;
+
+        getCurrentHand().surrender();
+        resolveHand();
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads a table written by writeTo.
+     *
+     * @param  in           where to read
+     * @return              table in the same state
+     * @throws IOException  if reading fails
+     */
+    public static Blackjack readFrom(DataInput in) throws IOException
+    {
+        Rules rules = new Rules(in.readBoolean(), in.readBoolean(), in.readInt(),
+                in.readBoolean(), in.readDouble(), in.readBoolean(), in.readBoolean());
+        Blackjack table = new Blackjack(rules);
+
+        table.numOfDecks = in.readInt();
+        table.numOfHands = in.readInt();
+        table.isRoundOngoing = in.readBoolean();
+        table.currentHandIndex = in.readInt();
+        table.isInsuranceOffered = in.readBoolean();
+
+        for (Card card : readCards(in)) {
+            table.DEALER_HAND.addCard(card);
+        }
+
+        int numOfPlayerHands = in.readInt();
+        for (int i = 0; i < numOfPlayerHands; i++) {
+            Hand hand = new Hand();
+            hand.setBetMultiplier(in.readDouble());
+            hand.setSeat(in.readInt());
+            hand.setSplitHand(in.readBoolean());
+            if (in.readBoolean()) hand.surrender();
+            hand.setInsurance(in.readDouble());
+            for (Card card : readCards(in)) {
+                hand.addCard(card);
+            }
+            table.PLAYER_HANDS.add(hand);
+        }
+
+        table.shoe = Shoe.readFrom(in);
+        return table;
+    }
+
+    /**
+     * Writes a list of cards as a count and one code per card.
+     *
+     * @param  out          where to write
+     * @param  cards        cards to write
+     * @throws IOException  if writing fails
+     */
+    private static void writeCards(DataOutput out, List<Card> cards) throws IOException
+    {
+        out.writeInt(cards.size());
+        for (Card card : cards) {
+            out.writeByte(card.toCode());
+        }
+    }
+
+    /**
+     * Reads a list of cards written by writeCards.
+     *
+     * @param  in           where to read
+     * @return              cards read
+     * @throws IOException  if reading fails
+     */
+    private static List<Card> readCards(DataInput in) throws IOException
+    {
+        int size = in.readInt();
+        List<Card> cards = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cards.add(Card.fromCode(in.readUnsignedByte()));
+        }
+        return cards;
     }
 }
@@ -0,0 +1,110 @@
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache that holds at most a fixed number of entries.
+ * When it is full, the oldest entries are evicted first.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class BoundedCache<K, V> {
+    private final int capacity;
+    private final ConcurrentHashMap<K, V> entries;
+    private final Queue<K> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor for a cache
+     *
+     * @param  capacity  most entries to hold
+     */
+    public BoundedCache(int capacity)
+    {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(capacity);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets a cached value.
+     *
+     * @param  key  key of the value
+     * @return      the value, or null if it isn't cached
+     */
+    public V get(K key)
+    {
+        return entries.get(key);
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return number of entries
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Caches a value, evicting the oldest entries if the cache is full.
+     *
+     * @param  key    key of the value
+     * @param  value  value to cache
+     */
+    public void put(K key, V value)
+    {
+        if (entries.put(key, value) == null) {
+            insertionOrder.add(key);
+
+            while (entries.size() > capacity) {
+                K oldest = insertionOrder.poll();
+                if (oldest == null) break;
+                entries.remove(oldest);
+            }
+        }
+    }
+
+    /**
+     * Gets a cached value, computing and caching it if it isn't
+     * cached. The computation runs without holding any lock, so two
+     * threads asking for the same missing key may both compute it.
+     *
+     * @param  key      key of the value
+     * @param  compute  computes the value from the key
+     * @return          cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> compute)
+    {
+        V value = entries.get(key);
+
+        if (value == null) {
+            value = compute.apply(key);
+            put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear()
+    {
+        entries.clear();
+        insertionOrder.clear();
+    }
+}
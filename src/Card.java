@@ -15,14 +15,27 @@ import java.util.Arrays;
  */
 public record Card(String rank, int suit)
 {
+    /**
+     * The 13 ranks, in the order of their rank indices
+     */
+    public static final String[] RANKS = new String[]
+            {"2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K", "A"};
+
+    // One shared instance of each card, by code
+    private static final Card[] BY_CODE = new Card[52];
+
+    static {
+        for (int code = 0; code < 52; code++) {
+            BY_CODE[code] = new Card(RANKS[code / 4], code % 4);
+        }
+    }
+
     /**
      * Constructor for a card
      */
     public Card
     {
-        String[] validRanks = new String[]
-                {"2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K", "A"};
-        if (!Arrays.asList(validRanks).contains(rank)) {
+        if (!Arrays.asList(RANKS).contains(rank)) {
             throw new IllegalArgumentException("Invalid rank: " + rank);
         }
 
@@ -55,6 +68,17 @@ public record Card(String rank, int suit)
                 + rank + "♥♦♣♠".charAt(suit) + "\u001B[0m";
     }
 
+    /**
+     * Returns the rank and the suit's letter (H, D, C or S), without
+     * colors or symbols, for output read by other programs.
+     *
+     * @return card such as 10H or AS
+     */
+    public String toPlainString()
+    {
+        return rank + "HDCS".charAt(suit);
+    }
+
     /**
      * Returns the numerical value of the card. 2-8 are just
      * those numbers, face cards all equal 10, and aces are
@@ -75,6 +99,35 @@ public record Card(String rank, int suit)
         }
     }
 
+    /**
+     * Gets the index of the card's rank in RANKS, 0 for 2
+     * through 12 for aces.
+     *
+     * @return rank index (0-12)
+     */
+    public int getRankIndex()
+    {
+        // The first character tells every rank apart ("1" is 10)
+        return switch (rank.charAt(0)) {
+            case '1' -> 8;
+            case 'J' -> 9;
+            case 'Q' -> 10;
+            case 'K' -> 11;
+            case 'A' -> 12;
+            default -> rank.charAt(0) - '2';
+        };
+    }
+
+    /**
+     * Gets a compact code for the card, rank index * 4 + suit.
+     *
+     * @return code from 0 to 51
+     */
+    public int toCode()
+    {
+        return getRankIndex() * 4 + suit;
+    }
+
     /**
      * Gets the rank of the card.
      *
@@ -84,4 +137,20 @@ public record Card(String rank, int suit)
     {
         return rank;
     }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Gets the card a code from toCode stands for. Cards are
+     * immutable, so one instance of each is shared.
+     *
+     * @param  code  code from 0 to 51
+     * @return       card with that rank and suit
+     */
+    public static Card fromCode(int code)
+    {
+        return BY_CODE[code];
+    }
 }
@@ -0,0 +1,158 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shoe that holds every card as a Card object. A random card is
+ * drawn by picking a random position in the list.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class CardShoe extends Shoe {
+    private final List<Card> CARDS;
+
+    /**
+     * Constructor for a full shoe
+     *
+     * @param  numOfDecks  number of 52-card decks
+     */
+    public CardShoe(int numOfDecks)
+    {
+        super(numOfDecks);
+        CARDS = new ArrayList<>(52 * numOfDecks);
+        fill();
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param  shoe  shoe to copy
+     */
+    public CardShoe(CardShoe shoe)
+    {
+        super(shoe);
+        CARDS = new ArrayList<>(shoe.CARDS);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the cards in the shoe, in the order they are stored.
+     *
+     * @return cards in the shoe
+     */
+    public List<Card> getCards()
+    {
+        return CARDS;
+    }
+
+    @Override
+    public Shoe copy()
+    {
+        return new CardShoe(this);
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeByte(CARD_SHOE);
+        out.writeInt(numOfDecks);
+        out.writeInt(CARDS.size());
+        for (Card card : CARDS) {
+            out.writeByte(card.toCode());
+        }
+    }
+
+    /*
+     * Mutators
+     */
+
+    @Override
+    public Card draw(Rng rng)
+    {
+        Card card = CARDS.remove(rng.nextInt(CARDS.size()));
+        countRemoved(card.toCode());
+        return card;
+    }
+
+    @Override
+    public Card draw(Rng rng, int rank)
+    {
+        // Pick which of the rank's cards, then find it in the list
+        int remaining = rng.nextInt(getRankCount(rank));
+        for (int i = 0; i < CARDS.size(); i++) {
+            if (CARDS.get(i).getRankIndex() == rank && remaining-- == 0) {
+                Card card = CARDS.remove(i);
+                countRemoved(card.toCode());
+                return card;
+            }
+        }
+
+        throw new IllegalStateException("No card of rank " + Card.RANKS[rank] + " in the shoe");
+    }
+
+    /**
+     * Empties the shoe, then fills it with the appropriate cards of a
+     * 52-card deck for as many decks as there are.
+     */
+    @Override
+    public void fill()
+    {
+        clear();
+
+        // For each rank
+        for (int rank = 0; rank < 13; rank++) {
+            /*
+             * Repeat loop of 4 (number of each rank in a 52-card deck)
+             * for how many decks there are
+             */
+            for (int i = 0; i < numOfDecks; i++) {
+                // Loop through suits; cards are shared, so a refill allocates none
+                for (int j = 0; j < 4; j++) {
+                    CARDS.add(Card.fromCode(rank * 4 + j));
+                }
+            }
+        }
+
+        for (int code = 0; code < 52; code++) {
+            countAdded(code, numOfDecks);
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        CARDS.clear();
+        clearCounts();
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads the rest of a shoe written by writeTo, after its kind.
+     *
+     * @param  in           where to read
+     * @return              shoe in the same state
+     * @throws IOException  if reading fails
+     */
+    static CardShoe read(DataInput in) throws IOException
+    {
+        CardShoe shoe = new CardShoe(in.readInt());
+        shoe.clear();
+
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            Card card = Card.fromCode(in.readUnsignedByte());
+            shoe.CARDS.add(card);
+            shoe.countAdded(card.toCode(), 1);
+        }
+        return shoe;
+    }
+}
@@ -0,0 +1,187 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Shoe that only stores how many copies of each of the 52 cards it
+ * holds. Memory, copying and drawing take the same time however many
+ * decks there are: a draw picks a rank weighted by the rank counts,
+ * then a suit weighted by that rank's card counts.
+ *
+ * An infinite shoe never runs out or changes; every draw is from a
+ * full shoe, the usual "infinite deck" approximation.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class CompositionShoe extends Shoe {
+    private final boolean isInfinite;
+
+    /**
+     * Constructor for a full shoe
+     *
+     * @param  numOfDecks  number of 52-card decks
+     * @param  isInfinite  whether drawing leaves the shoe unchanged
+     */
+    public CompositionShoe(int numOfDecks, boolean isInfinite)
+    {
+        super(numOfDecks);
+        this.isInfinite = isInfinite;
+        fill();
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param  shoe  shoe to copy
+     */
+    public CompositionShoe(CompositionShoe shoe)
+    {
+        super(shoe);
+        this.isInfinite = shoe.isInfinite;
+    }
+
+    /*
+     * Accessors
+     */
+
+    @Override
+    public boolean isInfinite()
+    {
+        return isInfinite;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isInfinite ? "infinite" : super.toString();
+    }
+
+    @Override
+    public Shoe copy()
+    {
+        return new CompositionShoe(this);
+    }
+
+    @Override
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeByte(COMPOSITION_SHOE);
+        out.writeInt(numOfDecks);
+        out.writeBoolean(isInfinite);
+        for (int code = 0; code < 52; code++) {
+            out.writeInt(getCardCount(code));
+        }
+    }
+
+    /*
+     * Mutators
+     */
+
+    @Override
+    public Card draw(Rng rng)
+    {
+        // Find the rank the random position falls in
+        int position = rng.nextInt(size());
+        int rank = 0;
+        while (position >= getRankCount(rank)) {
+            position -= getRankCount(rank);
+            rank++;
+        }
+
+        return drawSuit(position, rank);
+    }
+
+    @Override
+    public Card draw(Rng rng, int rank)
+    {
+        return drawSuit(rng.nextInt(getRankCount(rank)), rank);
+    }
+
+    /**
+     * Removes the card at a position among the cards of a rank.
+     *
+     * @param  position  0 to the rank count (exclusive)
+     * @param  rank      rank index (0-12)
+     * @return           card drawn
+     */
+    private Card drawSuit(int position, int rank)
+    {
+        int code = rank * 4;
+        while (position >= getCardCount(code)) {
+            position -= getCardCount(code);
+            code++;
+        }
+
+        if (!isInfinite) countRemoved(code);
+        return Card.fromCode(code);
+    }
+
+    @Override
+    public void fill()
+    {
+        clearCounts();
+        for (int code = 0; code < 52; code++) {
+            countAdded(code, numOfDecks);
+        }
+    }
+
+    @Override
+    protected void clear()
+    {
+        clearCounts();
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Makes a shoe holding a given number of cards of each rank, split
+     * as evenly as possible between the suits.
+     *
+     * @param  rankCounts  cards of each rank index (0-12)
+     * @return             shoe with that composition
+     */
+    public static CompositionShoe ofRanks(int[] rankCounts)
+    {
+        int size = 0;
+        for (int count : rankCounts) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Rank counts can't be negative");
+            }
+            size += count;
+        }
+        if (rankCounts.length != 13 || size == 0) {
+            throw new IllegalArgumentException("Need a count for each of the 13 ranks");
+        }
+
+        CompositionShoe shoe = new CompositionShoe((size + 51) / 52, false);
+        shoe.clear();
+        for (int rank = 0; rank < 13; rank++) {
+            for (int suit = 0; suit < 4; suit++) {
+                int copies = rankCounts[rank] / 4 + (suit < rankCounts[rank] % 4 ? 1 : 0);
+                shoe.countAdded(rank * 4 + suit, copies);
+            }
+        }
+        return shoe;
+    }
+
+    /**
+     * Reads the rest of a shoe written by writeTo, after its kind.
+     *
+     * @param  in           where to read
+     * @return              shoe in the same state
+     * @throws IOException  if reading fails
+     */
+    static CompositionShoe read(DataInput in) throws IOException
+    {
+        CompositionShoe shoe = new CompositionShoe(in.readInt(), in.readBoolean());
+        shoe.clear();
+
+        for (int code = 0; code < 52; code++) {
+            shoe.countAdded(code, in.readInt());
+        }
+        return shoe;
+    }
+}
@@ -0,0 +1,401 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Shoe that models a continuous shuffling machine (CSM). Instead of
+ * being dealt down to a cut card and refilled, the machine takes each
+ * round's discards back and shuffles them in with the rest.
+ *
+ * The machine has three parts. The pool holds the shuffled cards,
+ * and a random one is picked each time a card is needed. The buffer
+ * holds the next cards already dispensed from the pool, in order, so
+ * discards can't reach them. Discards wait in the machine's loader
+ * for a number of rounds (the lag) before a round's batch is dropped
+ * into the pool. Each card moves between these in constant time.
+ * If the pool and buffer run dry mid-round, the oldest batches are
+ * dropped in early, as a real machine would, instead of refilling.
+ *
+ * Only the pool and buffer count as in the shoe; cards waiting in the
+ * loader and cards on the table don't. Every card is in exactly one
+ * of those four places, so the machine always holds 52 per deck.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class ContinuousShoe extends Shoe {
+    // Rounds a batch of discards waits before it reaches the pool
+    private final int lag;
+    private final int bufferSize;
+
+    private int[] pool;
+    private int poolSize;
+    // Ring of dispensed cards, the next one at bufferStart
+    private int[] buffer;
+    private int bufferStart;
+    private int bufferCount;
+    // Ring of discards waiting in the loader, oldest first
+    private int[] loader;
+    private int loaderStart;
+    private int loaderCount;
+    // Ring of the size of each waiting batch, oldest first
+    private final int[] BATCH_SIZES;
+    private int batchStart;
+    private int numOfBatches;
+    private int currentBatchSize;
+    // Copies of each card dealt since the last fill and not yet discarded
+    private final int[] OUT_COUNTS = new int[52];
+    // Set when a random draw needs to refill the buffer
+    private Rng refillRng;
+
+    /**
+     * Constructor for a full machine
+     *
+     * @param  numOfDecks  number of 52-card decks
+     * @param  lag         rounds discards wait before going back in play
+     * @param  bufferSize  cards dispensed ahead of the dealer
+     */
+    public ContinuousShoe(int numOfDecks, int lag, int bufferSize)
+    {
+        super(numOfDecks);
+
+        if (lag < 0 || bufferSize < 0) {
+            throw new IllegalArgumentException("Lag and buffer size can't be negative");
+        }
+
+        this.lag = lag;
+        this.bufferSize = bufferSize;
+        BATCH_SIZES = new int[lag + 1];
+        allocate();
+        fill();
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param  shoe  shoe to copy
+     */
+    public ContinuousShoe(ContinuousShoe shoe)
+    {
+        super(shoe);
+        lag = shoe.lag;
+        bufferSize = shoe.bufferSize;
+        pool = shoe.pool.clone();
+        poolSize = shoe.poolSize;
+        buffer = shoe.buffer.clone();
+        bufferStart = shoe.bufferStart;
+        bufferCount = shoe.bufferCount;
+        loader = shoe.loader.clone();
+        loaderStart = shoe.loaderStart;
+        loaderCount = shoe.loaderCount;
+        BATCH_SIZES = shoe.BATCH_SIZES.clone();
+        batchStart = shoe.batchStart;
+        numOfBatches = shoe.numOfBatches;
+        currentBatchSize = shoe.currentBatchSize;
+        System.arraycopy(shoe.OUT_COUNTS, 0, OUT_COUNTS, 0, 52);
+        refillRng = shoe.refillRng;
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of rounds discards wait before going back in play.
+     *
+     * @return lag in rounds
+     */
+    public int getLag()
+    {
+        return lag;
+    }
+
+    /**
+     * Gets the number of cards dispensed ahead of the dealer.
+     *
+     * @return buffer size
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+
+    /**
+     * Gets the number of discards waiting to go back in play.
+     *
+     * @return cards in the loader
+     */
+    public int getLoaderSize()
+    {
+        return loaderCount;
+    }
+
+    @Override
+    public Shoe copy()
+    {
+        return new ContinuousShoe(this);
+    }
+
+    /**
+     * Writes the whole machine: the pool, the buffer in order, the
+     * loader with its batches, and the cards still out on the table.
+     */
+    @Override
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeByte(CONTINUOUS_SHOE);
+        out.writeInt(numOfDecks);
+        out.writeInt(lag);
+        out.writeInt(bufferSize);
+
+        out.writeInt(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            out.writeByte(pool[i]);
+        }
+        out.writeInt(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            out.writeByte(buffer[(bufferStart + i) % buffer.length]);
+        }
+        out.writeInt(loaderCount);
+        for (int i = 0; i < loaderCount; i++) {
+            out.writeByte(loader[(loaderStart + i) % loader.length]);
+        }
+        out.writeInt(numOfBatches);
+        for (int i = 0; i < numOfBatches; i++) {
+            out.writeInt(BATCH_SIZES[(batchStart + i) % BATCH_SIZES.length]);
+        }
+        out.writeInt(currentBatchSize);
+        for (int code = 0; code < 52; code++) {
+            out.writeInt(OUT_COUNTS[code]);
+        }
+    }
+
+    /*
+     * Mutators
+     */
+
+    @Override
+    public Card draw(Rng rng)
+    {
+        refillRng = rng;
+        if (bufferCount == 0) refillBuffer(rng);
+        if (bufferCount == 0) {
+            // No buffer: take straight from the pool
+            return take(removeFromPool(rng.nextInt(poolSize)));
+        }
+
+        int code = buffer[bufferStart];
+        bufferStart = (bufferStart + 1) % buffer.length;
+        bufferCount--;
+        refillBuffer(rng);
+        return take(code);
+    }
+
+    @Override
+    public Card draw(Rng rng, int rank)
+    {
+        // Pick which of the rank's cards, then find it in the buffer or pool
+        int remaining = rng.nextInt(getRankCount(rank));
+        for (int i = 0; i < bufferCount; i++) {
+            int slot = (bufferStart + i) % buffer.length;
+            if (buffer[slot] >> 2 == rank && remaining-- == 0) {
+                int code = buffer[slot];
+                // The card at the front takes its place
+                buffer[slot] = buffer[bufferStart];
+                bufferStart = (bufferStart + 1) % buffer.length;
+                bufferCount--;
+                refillBuffer(rng);
+                return take(code);
+            }
+        }
+        for (int i = 0; i < poolSize; i++) {
+            if (pool[i] >> 2 == rank && remaining-- == 0) {
+                return take(removeFromPool(i));
+            }
+        }
+
+        throw new IllegalStateException("No card of rank " + Card.RANKS[rank] + " in the shoe");
+    }
+
+    /**
+     * Puts a card of the finished round in the loader.
+     */
+    @Override
+    public void discard(Card card)
+    {
+        // A card dealt before the machine was last filled is already back in it
+        int code = card.toCode();
+        if (OUT_COUNTS[code] == 0) return;
+        OUT_COUNTS[code]--;
+
+        loader[(loaderStart + loaderCount) % loader.length] = code;
+        loaderCount++;
+        currentBatchSize++;
+    }
+
+    /**
+     * Closes the round's batch of discards, and drops the oldest batch
+     * into the pool once it has waited the lag.
+     */
+    @Override
+    public void endRound()
+    {
+        BATCH_SIZES[(batchStart + numOfBatches) % BATCH_SIZES.length] = currentBatchSize;
+        numOfBatches++;
+        currentBatchSize = 0;
+
+        if (numOfBatches > lag) {
+            dropOldestBatch();
+            if (refillRng != null) refillBuffer(refillRng);
+        }
+    }
+
+    /**
+     * Puts every card back in the pool, including the ones in the
+     * buffer and loader, and dispenses a new buffer.
+     */
+    @Override
+    public void fill()
+    {
+        if (pool.length != 52 * numOfDecks) allocate();
+
+        clear();
+        Arrays.fill(OUT_COUNTS, 0);
+        for (int i = 0; i < pool.length; i++) pool[i] = i % 52;
+        poolSize = pool.length;
+        for (int code = 0; code < 52; code++) countAdded(code, numOfDecks);
+
+        // The buffer is dispensed by the first draw's random number generator
+        if (refillRng != null) refillBuffer(refillRng);
+    }
+
+    @Override
+    protected void clear()
+    {
+        clearCounts();
+        poolSize = 0;
+        bufferStart = 0;
+        bufferCount = 0;
+        loaderStart = 0;
+        loaderCount = 0;
+        batchStart = 0;
+        numOfBatches = 0;
+        currentBatchSize = 0;
+    }
+
+    /**
+     * Sizes the pool, buffer and loader for the number of decks.
+     */
+    private void allocate()
+    {
+        pool = new int[52 * numOfDecks];
+        buffer = new int[Math.max(1, Math.min(bufferSize, pool.length))];
+        loader = new int[pool.length];
+    }
+
+    /**
+     * Drops the oldest batch of discards from the loader into the pool.
+     */
+    private void dropOldestBatch()
+    {
+        int size = BATCH_SIZES[batchStart];
+        batchStart = (batchStart + 1) % BATCH_SIZES.length;
+        numOfBatches--;
+
+        // The pool is drawn from at random, so appending shuffles them in
+        for (int i = 0; i < size; i++) {
+            int code = loader[loaderStart];
+            loaderStart = (loaderStart + 1) % loader.length;
+            pool[poolSize++] = code;
+            countAdded(code, 1);
+        }
+        loaderCount -= size;
+    }
+
+    /**
+     * Dispenses cards from the pool until the buffer is full or the
+     * pool is empty. Cards in the buffer stay counted as in the shoe.
+     *
+     * @param  rng  random number generator to pick them with
+     */
+    private void refillBuffer(Rng rng)
+    {
+        while (bufferCount < bufferSize && bufferCount < buffer.length && poolSize > 0) {
+            buffer[(bufferStart + bufferCount) % buffer.length] = removeFromPool(rng.nextInt(poolSize));
+            bufferCount++;
+        }
+    }
+
+    /**
+     * Removes a card from the pool by moving the last card into its place.
+     *
+     * @param  index  position in the pool
+     * @return        card code removed
+     */
+    private int removeFromPool(int index)
+    {
+        int code = pool[index];
+        pool[index] = pool[--poolSize];
+        return code;
+    }
+
+    /**
+     * Takes a card out of the machine to deal it.
+     *
+     * @param  code  card code
+     * @return       card dealt
+     */
+    private Card take(int code)
+    {
+        countRemoved(code);
+        OUT_COUNTS[code]++;
+
+        // Out of cards mid-round: drop waiting batches in early rather than refill
+        while (size() == 0 && numOfBatches > 0) {
+            dropOldestBatch();
+        }
+        return Card.fromCode(code);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads the rest of a shoe written by writeTo, after its kind.
+     *
+     * @param  in           where to read
+     * @return              shoe in the same state
+     * @throws IOException  if reading fails
+     */
+    static ContinuousShoe read(DataInput in) throws IOException
+    {
+        ContinuousShoe shoe = new ContinuousShoe(in.readInt(), in.readInt(), in.readInt());
+        shoe.clear();
+
+        shoe.poolSize = in.readInt();
+        for (int i = 0; i < shoe.poolSize; i++) {
+            shoe.pool[i] = in.readUnsignedByte();
+            shoe.countAdded(shoe.pool[i], 1);
+        }
+        shoe.bufferCount = in.readInt();
+        for (int i = 0; i < shoe.bufferCount; i++) {
+            shoe.buffer[i] = in.readUnsignedByte();
+            shoe.countAdded(shoe.buffer[i], 1);
+        }
+        shoe.loaderCount = in.readInt();
+        for (int i = 0; i < shoe.loaderCount; i++) {
+            shoe.loader[i] = in.readUnsignedByte();
+        }
+        shoe.numOfBatches = in.readInt();
+        for (int i = 0; i < shoe.numOfBatches; i++) {
+            shoe.BATCH_SIZES[i] = in.readInt();
+        }
+        shoe.currentBatchSize = in.readInt();
+        for (int code = 0; code < 52; code++) {
+            shoe.OUT_COUNTS[code] = in.readInt();
+        }
+        return shoe;
+    }
+}
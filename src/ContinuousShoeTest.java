@@ -0,0 +1,80 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Checks that a ContinuousShoe neither makes nor loses cards. Tables
+ * of several sizes play a chart, splits and doubles included, from
+ * machines with several lags and buffers, and after every round the
+ * cards in the pool and buffer, the loader and on the table must add
+ * up to 52 per deck. Small machines with long lags at full tables run
+ * the pool dry mid-round, so the early drop of waiting batches is
+ * covered too.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class ContinuousShoeTest {
+    // Decks, lag, buffer size and hands of each table checked
+    private static final int[][] TABLES = {
+        {1, 0, 0, 1}, {1, 1, 12, 3}, {1, 3, 12, 5}, {1, 5, 0, 7},
+        {2, 8, 12, 7}, {6, 1, 12, 7}, {8, 20, 40, 7}
+    };
+
+    private ContinuousShoeTest()
+    {}
+
+    public static void main(String[] args) throws IOException
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        String chart = args.length > 1 ? args[1] : "strategies/basic-s17-das.csv";
+        Strategy strategy = Strategy.load(Paths.get(chart));
+
+        int failures = 0;
+        for (int[] table : TABLES) {
+            String failure = check(strategy, table[0], table[1], table[2], table[3], rounds);
+            System.out.printf("%d deck(s), lag %d, buffer %d, %d hand(s): %s%n",
+                    table[0], table[1], table[2], table[3], failure == null ? "ok" : failure);
+            if (failure != null) failures++;
+        }
+
+        if (failures > 0) System.exit(1);
+    }
+
+    /**
+     * Plays rounds from a machine, checking its cards after each one.
+     *
+     * @param  strategy    chart every hand plays
+     * @param  numOfDecks  decks in the machine
+     * @param  lag         rounds discards wait
+     * @param  bufferSize  cards dispensed ahead
+     * @param  numOfHands  hands dealt each round
+     * @param  rounds      rounds to play
+     * @return             what went wrong, or null if every round added up
+     */
+    private static String check(Strategy strategy, int numOfDecks, int lag, int bufferSize,
+                                int numOfHands, int rounds)
+    {
+        ContinuousShoe shoe = new ContinuousShoe(numOfDecks, lag, bufferSize);
+        Blackjack game = new Blackjack(Rules.STANDARD);
+        game.setShoe(shoe);
+        game.setNumOfHands(numOfHands);
+        game.setRng(new Rng(numOfDecks * 1_000L + lag * 100L + numOfHands));
+
+        for (int round = 1; round <= rounds; round++) {
+            game.deal();
+            while (game.isRoundOngoing()) {
+                Strategy.act(game, strategy.decide(game));
+            }
+
+            int onTable = game.getDealerHand().getCards().size();
+            for (Hand hand : game.getPlayerHands()) {
+                onTable += hand.getCards().size();
+            }
+            int total = shoe.size() + shoe.getLoaderSize() + onTable;
+            if (total != 52 * numOfDecks) {
+                return "round " + round + " holds " + total + " cards, not " + 52 * numOfDecks;
+            }
+        }
+        return null;
+    }
+}
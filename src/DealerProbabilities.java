@@ -0,0 +1,131 @@
+/**
+ * Computes the exact chances of each way the dealer's hand can end,
+ * given the upcard and the cards left in the shoe. Every sequence of
+ * draws the dealer can make is followed, taking cards out of the shoe
+ * as they are drawn, and the dealer stands the way resolveHand does.
+ *
+ * Outcomes are 0-4 for standing on 17-21, then BLACKJACK and BUST.
+ * Cards are counted by chart column: 0-7 for 2-9, 8 for tens and 9
+ * for aces.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class DealerProbabilities {
+    public static final int BLACKJACK = 5;
+    public static final int BUST = 6;
+    public static final int NUM_OF_OUTCOMES = 7;
+    public static final int NUM_OF_COLUMNS = 10;
+
+    // Rank index drawn for each column; every ten-valued rank plays alike
+    private static final int[] COLUMN_RANKS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 12};
+
+    private DealerProbabilities()
+    {}
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Gets the number of cards in each column for full decks.
+     *
+     * @param  numOfDecks  number of 52-card decks
+     * @return             cards per column
+     */
+    public static int[] fullShoe(int numOfDecks)
+    {
+        int[] counts = new int[NUM_OF_COLUMNS];
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            counts[column] = (column == 8 ? 16 : 4) * numOfDecks;
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the rank index a column's cards are drawn as.
+     *
+     * @param  column  chart column (0-9)
+     * @return         rank index (0-12)
+     */
+    public static int rankOf(int column)
+    {
+        return COLUMN_RANKS[column];
+    }
+
+    /**
+     * Computes the chance of each outcome for an upcard. The upcard
+     * must already be out of the counts.
+     *
+     * @param  counts          cards left per column; restored on return
+     * @param  upcardColumn    column of the dealer's upcard
+     * @param  softStandScore  lowest soft total the dealer stands on
+     * @return                 chance of each outcome
+     */
+    public static double[] compute(int[] counts, int upcardColumn, int softStandScore)
+    {
+        int remaining = 0;
+        for (int count : counts) remaining += count;
+
+        double[] outcomes = new double[NUM_OF_OUTCOMES];
+        draw(HandState.next(HandState.EMPTY, COLUMN_RANKS[upcardColumn]), counts, remaining,
+                1, softStandScore, outcomes);
+        return outcomes;
+    }
+
+    /**
+     * Conditions outcomes on the dealer not having blackjack, as the
+     * player knows once the dealer has peeked.
+     *
+     * @param  outcomes  chance of each outcome
+     * @return           chances given no dealer blackjack
+     */
+    public static double[] withoutBlackjack(double[] outcomes)
+    {
+        double[] conditioned = new double[NUM_OF_OUTCOMES];
+        double rest = 1 - outcomes[BLACKJACK];
+        for (int outcome = 0; outcome < NUM_OF_OUTCOMES; outcome++) {
+            if (outcome != BLACKJACK) conditioned[outcome] = outcomes[outcome] / rest;
+        }
+        return conditioned;
+    }
+
+    /**
+     * Follows every draw from a dealer hand, adding the chance of
+     * reaching it to the outcome it ends in.
+     *
+     * @param  state           HandState of the dealer's hand
+     * @param  counts          cards left per column
+     * @param  remaining       cards left in all
+     * @param  probability     chance of reaching this hand
+     * @param  softStandScore  lowest soft total the dealer stands on
+     * @param  outcomes        where to add the chances
+     */
+    private static void draw(int state, int[] counts, int remaining, double probability,
+                             int softStandScore, double[] outcomes)
+    {
+        if (state == HandState.BUST) {
+            outcomes[BUST] += probability;
+            return;
+        } else if (state == HandState.BLACKJACK) {
+            outcomes[BLACKJACK] += probability;
+            return;
+        }
+
+        int score = HandState.score(state);
+        if (score >= (HandState.isSoft(state) ? softStandScore : 17)) {
+            outcomes[score - 17] += probability;
+            return;
+        }
+
+        for (int column = 0; column < NUM_OF_COLUMNS; column++) {
+            if (counts[column] == 0) continue;
+
+            double next = probability * counts[column] / remaining;
+            counts[column]--;
+            draw(HandState.next(state, COLUMN_RANKS[column]), counts, remaining - 1, next,
+                    softStandScore, outcomes);
+            counts[column]++;
+        }
+    }
+}
@@ -2,7 +2,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Represents individual Blackjack hands.
+ * Represents individual Blackjack hands. The cards are kept for
+ * display, and the hand's HandState is updated as each card is
+ * added, so scoring a hand during play is a table lookup.
  *
  * @author Daniel Kim
  * @version 3-25-22
@@ -10,6 +12,13 @@ import java.util.List;
 public class Hand {
     private final List<Card> CARDS;
     private double betMultiplier = 1;
+    private int seat = 0;
+    private boolean isSplitHand = false;
+    private boolean isSurrendered = false;
+    // Insurance bet, in units of the original bet
+    private double insurance = 0;
+    private int state = HandState.EMPTY;
+    private long compositionHash = 0;
 
     /**
      * Default constructor
@@ -30,6 +39,8 @@ public class Hand {
         this.betMultiplier = betMultiplier;
         this.CARDS = new ArrayList<>();
         this.CARDS.add(firstCard);
+        this.state = HandState.next(HandState.EMPTY, firstCard.getRankIndex());
+        this.compositionHash = Zobrist.handKey(firstCard.getRankIndex());
     }
 
     /**
@@ -41,6 +52,12 @@ public class Hand {
     {
         this.betMultiplier = hand.getBetMultiplier();
         this.CARDS = new ArrayList<>(hand.getCards());
+        this.seat = hand.getSeat();
+        this.isSplitHand = hand.isSplitHand();
+        this.isSurrendered = hand.isSurrendered();
+        this.insurance = hand.getInsurance();
+        this.state = hand.getState();
+        this.compositionHash = hand.getCompositionHash();
     }
 
     /*
@@ -48,7 +65,30 @@ public class Hand {
      */
 
     /**
-     * Determines the score of the hand.
+     * Gets the state of the hand, which encodes its score and
+     * whether it is soft, a pair, a blackjack, or bust.
+     *
+     * @return HandState of the hand
+     */
+    public int getState()
+    {
+        return state;
+    }
+
+    /**
+     * Gets a hash of the ranks in the hand, regardless of order
+     * or suit. It is updated as each card is added.
+     *
+     * @return hash of the hand's composition
+     */
+    public long getCompositionHash()
+    {
+        return compositionHash;
+    }
+
+    /**
+     * Determines the score of the hand. Unless the hand has busted,
+     * this is a lookup on its state.
      *
      * @param  scoreOnly  whether to disregard the distinction between
      *                    soft and hard hands and return the score only
@@ -57,6 +97,25 @@ public class Hand {
      *                    0 is an empty hand, and a number &gt; 21 is bust
      */
     public int handScore(boolean scoreOnly)
+    {
+        if (state != HandState.BUST) {
+            return scoreOnly ? HandState.score(state) : HandState.signedScore(state);
+        }
+
+        // The exact total of a bust hand is only needed for display
+        return countScore(scoreOnly);
+    }
+
+    /**
+     * Determines the score of the hand by counting its cards.
+     *
+     * @param  scoreOnly  whether to disregard the distinction between
+     *                    soft and hard hands and return the score only
+     * @return            positive number for hard hands, negative number
+     *                    for soft hands (score is the absolute value),
+     *                    0 is an empty hand, and a number &gt; 21 is bust
+     */
+    private int countScore(boolean scoreOnly)
     {
         int sum = 0;
         boolean isSoft = false;
@@ -138,6 +197,59 @@ public class Hand {
         return betMultiplier;
     }
 
+    /**
+     * Gets the seat (original hand of the round) that this hand
+     * belongs to. Hands created by splitting keep the seat.
+     *
+     * @return index of the seat
+     */
+    public int getSeat()
+    {
+        return seat;
+    }
+
+    /**
+     * Gets whether this hand was created by a split.
+     *
+     * @return whether the hand came from a split
+     */
+    public boolean isSplitHand()
+    {
+        return isSplitHand;
+    }
+
+    /**
+     * Gets whether the player surrendered this hand.
+     *
+     * @return whether the hand was surrendered
+     */
+    public boolean isSurrendered()
+    {
+        return isSurrendered;
+    }
+
+    /**
+     * Gets the insurance bet on this hand.
+     *
+     * @return insurance in units of the original bet, 0 if none
+     */
+    public double getInsurance()
+    {
+        return insurance;
+    }
+
+    /**
+     * Determines how many bets the hand's insurance won or lost.
+     * Insurance pays 2 to 1 if the dealer has blackjack.
+     *
+     * @param  dealerHand  the Hand of the dealer
+     * @return             net change in units of the original bet
+     */
+    public double insuranceNetUnits(Hand dealerHand)
+    {
+        return dealerHand.isBlackjack() ? 2 * insurance : -insurance;
+    }
+
     /**
      * Counts the number of cards in the hand.
      *
@@ -156,7 +268,7 @@ public class Hand {
      */
     public boolean isBlackjack()
     {
-        return CARDS.size() == 2 && handScore(true) == 21;
+        return state == HandState.BLACKJACK;
     }
 
     /**
@@ -167,11 +279,7 @@ public class Hand {
      */
     public boolean isSplittable()
     {
-        if (CARDS.size() == 2) {
-            return CARDS.get(0).getRank().equals(CARDS.get(1).getRank());
-        }
-
-        return false;
+        return HandState.isPair(state);
     }
 
     /**
@@ -230,35 +338,39 @@ public class Hand {
 
     /**
      * Determines whether the player won, lost, or tied with the
-     * dealer. 0 = lose, 1 = win, 2 = blackjack, 3 = tie
+     * dealer. 0 = lose, 1 = win, 2 = blackjack, 3 = tie,
+     * 4 = surrendered
      *
      * @param  dealerHand  the Hand of the dealer
      * @return            round result/winner
      */
     public int determineHandResult(Hand dealerHand)
     {
-        int playerScore = handScore(true);
-        int dealerScore = dealerHand.handScore(true);
-        int dealerCardsSize = dealerHand.numberOfCards();
+        if (isSurrendered) return 4;
+
+        int playerScore = HandState.score(state);
+        int dealerScore = HandState.score(dealerHand.getState());
+        int dealerState = dealerHand.getState();
 
         if (playerScore == 0 || dealerScore == 0) return 0;
 
         if (playerScore > 21) {
             return 0;
         } else if (dealerScore > 21) {
-            return 1;
+            // A blackjack still pays as one when the dealer busts
+            return state == HandState.BLACKJACK ? 2 : 1;
         } else if (playerScore > dealerScore) {
-            return isBlackjack() ? 2 : 1;
+            return state == HandState.BLACKJACK ? 2 : 1;
         } else if (dealerScore > playerScore) {
             return 0;
         } else if (dealerScore == 21) {
-            if (dealerCardsSize == CARDS.size()) {
-                // Both the player and the dealer have 21
+            if (dealerState == state) {
+                // Both the player and the dealer have blackjack
                 return 3;
-            } else if (dealerCardsSize == 2) {
+            } else if (dealerState == HandState.BLACKJACK) {
                 // Only dealer has blackjack
                 return 0;
-            } else if (CARDS.size() == 2){
+            } else if (state == HandState.BLACKJACK) {
                 // Only player has blackjack
                 return 2;
             } else {
@@ -279,6 +391,8 @@ public class Hand {
      */
     public String determineResultReason(Hand dealerHand)
     {
+        if (isSurrendered) return "Surrendered. Half of your bet was returned.";
+
         int playerScore = handScore(true);
         int dealerScore = dealerHand.handScore(true);
         int dealerCardsSize = dealerHand.numberOfCards();
@@ -286,7 +400,7 @@ public class Hand {
         if (playerScore > 21) {
             return "Bust! You lost.";
         } else if (dealerScore > 21) {
-            return "Dealer bust! You won!";
+            return isBlackjack() ? "Blackjack! You won!" : "Dealer bust! You won!";
         } else if (playerScore > dealerScore) {
             return isBlackjack() ? "Blackjack! You won!" : "You won!";
         } else if (dealerScore > playerScore) {
@@ -323,6 +437,8 @@ public class Hand {
     public void addCard(Card card)
     {
         this.CARDS.add(card);
+        this.state = HandState.next(state, card.getRankIndex());
+        this.compositionHash += Zobrist.handKey(card.getRankIndex());
     }
 
     /**
@@ -331,6 +447,8 @@ public class Hand {
     public void clearCards()
     {
         this.CARDS.clear();
+        this.state = HandState.EMPTY;
+        this.compositionHash = 0;
     }
 
     /**
@@ -343,4 +461,42 @@ public class Hand {
     {
         this.betMultiplier = betMultiplier;
     }
+
+    /**
+     * Sets the seat (original hand of the round) this hand belongs to.
+     *
+     * @param  seat  index of the seat
+     */
+    public void setSeat(int seat)
+    {
+        this.seat = seat;
+    }
+
+    /**
+     * Marks this hand as created by a split.
+     *
+     * @param  isSplitHand  whether the hand came from a split
+     */
+    public void setSplitHand(boolean isSplitHand)
+    {
+        this.isSplitHand = isSplitHand;
+    }
+
+    /**
+     * Sets the insurance bet on this hand.
+     *
+     * @param  insurance  insurance in units of the original bet
+     */
+    public void setInsurance(double insurance)
+    {
+        this.insurance = insurance;
+    }
+
+    /**
+     * Surrenders the hand. Half of its bet is returned.
+     */
+    public void surrender()
+    {
+        this.isSurrendered = true;
+    }
 }
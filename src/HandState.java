@@ -0,0 +1,223 @@
+/**
+ * Encodes blackjack hands as small integer states. Everything the
+ * engine needs to know about a hand (its score, whether it is soft,
+ * a pair, a blackjack or bust) depends only on its state, and
+ * drawing a card moves a hand to its next state with one lookup in
+ * a precomputed state-by-rank table.
+ *
+ * States:
+ *   EMPTY:         no cards
+ *   ONE_CARD + r:  one card of rank index r
+ *   PAIR + r:      two cards of rank index r
+ *   BLACKJACK:     two cards totaling 21
+ *   HARD + n:      hard total n (2-21)
+ *   SOFT + n - 12: soft total n (12-21)
+ *   BUST:          total over 21
+ *
+ * Rank indices are 0-12 for 2, 3, ..., 10, J, Q, K, A.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class HandState {
+    public static final int EMPTY = 0;
+    public static final int ONE_CARD = 1;
+    public static final int PAIR = ONE_CARD + 13;
+    public static final int BLACKJACK = PAIR + 13;
+    public static final int HARD = BLACKJACK + 1;
+    public static final int SOFT = HARD + 22;
+    public static final int BUST = SOFT + 10;
+    public static final int NUM_OF_STATES = BUST + 1;
+
+    /**
+     * Score to report for busted hands. Any value over 21 would do;
+     * the exact total of a bust hand is not part of its state.
+     */
+    public static final int BUST_SCORE = 22;
+
+    // Value of each rank index, aces are initially 11
+    private static final int[] RANK_VALUES =
+            {2, 3, 4, 5, 6, 7, 8, 9, 10, 10, 10, 10, 11};
+
+    private static final int[] TRANSITIONS = new int[NUM_OF_STATES * 13];
+    private static final int[] SCORES = new int[NUM_OF_STATES];
+    private static final boolean[] IS_SOFT = new boolean[NUM_OF_STATES];
+
+    static {
+        for (int state = 0; state < NUM_OF_STATES; state++) {
+            SCORES[state] = computeScore(state);
+            IS_SOFT[state] = state == BLACKJACK
+                    || (state >= SOFT && state < BUST)
+                    || state == ONE_CARD + 12 || state == PAIR + 12;
+        }
+
+        for (int state = 0; state < NUM_OF_STATES; state++) {
+            for (int rank = 0; rank < 13; rank++) {
+                TRANSITIONS[state * 13 + rank] = computeNext(state, rank);
+            }
+        }
+    }
+
+    private HandState()
+    {}
+
+    /*
+     * Lookups
+     */
+
+    /**
+     * Gets the state reached by adding a card to a hand.
+     *
+     * @param  state  state of the hand
+     * @param  rank   rank index (0-12) of the card drawn
+     * @return        new state of the hand
+     */
+    public static int next(int state, int rank)
+    {
+        return TRANSITIONS[state * 13 + rank];
+    }
+
+    /**
+     * Gets the score of a hand, BUST_SCORE if it has busted
+     * and 0 if it is empty.
+     *
+     * @param  state  state of the hand
+     * @return        score of the hand
+     */
+    public static int score(int state)
+    {
+        return SCORES[state];
+    }
+
+    /**
+     * Gets the score of a hand in the same form as
+     * Hand.handScore(false): negative for soft hands.
+     *
+     * @param  state  state of the hand
+     * @return        score, negative if soft
+     */
+    public static int signedScore(int state)
+    {
+        return IS_SOFT[state] ? -SCORES[state] : SCORES[state];
+    }
+
+    /**
+     * Determines whether a hand is soft (has an ace counted as 11).
+     *
+     * @param  state  state of the hand
+     * @return        whether the hand is soft
+     */
+    public static boolean isSoft(int state)
+    {
+        return IS_SOFT[state];
+    }
+
+    /**
+     * Determines whether a hand is two cards of the same rank.
+     *
+     * @param  state  state of the hand
+     * @return        whether the hand is a pair
+     */
+    public static boolean isPair(int state)
+    {
+        return state >= PAIR && state < BLACKJACK;
+    }
+
+    /**
+     * Gets the rank index of a pair or a one-card hand.
+     *
+     * @param  state  state of the hand, a pair or one card
+     * @return        rank index (0-12)
+     */
+    public static int rankOf(int state)
+    {
+        return isPair(state) ? state - PAIR : state - ONE_CARD;
+    }
+
+    /**
+     * Gets the value of a rank index, 2-10 or 11 for aces.
+     *
+     * @param  rank  rank index (0-12)
+     * @return       value of the rank
+     */
+    public static int rankValue(int rank)
+    {
+        return RANK_VALUES[rank];
+    }
+
+    /*
+     * Table construction
+     */
+
+    /**
+     * Determines the score of a state from what it encodes.
+     *
+     * @param  state  state of a hand
+     * @return        score of the hand
+     */
+    private static int computeScore(int state)
+    {
+        if (state == EMPTY) {
+            return 0;
+        } else if (state < PAIR) {
+            return RANK_VALUES[state - ONE_CARD];
+        } else if (state < BLACKJACK) {
+            // A pair of aces is a soft 12
+            int value = RANK_VALUES[state - PAIR];
+            return value == 11 ? 12 : 2 * value;
+        } else if (state == BLACKJACK) {
+            return 21;
+        } else if (state < SOFT) {
+            return state - HARD;
+        } else if (state < BUST) {
+            return state - SOFT + 12;
+        } else {
+            return BUST_SCORE;
+        }
+    }
+
+    /**
+     * Adds a card to the hand a state encodes, following the same
+     * soft/hard rules as Hand.handScore.
+     *
+     * @param  state  state of the hand
+     * @param  rank   rank index of the card
+     * @return        next state
+     */
+    private static int computeNext(int state, int rank)
+    {
+        if (state == BUST) return BUST;
+
+        if (state == EMPTY) return ONE_CARD + rank;
+
+        int value = RANK_VALUES[rank];
+
+        if (state < PAIR) {
+            // Second card: pairs and blackjacks are their own states
+            int firstRank = state - ONE_CARD;
+            if (firstRank == rank) return PAIR + rank;
+            if (RANK_VALUES[firstRank] + value == 21) return BLACKJACK;
+        }
+
+        int sum = SCORES[state];
+        boolean isSoft = IS_SOFT[state];
+
+        if (value == 11) {
+            // An ace is 11 unless that would bust the hand
+            if (sum + 11 <= 21) {
+                return SOFT + sum + 11 - 12;
+            }
+            value = 1;
+        }
+
+        sum += value;
+        if (sum > 21 && isSoft) {
+            // The soft ace becomes a 1
+            sum -= 10;
+            isSoft = false;
+        }
+
+        if (sum > 21) return BUST;
+        return isSoft ? SOFT + sum - 12 : HARD + sum;
+    }
+}
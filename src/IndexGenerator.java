@@ -0,0 +1,420 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates count-based deviations for a strategy chart. It plays
+ * rounds with the chart, and at the first decision of each round
+ * plays out every legal action on a copy of the game, all drawing
+ * the same cards, to find how much better or worse each action does
+ * than the chart's. These differences are tallied by chart cell and
+ * true count bucket.
+ *
+ * For each cell, a weighted line through the buckets gives the count
+ * where an action overtakes the chart's. The result is the chart with
+ * those crossovers added as dev lines, which Strategy.load reads.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class IndexGenerator {
+    // Fraction of the shoe left when it is refilled
+    private static final double PENETRATION = 0.25;
+    private static final int NUM_OF_BUCKETS = 2 * Strategy.MAX_COUNT + 1;
+    private static final int NUM_OF_ACTIONS = 5;
+    private static final String[] UPCARDS = {"2", "3", "4", "5", "6", "7", "8", "9", "10", "A"};
+    // Buckets with fewer samples than this are left out of the fit
+    private static final int MIN_SAMPLES = 100;
+    // How many standard errors the slope must be from 0
+    private static final double MIN_SLOPE_Z = 3;
+
+    private final List<String> chart;
+    private final Strategy strategy;
+    private final Rules rules;
+    private final int numOfDecks;
+
+    /**
+     * Constructor for a generator
+     *
+     * @param  chart       lines of the strategy chart; any dev lines are dropped
+     * @param  rules       table rules
+     * @param  numOfDecks  decks in the shoe
+     */
+    public IndexGenerator(List<String> chart, Rules rules, int numOfDecks)
+    {
+        this.chart = new ArrayList<>();
+        for (String line : chart) {
+            if (!line.strip().toLowerCase().startsWith("dev")) this.chart.add(line);
+        }
+
+        this.strategy = Strategy.compile("basic", this.chart);
+        this.rules = rules;
+        this.numOfDecks = numOfDecks;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: IndexGenerator (chart file) [rounds] [rules] [decks] [output file]");
+            return;
+        }
+
+        List<String> chart = Files.readAllLines(Paths.get(args[0]));
+        long rounds = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000;
+        Rules rules = args.length > 2 ? Rules.parse(args[2]) : Rules.STANDARD;
+        int numOfDecks = args.length > 3 ? Integer.parseInt(args[3]) : 6;
+
+        IndexGenerator generator = new IndexGenerator(chart, rules, numOfDecks);
+        int numOfWorkers = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(numOfWorkers);
+
+        List<String> output;
+        long start = System.nanoTime();
+        try {
+            output = generator.generate(rounds, System.nanoTime(), numOfWorkers, executor);
+        } finally {
+            executor.shutdown();
+        }
+        System.err.println(rounds + " rounds in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        if (args.length > 4) {
+            Files.write(Paths.get(args[4]), output);
+        } else {
+            output.forEach(System.out::println);
+        }
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Plays rounds in parallel and derives the deviations.
+     *
+     * @param  rounds        total rounds to play
+     * @param  seed          seed for the workers' random number streams
+     * @param  numOfWorkers  pieces to split the rounds into
+     * @param  executor      runs the pieces
+     * @return               the chart with a dev line for each crossover
+     */
+    public List<String> generate(long rounds, long seed, int numOfWorkers, ExecutorService executor)
+    {
+        List<Future<Tally>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfWorkers; i++) {
+            long workerRounds = rounds / numOfWorkers + (i < rounds % numOfWorkers ? 1 : 0);
+            Rng rng = Rng.stream(seed, i);
+            futures.add(executor.submit(() -> play(workerRounds, rng)));
+        }
+
+        Tally tally = new Tally();
+        try {
+            for (Future<Tally> future : futures) {
+                tally.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+
+        List<String> output = new ArrayList<>(chart);
+        output.add("");
+        output.add("# Generated from " + rounds + " rounds, " + rules + ", " + numOfDecks + " decks");
+        output.addAll(deviations(tally));
+        return output;
+    }
+
+    /**
+     * Plays rounds with the chart, tallying every legal action at the
+     * first decision of each round.
+     *
+     * @param  rounds  rounds to play
+     * @param  rng     random number generator for the cards
+     * @return         differences from the chart's action
+     */
+    private Tally play(long rounds, Rng rng)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(numOfDecks);
+        game.setRng(rng);
+        Tally tally = new Tally();
+
+        for (long round = 0; round < rounds; round++) {
+            if (game.getShoe().size() < PENETRATION * 52 * numOfDecks) {
+                game.fillShoe();
+            }
+
+            game.deal();
+            if (!game.isRoundOngoing()) continue;
+
+            int state = rowOf(game.getCurrentHand().getState());
+            int column = Strategy.upcardColumn(game.getUpcard());
+            int bucket = Strategy.countBucket(game.getShoe().getTrueCount());
+            int chartAction = strategy.decide(game);
+            tally.setChartAction(state, column, chartAction);
+
+            // Every action is played out on the same cards
+            long forkSeed = rng.nextLong();
+            double chartNet = playOut(game, chartAction, forkSeed);
+            for (int action = 0; action < NUM_OF_ACTIONS; action++) {
+                if (action != chartAction && isLegal(game, action)) {
+                    tally.add(bucket, state, column, action,
+                            playOut(game, action, forkSeed) - chartNet);
+                }
+            }
+
+            strategy.play(game);
+        }
+
+        return tally;
+    }
+
+    /**
+     * Takes an action on a copy of the game and plays the rest of
+     * the round with the chart.
+     *
+     * @param  game      game at a decision
+     * @param  action    action to take
+     * @param  forkSeed  seed for the copy's cards
+     * @return           net units won
+     */
+    private double playOut(Blackjack game, int action, long forkSeed)
+    {
+        Blackjack copy = new Blackjack(game);
+        copy.setRng(new Rng(forkSeed));
+
+        Strategy.act(copy, action);
+        strategy.play(copy);
+        return Strategy.netUnits(copy);
+    }
+
+    /**
+     * Finds, for each chart cell, the action that overtakes the chart's
+     * at the count closest to 0.
+     *
+     * @param  tally  differences from the chart's action
+     * @return        dev lines
+     */
+    private List<String> deviations(Tally tally)
+    {
+        List<String> lines = new ArrayList<>();
+
+        for (int state = 0; state < HandState.NUM_OF_STATES; state++) {
+            if (state != rowOf(state)) continue;
+
+            for (int column = 0; column < UPCARDS.length; column++) {
+                int chartAction = tally.getChartAction(state, column);
+                if (chartAction < 0) continue;
+
+                Crossover best = null;
+                int bestAction = -1;
+                for (int action = 0; action < NUM_OF_ACTIONS; action++) {
+                    Crossover crossover = crossover(tally, state, column, action);
+                    if (crossover != null
+                            && (best == null || Math.abs(crossover.index()) < Math.abs(best.index()))) {
+                        best = crossover;
+                        bestAction = action;
+                    }
+                }
+
+                if (best != null) {
+                    lines.add("dev," + Strategy.label(state) + "," + UPCARDS[column] + ","
+                            + (best.isRising() ? ">=" : "<=") + best.index() + ","
+                            + chartCode(bestAction, chartAction));
+                }
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Fits a weighted line to an action's mean difference from the
+     * chart's action by count, and finds where it crosses 0.
+     *
+     * @param  tally   differences from the chart's action
+     * @param  state   chart row
+     * @param  column  upcard column
+     * @param  action  action compared with the chart's
+     * @return         crossover, or null if there is no clear one
+     */
+    private static Crossover crossover(Tally tally, int state, int column, int action)
+    {
+        double sumW = 0, sumWX = 0, sumWY = 0, sumWXX = 0, sumWXY = 0;
+        int numOfPoints = 0;
+
+        for (int bucket = 0; bucket < NUM_OF_BUCKETS; bucket++) {
+            int i = Tally.index(bucket, state, column, action);
+            long n = tally.counts[i];
+            if (n < MIN_SAMPLES) continue;
+
+            double mean = tally.sums[i] / n;
+            double variance = Math.max(1e-9, tally.sumsOfSquares[i] / n - mean * mean);
+            double weight = n / variance;
+            double x = bucket - Strategy.MAX_COUNT;
+
+            sumW += weight;
+            sumWX += weight * x;
+            sumWY += weight * mean;
+            sumWXX += weight * x * x;
+            sumWXY += weight * x * mean;
+            numOfPoints++;
+        }
+        if (numOfPoints < 3) return null;
+
+        double spread = sumWXX - sumWX * sumWX / sumW;
+        if (spread <= 0) return null;
+        double slope = (sumWXY - sumWX * sumWY / sumW) / spread;
+        double intercept = (sumWY - slope * sumWX) / sumW;
+
+        // The slope's standard error is 1 / sqrt(spread)
+        if (Math.abs(slope) * Math.sqrt(spread) < MIN_SLOPE_Z) return null;
+
+        // Rising: better from the first whole count past the root; falling: up to the last
+        double root = -intercept / slope;
+        int index = (int) (slope > 0 ? Math.ceil(root) : Math.floor(root));
+        if (Math.abs(index) > Strategy.MAX_COUNT) return null;
+
+        return new Crossover(index, slope > 0);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Gets the chart code for taking an action instead of the chart's,
+     * falling back to the chart's action when it isn't allowed.
+     *
+     * @param  action       action taken
+     * @param  chartAction  chart's action
+     * @return              chart code
+     */
+    private static String chartCode(int action, int chartAction)
+    {
+        return switch (action) {
+            case Strategy.HIT -> "H";
+            case Strategy.STAND -> "S";
+            case Strategy.SPLIT -> "P";
+            case Strategy.DOUBLE -> chartAction == Strategy.STAND ? "Ds" : "D";
+            default -> chartAction == Strategy.STAND ? "Rs"
+                    : chartAction == Strategy.SPLIT ? "Rp" : "Rh";
+        };
+    }
+
+    /**
+     * Determines whether an action can be taken on the current hand.
+     *
+     * @param  game    game at a decision
+     * @param  action  action to check
+     * @return         whether it is allowed
+     */
+    private static boolean isLegal(Blackjack game, int action)
+    {
+        return switch (action) {
+            case Strategy.DOUBLE -> game.canDoubleDown();
+            case Strategy.SPLIT -> game.canSplit();
+            case Strategy.SURRENDER -> game.canSurrender();
+            default -> true;
+        };
+    }
+
+    /**
+     * Gets the chart row of a state, so that every pair of tens
+     * shares the row of a pair of 10s.
+     *
+     * @param  state  hand state
+     * @return        state that stands for the row
+     */
+    private static int rowOf(int state)
+    {
+        if (HandState.isPair(state) && HandState.rankValue(HandState.rankOf(state)) == 10) {
+            return HandState.PAIR + 8;
+        }
+        return state;
+    }
+
+    /**
+     * Count where an action overtakes the chart's, and whether it is
+     * better above that count or below it
+     */
+    private record Crossover(int index, boolean isRising)
+    {}
+
+    /**
+     * Sums of the differences from the chart's action, by count
+     * bucket, chart row, upcard column and action.
+     */
+    private static class Tally {
+        private static final int SIZE =
+                NUM_OF_BUCKETS * HandState.NUM_OF_STATES * UPCARDS.length * NUM_OF_ACTIONS;
+
+        private final double[] sums = new double[SIZE];
+        private final double[] sumsOfSquares = new double[SIZE];
+        private final long[] counts = new long[SIZE];
+        // The chart's action for each row and column, or -1 if never seen
+        private final int[] chartActions = new int[HandState.NUM_OF_STATES * UPCARDS.length];
+
+        Tally()
+        {
+            Arrays.fill(chartActions, -1);
+        }
+
+        /**
+         * Adds one difference.
+         */
+        void add(int bucket, int state, int column, int action, double difference)
+        {
+            int i = index(bucket, state, column, action);
+            sums[i] += difference;
+            sumsOfSquares[i] += difference * difference;
+            counts[i]++;
+        }
+
+        /**
+         * Gets the action the chart took in a cell.
+         */
+        int getChartAction(int state, int column)
+        {
+            return chartActions[state * UPCARDS.length + column];
+        }
+
+        /**
+         * Records the action the chart took in a cell. The generator's
+         * chart has no deviations, so it is the same at every count.
+         */
+        void setChartAction(int state, int column, int action)
+        {
+            chartActions[state * UPCARDS.length + column] = action;
+        }
+
+        /**
+         * Adds the sums of another tally to this one.
+         */
+        void merge(Tally other)
+        {
+            for (int i = 0; i < SIZE; i++) {
+                sums[i] += other.sums[i];
+                sumsOfSquares[i] += other.sumsOfSquares[i];
+                counts[i] += other.counts[i];
+            }
+            for (int i = 0; i < chartActions.length; i++) {
+                chartActions[i] = Math.max(chartActions[i], other.chartActions[i]);
+            }
+        }
+
+        static int index(int bucket, int state, int column, int action)
+        {
+            return ((bucket * HandState.NUM_OF_STATES + state) * UPCARDS.length + column)
+                    * NUM_OF_ACTIONS + action;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the small JSON documents the advice service
+ * exchanges. Objects are read as maps, arrays as lists, numbers as
+ * doubles, and true, false and null as themselves.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class Json {
+    private final String text;
+    private int position = 0;
+
+    private Json(String text)
+    {
+        this.text = text;
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Reads one value and the whitespace after it.
+     *
+     * @return value read
+     */
+    private Object readValue()
+    {
+        skipWhitespace();
+        if (position >= text.length()) throw error("Unexpected end of JSON");
+
+        char c = text.charAt(position);
+        Object value;
+        if (c == '{') {
+            value = readObject();
+        } else if (c == '[') {
+            value = readArray();
+        } else if (c == '"') {
+            value = readString();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+            value = true;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+            value = false;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+            value = null;
+        } else {
+            value = readNumber();
+        }
+
+        skipWhitespace();
+        return value;
+    }
+
+    private Map<String, Object> readObject()
+    {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (consume('}')) return object;
+
+        do {
+            skipWhitespace();
+            if (position >= text.length() || text.charAt(position) != '"') {
+                throw error("Expected a key");
+            }
+            String key = readString();
+            skipWhitespace();
+            if (!consume(':')) throw error("Expected :");
+            object.put(key, readValue());
+        } while (consume(','));
+
+        if (!consume('}')) throw error("Expected , or }");
+        return object;
+    }
+
+    private List<Object> readArray()
+    {
+        List<Object> array = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (consume(']')) return array;
+
+        do {
+            array.add(readValue());
+        } while (consume(','));
+
+        if (!consume(']')) throw error("Expected , or ]");
+        return array;
+    }
+
+    private String readString()
+    {
+        StringBuilder string = new StringBuilder();
+        position++;
+
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') return string.toString();
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+
+            if (position >= text.length()) break;
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case 'n' -> string.append('\n');
+                case 't' -> string.append('\t');
+                case 'r' -> string.append('\r');
+                case 'b' -> string.append('\b');
+                case 'f' -> string.append('\f');
+                case 'u' -> {
+                    if (position + 4 > text.length()) throw error("Bad escape");
+                    string.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    position += 4;
+                }
+                default -> string.append(escaped);
+            }
+        }
+
+        throw error("Unterminated string");
+    }
+
+    private Double readNumber()
+    {
+        int start = position;
+        while (position < text.length() && "+-.eE0123456789".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+
+        try {
+            return Double.parseDouble(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw error("Unexpected character");
+        }
+    }
+
+    private boolean consume(char c)
+    {
+        if (position < text.length() && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace()
+    {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException(message + " at character " + position);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param  text                      JSON to parse
+     * @return                           map, list, string, double, boolean or null
+     * @throws IllegalArgumentException  if it isn't valid JSON
+     */
+    public static Object parse(String text)
+    {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        if (json.position != text.length()) throw json.error("Unexpected text after the value");
+        return value;
+    }
+
+    /**
+     * Appends a string as a quoted JSON string.
+     *
+     * @param  out     where to append
+     * @param  string  string to quote
+     */
+    public static void appendString(StringBuilder out, String string)
+    {
+        out.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Sizes each round's bet from the shoe with the Kelly criterion: bet
+ * the fraction of the bankroll that is the edge over the variance.
+ * Half Kelly and other fractions give up a little growth for much
+ * smaller swings, and a cap keeps bets within the table limit.
+ *
+ * The edge is basic strategy's edge off the top for the rules, plus
+ * the effect of removal of each rank times how far the shoe's share
+ * of that rank is from a full deck's. This takes one pass over the
+ * 13 rank counts the shoe keeps, so it can run before every deal.
+ *
+ * With several hands, each hand's results are correlated with the
+ * others' through the dealer's hand, so the bet per hand is smaller
+ * than for one hand, though more is bet in all.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class KellySizer {
+    // Change in the player's edge from removing one card of each rank from one deck (Griffin, S17)
+    private static final double[] EFFECTS_OF_REMOVAL = {
+            0.0038, 0.0044, 0.0055, 0.0069, 0.0046, 0.0028, 0.0000, -0.0018,
+            -0.0051, -0.0051, -0.0051, -0.0051, -0.0061
+    };
+    // Variance of one hand's result and covariance of two hands' in one round, in units squared
+    private static final double VARIANCE = 1.33;
+    private static final double COVARIANCE = 0.48;
+    // Fraction of the shoe left when the bulk run refills it
+    private static final double PENETRATION = 0.25;
+
+    private final Rules rules;
+    private final double fraction;
+    private final double minBet;
+    private final double maxBet;
+
+    /**
+     * Constructor for a sizer
+     *
+     * @param  rules     table rules
+     * @param  fraction  fraction of the Kelly bet, 1 for full Kelly
+     * @param  minBet    bet when the player has no edge
+     * @param  maxBet    largest bet per hand
+     */
+    public KellySizer(Rules rules, double fraction, double minBet, double maxBet)
+    {
+        if (fraction <= 0 || minBet <= 0 || maxBet < minBet) {
+            throw new IllegalArgumentException("Need a positive fraction and 0 < min bet <= max bet");
+        }
+
+        this.rules = rules;
+        this.fraction = fraction;
+        this.minBet = minBet;
+        this.maxBet = maxBet;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: KellySizer (chart file) [fraction] [min bet] [max bet] [bankroll] [hands] [rounds] [rules] [decks]");
+            return;
+        }
+
+        Strategy strategy = Strategy.load(Paths.get(args[0]));
+        double fraction = args.length > 1 ? Double.parseDouble(args[1]) : 0.5;
+        double minBet = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+        double maxBet = args.length > 3 ? Double.parseDouble(args[3]) : 500;
+        double funds = args.length > 4 ? Double.parseDouble(args[4]) : 10_000;
+        int numOfHands = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        long rounds = args.length > 6 ? Long.parseLong(args[6]) : 1_000_000;
+        Rules rules = args.length > 7 ? Rules.parse(args[7]) : Rules.STANDARD;
+        int numOfDecks = args.length > 8 ? Integer.parseInt(args[8]) : 6;
+
+        KellySizer sizer = new KellySizer(rules, fraction, minBet, maxBet);
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(numOfDecks);
+        game.setNumOfHands(numOfHands);
+        Bankroll bankroll = new Bankroll();
+        bankroll.setBlackjackPayout(rules.blackjackPayout());
+        bankroll.setFunds(funds);
+
+        long sizingNanos = 0;
+        long played = 0;
+        double wagered = 0;
+        while (played < rounds) {
+            if (game.getShoe().size() < PENETRATION * 52 * numOfDecks) {
+                game.fillShoe();
+            }
+
+            long start = System.nanoTime();
+            double bet = sizer.betFor(game.getShoe(), bankroll.getFunds(), numOfHands);
+            sizingNanos += System.nanoTime() - start;
+            if (bet == 0 || !bankroll.canPayRound(numOfHands)) break;
+
+            bankroll.setBet(bet);
+            bankroll.payRound(numOfHands);
+            game.deal();
+            strategy.play(game);
+
+            // Doubles and splits put up another bet each
+            int units = 0;
+            for (Hand hand : game.getPlayerHands()) units += (int) hand.getBetMultiplier();
+            bankroll.payBet(units - numOfHands);
+            bankroll.settleRound(game.getPlayerHands(), game.getDealerHand());
+            wagered += bet * units;
+            played++;
+        }
+
+        System.out.println(sizer + ", " + numOfHands + " hand(s), " + rules + ", " + numOfDecks + " decks");
+        System.out.println(played < rounds ? "Ruined after " + played + " rounds" : played + " rounds");
+        System.out.println(bankroll.getStats());
+        System.out.printf("Final bankroll: %s, average wager %s per round, %.1f ns to size each bet%n",
+                bankroll, Bankroll.formatMoney(wagered / Math.max(1, played)),
+                (double) sizingNanos / Math.max(1, played));
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Estimates the player's edge on the next round.
+     *
+     * @param  shoe  shoe the round will be dealt from
+     * @return       expected net units won per unit bet
+     */
+    public double edge(Shoe shoe)
+    {
+        double edge = baseEdge(rules, shoe.getNumOfDecks());
+        if (shoe.isInfinite()) return edge;
+
+        // A rank's effect of removal, times how many cards of it are missing per 51 others
+        double size = shoe.size();
+        for (int rank = 0; rank < 13; rank++) {
+            edge -= 51 * EFFECTS_OF_REMOVAL[rank] * (shoe.getRankCount(rank) / size - 1 / 13.0);
+        }
+        return edge;
+    }
+
+    /**
+     * Gets the bet per hand for the next round.
+     *
+     * @param  shoe        shoe the round will be dealt from
+     * @param  funds       current bankroll
+     * @param  numOfHands  hands that will be dealt
+     * @return             bet per hand in whole cents, or 0 if the
+     *                     bankroll can't cover the smallest bet
+     */
+    public double betFor(Shoe shoe, double funds, int numOfHands)
+    {
+        double edge = edge(shoe);
+        double bet = minBet;
+
+        if (edge > 0) {
+            // Growth is k b e - (b^2 / 2)(k var + k (k - 1) cov), highest at this b
+            double kelly = edge * funds / (VARIANCE + (numOfHands - 1) * COVARIANCE);
+            bet = Math.min(maxBet, Math.max(minBet, fraction * kelly));
+        }
+
+        bet = Math.min(bet, funds / numOfHands);
+        double cents = Math.floor(bet * Bankroll.MINOR_UNITS);
+        return cents < minBet * Bankroll.MINOR_UNITS ? 0 : cents / Bankroll.MINOR_UNITS;
+    }
+
+    /**
+     * Returns a description such as "0.5 Kelly, $5.00 to $500.00".
+     *
+     * @return description
+     */
+    @Override
+    public String toString()
+    {
+        return fraction + " Kelly, " + Bankroll.formatMoney(minBet) + " to " + Bankroll.formatMoney(maxBet);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Estimates basic strategy's edge off the top from published rule
+     * effects. It is relative to a single deck, S17, no doubling after
+     * splits and 3:2, which is about even.
+     *
+     * @param  rules       table rules
+     * @param  numOfDecks  decks in the shoe
+     * @return             edge per unit bet
+     */
+    public static double baseEdge(Rules rules, int numOfDecks)
+    {
+        double edge = numOfDecks == 1 ? 0
+                : numOfDecks == 2 ? -0.0035
+                : numOfDecks <= 4 ? -0.0048
+                : numOfDecks <= 6 ? -0.0054
+                : numOfDecks <= 8 ? -0.0057 : -0.0060;
+
+        if (rules.dealerHitsSoft17()) edge -= 0.0022;
+        if (rules.doubleAfterSplit()) edge += 0.0014;
+        if (rules.lateSurrender()) edge += 0.0008;
+        if (!rules.dealerPeeks()) edge -= 0.0011;
+        if (rules.maxSplitHands() == 2) edge -= 0.0004;
+        // About 4.53% of hands are blackjacks, so each unit of payout is worth that much
+        edge -= (1.5 - rules.blackjackPayout()) * 0.0453;
+        return edge;
+    }
+}
@@ -1,4 +1,16 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
 
 /**
  * Provides terminal user interface for Blackjack.
@@ -9,13 +21,96 @@ import java.util.Scanner;
 public class Main {
     private static final Scanner input = new Scanner(System.in);
     private static final Bankroll bankroll = new Bankroll();
-    private static final Blackjack game = new Blackjack();
-    private static double prevBal;
+    private static Blackjack game;
+    // Sizes each bet from the shoe when set, with the 'kelly' command
+    private static KellySizer kellySizer;
+    // Precomputed EVs mapped from --pack, shared with every JVM that maps it
+    private static AnalysisPack pack;
+
+    // Simulations run in the background on a snapshot of the game
+    private static final ExecutorService simulationExecutor =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "simulate");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static volatile Flow.Subscription pendingSimulation;
+    // Changes whenever the player acts, so stale results can be told apart
+    private static volatile long handVersion = 0;
 
     public static void main(String[] args)
     {
         int prevHand = 0;
 
+        // Table rules can be given as "--rules=H17,NDAS,SPL3,LS,6:5,no-peek"
+        Rules rules = Rules.STANDARD;
+        String shoeKind = "cards";
+        boolean isWarmUp = true;
+        // Batch mode reads commands from a file, or stdin if none is given
+        String batchFile = null;
+        int numOfDecks = 1;
+        int numOfHands = 1;
+        double funds = 1000;
+        Long seed = null;
+        // Seconds per workload if --bench was given
+        Double benchSeconds = null;
+        String packFile = null;
+        for (String arg : args) {
+            if (arg.startsWith("--rules=")) {
+                rules = Rules.parse(arg.substring("--rules=".length()));
+            } else if (arg.startsWith("--shoe=")) {
+                // "composition" for many decks, "infinite" for an infinite deck,
+                // "csm" or "csm:(lag):(buffer)" for a continuous shuffling machine
+                shoeKind = arg.substring("--shoe=".length());
+            } else if (arg.equals("--no-warm-up")) {
+                isWarmUp = false;
+            } else if (arg.equals("--batch")) {
+                batchFile = "-";
+            } else if (arg.startsWith("--batch=")) {
+                batchFile = arg.substring("--batch=".length());
+            } else if (arg.startsWith("--decks=")) {
+                numOfDecks = Integer.parseInt(arg.substring("--decks=".length()));
+            } else if (arg.startsWith("--hands=")) {
+                numOfHands = Integer.parseInt(arg.substring("--hands=".length()));
+            } else if (arg.startsWith("--bankroll=")) {
+                funds = Double.parseDouble(arg.substring("--bankroll=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.equals("--bench")) {
+                benchSeconds = 0.5;
+            } else if (arg.startsWith("--bench=")) {
+                benchSeconds = Double.parseDouble(arg.substring("--bench=".length()));
+            } else if (arg.startsWith("--pack=")) {
+                // Written by scripts/build-analysis-pack.sh
+                packFile = arg.substring("--pack=".length());
+            }
+        }
+
+        if (packFile != null) {
+            try {
+                pack = AnalysisPack.open(Paths.get(packFile));
+            } catch (IOException e) {
+                System.out.println("Couldn't load the analysis pack: " + e.getMessage());
+            }
+        }
+
+        if (benchSeconds != null) {
+            System.out.print(Benchmark.run(rules, benchSeconds));
+            return;
+        }
+
+        if (batchFile != null) {
+            runBatch(rules, shoeKind, numOfDecks, numOfHands, funds, seed, batchFile);
+            return;
+        }
+
+        // Compile the hot paths while the player answers the prompts
+        if (isWarmUp) Warmup.start(rules);
+
+        game = new Blackjack(rules);
+        if (!shoeKind.equals("cards")) game.setShoe(newShoe(shoeKind));
+        bankroll.setBlackjackPayout(rules.blackjackPayout());
+
         // Initialize blackjack settings
         game.setNumOfDecks(
                 Integer.parseInt(
@@ -34,47 +129,115 @@ public class Main {
         boolean canSimulate = "y".equalsIgnoreCase(
                 valuePrompt("Enable simulate (cheat) option? [Y/N]", 0));
 
-        prevBal = bankroll.getFunds();
         System.out.println("You can 'set-bet ($)', 'deal', 'set-hands (#)', or 'set-decks (#)'.");
         System.out.println("Say 'help' to see this again.");
 
         /* Blackjack rounds loop */
         while (true) {
             if (game.isRoundOngoing()) {
-                boolean canDouble = game.getCurrentHand().numberOfCards() == 2;
-                boolean canSplit = canDouble && game.getCurrentHand().isSplittable();
+                // The hands wait until insurance is taken or declined
+                boolean isInsuranceOffered = game.isInsuranceOffered();
+                boolean canDouble = !isInsuranceOffered && game.canDoubleDown();
+                boolean canSplit = !isInsuranceOffered && game.canSplit();
+                boolean canSurrender = !isInsuranceOffered && game.canSurrender();
+
+                if (pendingSimulation != null) {
+                    System.out.println("(Simulating... say 'cancel' to stop.)");
+                }
 
-                // Presenting options based on standard rules
-                if (canDouble && bankroll.canPayBet(1)) {
-                    System.out.println("You can 'hit', 'double'"
+                // Presenting options based on the table's rules
+                if (isInsuranceOffered) {
+                    System.out.println(insuranceOffer());
+                } else if ((canDouble || canSplit) && bankroll.canPayBet(1)) {
+                    System.out.println("You can 'hit'"
+                            + (canDouble ? ", 'double'" : "")
                             + (canSplit ? ", 'split'" : "")
+                            + (canSurrender ? ", 'surrender'" : "")
                             + (canSimulate ? ", 'simulate'" : "")
                             + ", or 'stand'.");
                 } else {
                     System.out.println("You can 'hit'"
+                            + (canSurrender ? ", 'surrender'," : "")
                             + (canSimulate ? ", 'simulate'," : "")
                             + " or 'stand'.");
                 }
+                if (canSurrender) {
+                    System.out.printf("Surrendering returns half of your bet (EV -50%% of it);"
+                            + " dealer blackjack chance %.2f%%.%n", 100 * game.getDealerBlackjackProbability());
+                }
+                if (pack != null && !isInsuranceOffered) {
+                    String evs = packEvs(canDouble);
+                    if (evs != null) System.out.println(evs);
+                }
 
-                String command = input.nextLine();
+                String[] command = input.nextLine().split(" ");
 
-                switch (command) {
+                switch (command[0]) {
                     case "exit":
                         input.close();
                         System.exit(0);
+                    case "insurance":
+                    case "even-money":
+                        if (isInsuranceOffered) {
+                            if (bankroll.canPayInsurance(game.getNumOfHands())) {
+                                bankroll.payInsurance(game.getNumOfHands());
+                                game.insure();
+                                break;
+                            }
+                            System.out.println(insufficientFundsMessage(bankroll.getCurrentBet() / 2));
+                            continue;
+                        }
+                        System.out.println("Not an option.");
+                        continue;
+                    case "no-insurance":
+                        if (isInsuranceOffered) {
+                            game.declineInsurance();
+                            break;
+                        }
+                        System.out.println("Not an option.");
+                        continue;
                     case "hit":
-                        game.hit();
-                        break;
                     case "stand":
-                        game.stand();
+                        if (isInsuranceOffered) {
+                            System.out.println("Take or decline insurance first.");
+                            continue;
+                        }
+                        if (command[0].equals("hit")) {
+                            game.hit();
+                        } else {
+                            game.stand();
+                        }
                         break;
-                    case "simulate":
-                        if (canSimulate) {
-                            System.out.println("\n======= Simulation Results =======\n");
-                            System.out.println(Simulator.simulate(game, 10000));
-                            System.out.println("\n=== Your hand has not changed. ===\n");
+                    case "surrender":
+                        if (canSurrender) {
+                            game.surrender();
                             break;
                         }
+                        System.out.println("Not an option.");
+                        continue;
+                    case "cancel":
+                        if (pendingSimulation != null) {
+                            pendingSimulation.cancel();
+                            pendingSimulation = null;
+                            System.out.println("Simulation cancelled.");
+                            continue;
+                        }
+                        System.out.println("Nothing to cancel.");
+                        continue;
+                    case "simulate":
+                        if (canSimulate && !isInsuranceOffered) {
+                            if (pendingSimulation != null) {
+                                System.out.println("A simulation is already running.");
+                            } else if (command.length > 1 && !isNumber(command[1], true)) {
+                                System.out.println("Must be a number.");
+                            } else if (command.length > 1 && Integer.parseInt(command[1]) < 1) {
+                                System.out.println("Must be at least 1.");
+                            } else {
+                                startSimulation(command.length > 1
+                                        ? Integer.parseInt(command[1]) : 10000);
+                            }
+                            continue;
+                        }
                         // If simulate not enabled, fall through to default
                     case "double":
                         if (canDouble && bankroll.canPayBet(1)) {
@@ -95,6 +258,9 @@ public class Main {
                         continue;
                 }
 
+                // The player acted, so any running simulation is out of date
+                handChanged();
+
                 if (game.isRoundOngoing()) {
                     // If a hand is resolved, print its result before printing the next hand
                     if (game.getCurrentHandIndex() != prevHand) {
@@ -117,18 +283,75 @@ public class Main {
                         input.close();
                         System.exit(0);
                     case "deal":
-                        if (bankroll.canPayBet(game.getNumOfHands())) {
+                        if (kellySizer != null) {
+                            double bet = kellySizer.betFor(game.getShoe(), bankroll.getFunds(),
+                                    game.getNumOfHands());
+                            if (bet > 0) {
+                                bankroll.setBet(bet);
+                                System.out.printf("Kelly bet: %s per hand (edge %+.2f%%)%n",
+                                        Bankroll.formatMoney(bet), 100 * kellySizer.edge(game.getShoe()));
+                            }
+                        }
+
+                        if (bankroll.canPayRound(game.getNumOfHands())) {
                             prevHand = 0;
-                            bankroll.payBet(game.getNumOfHands());
+                            bankroll.payRound(game.getNumOfHands());
                             game.deal();
                             System.out.println(game);
+                            settleSideBets();
 
                             if (!game.isRoundOngoing()) {
                                 System.out.println(evaluateBets());
                             }
                         } else {
-                            System.out.println(
-                                    insufficientFundsMessage(bankroll.getCurrentBet()));
+                            System.out.println(insufficientFundsMessage(
+                                    bankroll.getCurrentBet() + bankroll.getSideBetTotal()));
+                        }
+                        break;
+                    case "side-bet":
+                        SideBet sideBet = command.length > 2 ? SideBet.fromCode(command[1]) : null;
+                        if (sideBet == null) {
+                            System.out.println("Include 'pp', '21+3' or 'll' and the dollar amount"
+                                    + " (0 to remove) after 'side-bet'.");
+                        } else if (!isNumber(command[2], false)) {
+                            System.out.println("Must be a number.");
+                        } else {
+                            bankroll.setSideBet(sideBet, Double.parseDouble(command[2]));
+                            System.out.println("Set.");
+                        }
+                        break;
+                    case "side-bets":
+                        System.out.println(sideBetOdds());
+                        break;
+                    case "stats":
+                        System.out.println(bankroll.getStats());
+                        break;
+                    case "bench":
+                        if (command.length > 1 && !isNumber(command[1], false)) {
+                            System.out.println("Must be a number.");
+                        } else {
+                            double seconds = command.length > 1 ? Double.parseDouble(command[1]) : 0.5;
+                            System.out.println("Benchmarking for about " + Math.round(8 * seconds)
+                                    + " seconds...");
+                            System.out.print(Benchmark.run(game.getRules(), seconds));
+                        }
+                        break;
+                    case "kelly":
+                        if (command.length > 1 && command[1].equals("off")) {
+                            kellySizer = null;
+                            System.out.println("Bets are set by hand again.");
+                        } else if (command.length > 3 && isNumber(command[1], false)
+                                && isNumber(command[2], false) && isNumber(command[3], false)) {
+                            try {
+                                kellySizer = new KellySizer(game.getRules(), Double.parseDouble(command[1]),
+                                        Double.parseDouble(command[2]), Double.parseDouble(command[3]));
+                                System.out.println("Set. Each bet is now " + kellySizer + ".");
+                            } catch (IllegalArgumentException e) {
+                                System.out.println(e.getMessage());
+                            }
+                        } else {
+                            System.out.println("Include the Kelly fraction, smallest and largest bet after"
+                                    + " 'kelly', such as 'kelly 0.5 5 500', or say 'kelly off'.");
                         }
                         break;
                     case "set-bet":
@@ -180,6 +403,10 @@ public class Main {
                         break;
                     case "help":
                         System.out.println("You can 'set-bet ($)', 'deal', 'set-hands (#)', or 'set-decks (#)'.");
+                        System.out.println("Side bets: 'side-bet (pp|21+3|ll) ($)', and 'side-bets' for their odds.");
+                        System.out.println("Say 'stats' for the session's statistics, and"
+                                + " 'kelly (fraction) (min $) (max $)' to size bets from the shoe.");
+                        System.out.println("Say 'bench [seconds per workload]' to time the engine on this machine.");
                         break;
                     default:
                         System.out.println("Not an option. Say 'help' to see the commands");
@@ -189,6 +416,243 @@ public class Main {
         }
     }
 
+    /**
+     * Describes the insurance offer: even money if every hand is a
+     * blackjack, with the chance of a dealer blackjack and the EV
+     * of taking it.
+     *
+     * @return offer to print
+     */
+    public static String insuranceOffer()
+    {
+        boolean isEvenMoney = true;
+        for (Hand hand : game.getPlayerHands()) {
+            if (!hand.isBlackjack()) isEvenMoney = false;
+        }
+
+        return String.format("The dealer shows an ace. You can take %s for half of your bet, or say 'no-insurance'.%n"
+                        + "Dealer blackjack chance: %.2f%%. EV of taking it: %+.2f%% of your bet.",
+                isEvenMoney ? "'even-money'" : "'insurance'",
+                100 * game.getDealerBlackjackProbability(), 100 * game.getInsuranceEv());
+    }
+
+    /**
+     * Describes the full-shoe EVs of the current hand's actions from
+     * the analysis pack, a lookup at a computed offset in the mapped
+     * file.
+     *
+     * @param  canDouble  whether doubling is an option
+     * @return            EVs to print, or null if the pack has no table
+     *                    for this deck count or hand
+     */
+    public static String packEvs(boolean canDouble)
+    {
+        int numOfDecks = game.getNumOfDecks();
+        if (numOfDecks > AnalysisPack.MAX_DECKS) return null;
+
+        Rules rules = game.getRules();
+        int state = game.getCurrentHand().getState();
+        int column = Strategy.upcardColumn(game.getUpcard());
+        double hit = pack.ev(numOfDecks, rules, state, column, Strategy.HIT);
+        double stand = pack.ev(numOfDecks, rules, state, column, Strategy.STAND);
+        if (Double.isNaN(hit) || Double.isNaN(stand)) return null;
+
+        String evs = String.format("Full-shoe EV: hit %+.1f%%, stand %+.1f%%", 100 * hit, 100 * stand);
+        if (canDouble) {
+            evs += String.format(", double %+.1f%%",
+                    100 * pack.ev(numOfDecks, rules, state, column, Strategy.DOUBLE));
+        }
+        return evs + ".";
+    }
+
+    /**
+     * Makes a one-deck shoe of a kind other than "cards", to be
+     * reset to the number of decks.
+     *
+     * @param  kind  "composition", "infinite", "csm" or "csm:(lag):(buffer)"
+     * @return       empty shoe of the kind
+     */
+    public static Shoe newShoe(String kind)
+    {
+        if (kind.startsWith("csm")) {
+            // Discards go back in after 1 round, with 12 cards dispensed ahead by default
+            String[] settings = kind.split(":");
+            int lag = settings.length > 1 ? Integer.parseInt(settings[1]) : 1;
+            int bufferSize = settings.length > 2 ? Integer.parseInt(settings[2]) : 12;
+            return new ContinuousShoe(1, lag, bufferSize);
+        }
+
+        return new CompositionShoe(1, kind.equals("infinite"));
+    }
+
+    /**
+     * Plays a script of commands with BatchSession instead of
+     * prompting, with the settings given on the command line.
+     *
+     * @param  rules       table rules
+     * @param  shoeKind    "cards", "composition", "infinite" or "csm"
+     * @param  numOfDecks  decks in the shoe
+     * @param  numOfHands  hands dealt each round
+     * @param  funds       starting bankroll
+     * @param  seed        seed for the cards, or null for a random one
+     * @param  file        script to read, or "-" for stdin
+     */
+    public static void runBatch(Rules rules, String shoeKind, int numOfDecks, int numOfHands,
+                                double funds, Long seed, String file)
+    {
+        Blackjack game = new Blackjack(rules);
+        if (!shoeKind.equals("cards")) game.setShoe(newShoe(shoeKind));
+        game.setNumOfDecks(numOfDecks);
+        game.setNumOfHands(numOfHands);
+        if (seed != null) game.setRng(new Rng(seed));
+
+        Bankroll batchBankroll = new Bankroll();
+        batchBankroll.setBlackjackPayout(rules.blackjackPayout());
+        batchBankroll.setFunds(funds);
+
+        // Not closed, since that would close System.out; run flushes it
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out), 1 << 16));
+        try (BufferedReader in = file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in), 1 << 16)
+                : Files.newBufferedReader(Paths.get(file))) {
+            new BatchSession(game, batchBankroll, out).run(in);
+        } catch (IOException e) {
+            System.err.println("Can't read " + file + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Simulates hitting the current hand in the background, on a
+     * copy of the game. The results are printed when they are ready,
+     * unless the hand has changed since.
+     *
+     * @param  iterations  number of times to hit
+     */
+    public static void startSimulation(int iterations)
+    {
+        long stateHash = game.getStateHash();
+        SimulationSnapshot cached = Simulator.getCached(stateHash, iterations);
+        if (cached != null) {
+            printSimulationResults(cached);
+            return;
+        }
+
+        Blackjack snapshot = new Blackjack(game);
+        snapshot.setRng(new Rng());
+        long version = handVersion;
+
+        SimulationPublisher publisher = new SimulationPublisher(snapshot, iterations,
+                Math.max(1000, iterations / 100), simulationExecutor);
+
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            public void onSubscribe(Flow.Subscription subscription)
+            {
+                this.subscription = subscription;
+                pendingSimulation = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(SimulationSnapshot result)
+            {
+                if (!result.isFinal() || pendingSimulation != subscription
+                        || version != handVersion) return;
+
+                pendingSimulation = null;
+                Simulator.putCached(stateHash, result);
+                printSimulationResults(result);
+            }
+
+            public void onError(Throwable throwable)
+            {
+                pendingSimulation = null;
+                System.out.println("Simulation failed: " + throwable);
+            }
+
+            public void onComplete()
+            {}
+        });
+
+        System.out.println("Simulating " + iterations + " hits in the background.");
+    }
+
+    /**
+     * Prints the results of a simulation.
+     *
+     * @param  results  final snapshot of the simulation
+     */
+    public static void printSimulationResults(SimulationSnapshot results)
+    {
+        synchronized (System.out) {
+            System.out.println("\n======= Simulation Results =======\n");
+            System.out.println(results.toReport());
+            System.out.println("\n=== Your hand has not changed. ===\n");
+        }
+    }
+
+    /**
+     * Records that the player's hand has changed, throwing away
+     * any simulation of the old hand.
+     */
+    public static void handChanged()
+    {
+        handVersion++;
+
+        Flow.Subscription simulation = pendingSimulation;
+        if (simulation != null) {
+            simulation.cancel();
+            pendingSimulation = null;
+            System.out.println("(Simulation discarded, your hand changed.)");
+        }
+    }
+
+    /**
+     * Settles the side bets of a round that was just dealt, and
+     * prints how each one did.
+     */
+    public static void settleSideBets()
+    {
+        List<Card> dealerCards = game.getDealerHand().getCards();
+
+        for (SideBet sideBet : SideBet.values()) {
+            if (bankroll.getSideBet(sideBet) == 0) continue;
+
+            for (Hand hand : game.getPlayerHands()) {
+                int outcome = sideBet.outcome(hand.getCards(), dealerCards);
+                double profit = bankroll.receiveSideBet(sideBet, outcome);
+                System.out.println(sideBet + ": " + (outcome < 0 ? "Lost "
+                        : sideBet.getOutcomeName(outcome) + "! Won ")
+                        + Bankroll.formatMoney(Math.abs(profit)));
+            }
+        }
+    }
+
+    /**
+     * Describes each side bet's chance of winning and expected value
+     * on the next round, from the cards left in the shoe.
+     *
+     * @return odds of the side bets
+     */
+    public static String sideBetOdds()
+    {
+        StringBuilder report = new StringBuilder();
+
+        for (SideBet sideBet : SideBet.values()) {
+            double[] probabilities = sideBet.probabilities(game.getShoe());
+            double winChance = 0;
+            for (double probability : probabilities) winChance += probability;
+
+            double ev = sideBet.expectedValue(game.getShoe());
+            report.append(String.format("%s: wins %.2f%% of the time, EV %+.2f%%%s%n",
+                    sideBet, 100 * winChance, 100 * ev, ev > 0 ? " (in your favor!)" : ""));
+        }
+
+        return report.toString().stripTrailing();
+    }
+
     /**
      * Generates a message informing the user of insufficient funds
      *
@@ -212,20 +676,9 @@ public class Main {
      */
     public static String evaluateBets()
     {
-        String report = "";
-
-        for (Hand hand : game.getPlayerHands()) {
-            int roundResult = hand.determineHandResult(game.getDealerHand());
-            if (roundResult > 0) {
-                bankroll.receiveBet(roundResult, hand.getBetMultiplier());
-            }
-        }
-
-        report += "Net change: " + Bankroll.formatMoney(bankroll.getFunds() - prevBal);
-        report += "\nYou have " + bankroll;
-        prevBal = bankroll.getFunds();
+        double net = bankroll.settleRound(game.getPlayerHands(), game.getDealerHand());
 
-        return report;
+        return "Net change: " + Bankroll.formatMoney(net) + "\nYou have " + bankroll;
     }
 
     /**
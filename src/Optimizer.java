@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Searches for the best policy: a strategy chart's deviation indices
+ * and a bet ramp. It is a coordinate search, moving one ramp entry or
+ * one deviation's count up or down at a time and keeping the change
+ * if it does better than the current policy.
+ *
+ * Every candidate plays the same blocks of rounds, each block seeded
+ * from its own stream of one seed, so two candidates are compared on
+ * the same cards for as long as they play them the same way. Blocks
+ * run in parallel, in stages, and after each stage a candidate that
+ * is already clearly worse than the current policy is dropped.
+ *
+ * Policies are scored by their certainty equivalent, the EV less the
+ * variance over twice the bankroll, so that bigger bets only win if
+ * they pay for the risk they add.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class Optimizer {
+    // Fraction of the shoe left when it is refilled
+    private static final double PENETRATION = 0.25;
+    private static final int NUM_OF_STAGES = 8;
+    private static final int BLOCKS_PER_STAGE = 16;
+    private static final int NUM_OF_BLOCKS = NUM_OF_STAGES * BLOCKS_PER_STAGE;
+    // Standard errors behind the current policy that drop a candidate
+    private static final double PRUNE_Z = 2.5;
+    // Standard errors ahead of the current policy that accept one
+    private static final double ACCEPT_Z = 1.0;
+    private static final int MAX_PASSES = 20;
+
+    private final Rules rules;
+    private final int numOfDecks;
+    private final double bankroll;
+    private final int maxBet;
+    private final int roundsPerBlock;
+    private final long seed;
+    private final ExecutorService executor;
+    private int numOfEvaluated = 0;
+    private int numOfPruned = 0;
+
+    /**
+     * Constructor for an optimizer
+     *
+     * @param  rules               table rules
+     * @param  numOfDecks          decks in the shoe
+     * @param  bankroll            bankroll in units, for the risk of a policy
+     * @param  maxBet              largest bet in units a ramp may have
+     * @param  roundsPerCandidate  rounds a candidate plays if never dropped
+     * @param  seed                seed for the blocks' shoes
+     * @param  executor            runs the blocks
+     */
+    public Optimizer(Rules rules, int numOfDecks, double bankroll, int maxBet,
+                     long roundsPerCandidate, long seed, ExecutorService executor)
+    {
+        if (bankroll <= 0 || maxBet < 1) {
+            throw new IllegalArgumentException("Bankroll and largest bet must be positive");
+        }
+
+        this.rules = rules;
+        this.numOfDecks = numOfDecks;
+        this.bankroll = bankroll;
+        this.maxBet = maxBet;
+        this.roundsPerBlock = (int) Math.max(1, roundsPerCandidate / NUM_OF_BLOCKS);
+        this.seed = seed;
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: Optimizer (chart file) [bet ramp] [bankroll units]"
+                    + " [largest bet] [rounds per candidate] [rules]");
+            return;
+        }
+
+        Path chartFile = Paths.get(args[0]);
+        BetRamp ramp = args.length > 1 ? BetRamp.parse(args[1]) : BetRamp.parse("1-1-2-4-6-8");
+        double bankroll = args.length > 2 ? Double.parseDouble(args[2]) : 1000;
+        int maxBet = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+        long rounds = args.length > 4 ? Long.parseLong(args[4]) : 2_000_000;
+        Rules rules = args.length > 5 ? Rules.parse(args[5]) : Rules.STANDARD;
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            Optimizer optimizer = new Optimizer(rules, 6, bankroll, maxBet, rounds,
+                    System.nanoTime(), executor);
+            long start = System.nanoTime();
+            Policy best = optimizer.optimize(Files.readAllLines(chartFile), ramp,
+                    policy -> System.out.println("Better: " + policy.ramp() + ", "
+                            + policy.deviations()));
+
+            System.out.println("\n===== " + optimizer.getNumOfEvaluated() + " candidates, "
+                    + optimizer.getNumOfPruned() + " dropped early, "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms =====\n");
+            System.out.println("Bet ramp: " + best.ramp());
+            for (String deviation : best.deviations()) {
+                System.out.println(deviation);
+            }
+            System.out.println(best.evaluation());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of candidates compared so far.
+     *
+     * @return candidates evaluated
+     */
+    public int getNumOfEvaluated()
+    {
+        return numOfEvaluated;
+    }
+
+    /**
+     * Gets the number of candidates dropped before playing every block.
+     *
+     * @return candidates pruned
+     */
+    public int getNumOfPruned()
+    {
+        return numOfPruned;
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Searches from a starting policy until no single change helps.
+     *
+     * @param  chart          lines of a strategy chart (see Strategy)
+     * @param  ramp           starting bet ramp
+     * @param  onImprovement  called with each better policy found
+     * @return                best policy found, evaluated on every block
+     */
+    public Policy optimize(List<String> chart, BetRamp ramp, Consumer<Policy> onImprovement)
+    {
+        Candidate incumbent = new Candidate(chart, ramp);
+        List<Integer> deviationLines = new ArrayList<>();
+        for (int i = 0; i < chart.size(); i++) {
+            if (deviationCount(chart.get(i)) != null) deviationLines.add(i);
+        }
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean isImproved = false;
+
+            for (int coordinate = 0; coordinate < ramp.size() + deviationLines.size(); coordinate++) {
+                List<Candidate> neighbors = coordinate < ramp.size()
+                        ? rampNeighbors(incumbent, coordinate)
+                        : deviationNeighbors(incumbent, deviationLines.get(coordinate - ramp.size()));
+
+                Candidate better = findBetter(incumbent, neighbors);
+                if (better != null) {
+                    incumbent = better;
+                    isImproved = true;
+                    onImprovement.accept(toPolicy(incumbent));
+                }
+            }
+
+            if (!isImproved) break;
+        }
+
+        return toPolicy(incumbent);
+    }
+
+    /**
+     * Compares candidates against the current policy, block by block,
+     * dropping those that fall clearly behind after each stage.
+     *
+     * @param  incumbent   current policy
+     * @param  candidates  changes to try
+     * @return             best candidate that is ahead, or null
+     */
+    private Candidate findBetter(Candidate incumbent, List<Candidate> candidates)
+    {
+        List<Candidate> alive = new ArrayList<>(candidates);
+        numOfEvaluated += candidates.size();
+
+        for (int stage = 0; stage < NUM_OF_STAGES && !alive.isEmpty(); stage++) {
+            int firstBlock = stage * BLOCKS_PER_STAGE;
+            List<Candidate> playing = new ArrayList<>(alive);
+            playing.add(incumbent);
+            playBlocks(playing, firstBlock, firstBlock + BLOCKS_PER_STAGE);
+
+            int blocksPlayed = firstBlock + BLOCKS_PER_STAGE;
+            alive.removeIf(candidate -> {
+                double[] difference = difference(candidate, incumbent, blocksPlayed);
+                boolean isBehind = difference[0] + PRUNE_Z * difference[1] < 0;
+                if (isBehind) numOfPruned++;
+                return isBehind;
+            });
+        }
+
+        Candidate best = null;
+        double bestDifference = 0;
+        for (Candidate candidate : alive) {
+            double[] difference = difference(candidate, incumbent, NUM_OF_BLOCKS);
+            if (difference[0] - ACCEPT_Z * difference[1] > 0 && difference[0] > bestDifference) {
+                best = candidate;
+                bestDifference = difference[0];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays every block in a range that a candidate hasn't played yet,
+     * spreading them over the executor.
+     *
+     * @param  candidates  candidates to play
+     * @param  fromBlock   first block
+     * @param  toBlock     block after the last
+     */
+    private void playBlocks(List<Candidate> candidates, int fromBlock, int toBlock)
+    {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            for (int block = fromBlock; block < toBlock; block++) {
+                if (candidate.BLOCKS[block] != null) continue;
+                int index = block;
+                tasks.add(() -> {
+                    candidate.BLOCKS[index] = playBlock(candidate, index);
+                    return null;
+                });
+            }
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while playing blocks", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Block failed", e.getCause());
+        }
+    }
+
+    /**
+     * Plays one block of rounds with a candidate on a fresh shoe.
+     *
+     * @param  candidate  policy to play
+     * @param  block      block index, also its random stream
+     * @return            sums of the block's rounds
+     */
+    private BlockResult playBlock(Candidate candidate, int block)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(numOfDecks);
+        game.setRng(Rng.stream(seed, block));
+
+        double net = 0;
+        double sumOfSquares = 0;
+        double wagered = 0;
+        for (int round = 0; round < roundsPerBlock; round++) {
+            if (game.getShoe().size() < PENETRATION * 52 * numOfDecks) {
+                game.fillShoe();
+            }
+
+            int bet = candidate.RAMP.betFor(game.getShoe().getTrueCount());
+            double roundNet = bet * candidate.STRATEGY.playRound(game, PENETRATION);
+            net += roundNet;
+            sumOfSquares += roundNet * roundNet;
+            wagered += bet;
+        }
+        return new BlockResult(net, sumOfSquares, wagered);
+    }
+
+    /**
+     * Gets the mean and standard error of how much better a candidate
+     * scored than another over the same blocks.
+     *
+     * @param  candidate  candidate to compare
+     * @param  other      candidate compared against
+     * @param  numBlocks  blocks to compare, from the first
+     * @return            mean difference per round and its standard error
+     */
+    private double[] difference(Candidate candidate, Candidate other, int numBlocks)
+    {
+        double sum = 0;
+        double sumOfSquares = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            double difference = candidate.BLOCKS[block].score(bankroll, roundsPerBlock)
+                    - other.BLOCKS[block].score(bankroll, roundsPerBlock);
+            sum += difference;
+            sumOfSquares += difference * difference;
+        }
+
+        double mean = sum / numBlocks;
+        double variance = Math.max(0, sumOfSquares / numBlocks - mean * mean);
+        return new double[] {mean, Math.sqrt(variance / Math.max(1, numBlocks - 1))};
+    }
+
+    /**
+     * Gets the candidates one unit above and below a ramp entry.
+     *
+     * @param  candidate  current policy
+     * @param  index      ramp entry to change
+     * @return            candidates within 1 and maxBet units
+     */
+    private List<Candidate> rampNeighbors(Candidate candidate, int index)
+    {
+        List<Candidate> neighbors = new ArrayList<>();
+        int bet = candidate.RAMP.get(index);
+        for (int changed : new int[] {bet - 1, bet + 1}) {
+            if (changed >= 1 && changed <= maxBet) {
+                neighbors.add(new Candidate(candidate.CHART, candidate.RAMP.with(index, changed)));
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Gets the candidates with a deviation's count one above and below.
+     *
+     * @param  candidate  current policy
+     * @param  line       chart line of the deviation
+     * @return            candidates with counts the chart allows
+     */
+    private List<Candidate> deviationNeighbors(Candidate candidate, int line)
+    {
+        List<Candidate> neighbors = new ArrayList<>();
+        String[] tokens = candidate.CHART.get(line).strip().split("\\s*,\\s*|\\s+");
+        int count = deviationCount(candidate.CHART.get(line));
+
+        for (int changed : new int[] {count - 1, count + 1}) {
+            if (Math.abs(changed) > Strategy.MAX_COUNT) continue;
+
+            tokens[3] = tokens[3].substring(0, 2) + changed;
+            List<String> chart = new ArrayList<>(candidate.CHART);
+            chart.set(line, String.join(",", tokens));
+            neighbors.add(new Candidate(chart, candidate.RAMP));
+        }
+        return neighbors;
+    }
+
+    /**
+     * Evaluates a candidate over every block.
+     *
+     * @param  candidate  policy to evaluate
+     * @return            policy with its evaluation
+     */
+    private Policy toPolicy(Candidate candidate)
+    {
+        playBlocks(List.of(candidate), 0, NUM_OF_BLOCKS);
+
+        double net = 0;
+        double sumOfSquares = 0;
+        double wagered = 0;
+        for (BlockResult block : candidate.BLOCKS) {
+            net += block.net();
+            sumOfSquares += block.sumOfSquares();
+            wagered += block.wagered();
+        }
+
+        List<String> deviations = new ArrayList<>();
+        for (String line : candidate.CHART) {
+            if (deviationCount(line) != null) deviations.add(line.strip());
+        }
+
+        return new Policy(candidate.CHART, deviations, candidate.RAMP,
+                PolicyEvaluation.of((long) roundsPerBlock * NUM_OF_BLOCKS,
+                        net, sumOfSquares, wagered, bankroll));
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Gets the count of a deviation line.
+     *
+     * @param  line  chart line
+     * @return       count, or null if the line isn't a deviation
+     */
+    private static Integer deviationCount(String line)
+    {
+        String[] tokens = line.strip().split("\\s*,\\s*|\\s+");
+        if (tokens.length != 5 || !tokens[0].equalsIgnoreCase("dev")) return null;
+
+        try {
+            return Integer.parseInt(tokens[3].substring(2).replace("+", ""));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Best policy found by a search.
+     *
+     * @param  chart       chart lines, with the chosen deviation counts
+     * @param  deviations  the deviation lines of the chart
+     * @param  ramp        bet ramp
+     * @param  evaluation  how the policy did over every block
+     */
+    public record Policy(List<String> chart, List<String> deviations,
+                         BetRamp ramp, PolicyEvaluation evaluation)
+    {}
+
+    /**
+     * Sums of one block of rounds.
+     *
+     * @param  net           units won
+     * @param  sumOfSquares  total of each round's result squared
+     * @param  wagered       units bet
+     */
+    private record BlockResult(double net, double sumOfSquares, double wagered)
+    {
+        /**
+         * Gets the certainty equivalent per round of the block.
+         *
+         * @param  bankroll  bankroll in units
+         * @param  rounds    rounds in the block
+         * @return           EV less the variance over twice the bankroll
+         */
+        double score(double bankroll, int rounds)
+        {
+            return (net - sumOfSquares / (2 * bankroll)) / rounds;
+        }
+    }
+
+    /**
+     * A policy being tried, with the blocks it has played so far.
+     */
+    private static class Candidate {
+        private final List<String> CHART;
+        private final Strategy STRATEGY;
+        private final BetRamp RAMP;
+        private final BlockResult[] BLOCKS = new BlockResult[NUM_OF_BLOCKS];
+
+        /**
+         * Constructor for a candidate
+         *
+         * @param  chart  lines of its strategy chart
+         * @param  ramp   its bet ramp
+         */
+        Candidate(List<String> chart, BetRamp ramp)
+        {
+            this.CHART = List.copyOf(chart);
+            this.STRATEGY = Strategy.compile("candidate", chart);
+            this.RAMP = ramp;
+        }
+    }
+}
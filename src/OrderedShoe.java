@@ -0,0 +1,209 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Shoe that deals a shuffled order of cards from front to back, like
+ * a real shoe, instead of picking a random card on each draw. The
+ * order is shuffled ahead of time, possibly on another thread, and
+ * loaded when the shoe is refilled, so drawing is only reading the
+ * next card.
+ *
+ * Filling the shoe without loading a new order, as Blackjack.draw
+ * does when a round runs the shoe dry, shuffles the order again with
+ * the last draw's random number generator, so the same cards are
+ * never dealt again in the same order.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class OrderedShoe extends Shoe {
+    private int[] order;
+    // Position of the next card in order
+    private int next;
+    // Set by each draw, to reshuffle the order with when filled
+    private Rng shuffleRng;
+
+    /**
+     * Constructor for a shoe holding one shuffled order
+     *
+     * @param  order  card codes in the order they are dealt
+     */
+    public OrderedShoe(int[] order)
+    {
+        super(Math.max(1, order.length / 52));
+        load(order);
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param  shoe  shoe to copy
+     */
+    public OrderedShoe(OrderedShoe shoe)
+    {
+        super(shoe);
+        order = shoe.order.clone();
+        next = shoe.next;
+        shuffleRng = shoe.shuffleRng;
+    }
+
+    /*
+     * Accessors
+     */
+
+    @Override
+    public Shoe copy()
+    {
+        return new OrderedShoe(this);
+    }
+
+    /**
+     * Writes the whole order and the position of the next card, so it
+     * is read back dealing the same cards in the same order.
+     */
+    @Override
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeByte(ORDERED_SHOE);
+        out.writeInt(numOfDecks);
+        out.writeInt(order.length);
+        for (int code : order) {
+            out.writeByte(code);
+        }
+        out.writeInt(next);
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Replaces the shoe's cards with a new order. The shoe takes the
+     * array, so the caller must not change it afterwards.
+     *
+     * @param  order  card codes in the order they are dealt
+     */
+    public void load(int[] order)
+    {
+        this.order = order;
+        restart();
+    }
+
+    @Override
+    public Card draw(Rng rng)
+    {
+        shuffleRng = rng;
+        int code = order[next++];
+        countRemoved(code);
+        return Card.fromCode(code);
+    }
+
+    @Override
+    public Card draw(Rng rng, int rank)
+    {
+        // Bring the next card of the rank to the front
+        for (int i = next; i < order.length; i++) {
+            if (order[i] >> 2 == rank) {
+                int code = order[i];
+                order[i] = order[next];
+                order[next] = code;
+                return draw(rng);
+            }
+        }
+
+        throw new IllegalStateException("No card of rank " + Card.RANKS[rank] + " in the shoe");
+    }
+
+    @Override
+    public void fill()
+    {
+        // A new deck count from reset gets a fresh order
+        if (order.length != 52 * numOfDecks) {
+            order = new int[52 * numOfDecks];
+            for (int i = 0; i < order.length; i++) order[i] = i % 52;
+        }
+
+        // Never drawn from yet means no generator, and nothing dealt to repeat
+        if (shuffleRng != null) shuffle(order, shuffleRng);
+        restart();
+    }
+
+    @Override
+    protected void clear()
+    {
+        clearCounts();
+        next = order.length;
+    }
+
+    /**
+     * Puts every card of the order back, to be dealt from the front.
+     */
+    private void restart()
+    {
+        clearCounts();
+        for (int code : order) countAdded(code, 1);
+        next = 0;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads the rest of a shoe written by writeTo, after its kind.
+     *
+     * @param  in           where to read
+     * @return              shoe in the same state
+     * @throws IOException  if reading fails
+     */
+    static OrderedShoe read(DataInput in) throws IOException
+    {
+        int numOfDecks = in.readInt();
+        int[] order = new int[in.readInt()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = in.readUnsignedByte();
+        }
+
+        OrderedShoe shoe = new OrderedShoe(order);
+        shoe.numOfDecks = numOfDecks;
+        shoe.clearCounts();
+        shoe.next = in.readInt();
+        for (int i = shoe.next; i < order.length; i++) {
+            shoe.countAdded(order[i], 1);
+        }
+        return shoe;
+    }
+
+    /**
+     * Shuffles a shoe's worth of cards.
+     *
+     * @param  numOfDecks  number of 52-card decks
+     * @param  rng         random number generator
+     * @return             card codes in a random order
+     */
+    public static int[] shuffle(int numOfDecks, Rng rng)
+    {
+        int[] order = new int[52 * numOfDecks];
+        for (int i = 0; i < order.length; i++) order[i] = i % 52;
+
+        shuffle(order, rng);
+        return order;
+    }
+
+    /**
+     * Shuffles card codes in place (Fisher-Yates).
+     *
+     * @param  order  card codes to shuffle
+     * @param  rng    random number generator
+     */
+    private static void shuffle(int[] order, Rng rng)
+    {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int code = order[i];
+            order[i] = order[j];
+            order[j] = code;
+        }
+    }
+}
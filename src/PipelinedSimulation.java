@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a strategy in bulk as a two-stage pipeline. Producer threads
+ * shuffle whole shoes into a RingBuffer, and consumer threads take
+ * them and play rounds from an OrderedShoe until the cut card, so
+ * shuffling overlaps with play instead of stalling it.
+ *
+ * Each thread times how long it spends working and waiting on the
+ * ring, so the report shows which stage is the bottleneck. With 0
+ * producers, each consumer shuffles its own shoes inline, for
+ * comparison.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class PipelinedSimulation {
+    // Fraction of the shoe left at the cut card
+    private static final double PENETRATION = 0.25;
+    // Failed attempts on the ring before yielding, then parking
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+    private static final long PARK_NANOS = 20_000;
+
+    private final Strategy strategy;
+    private final Rules rules;
+    private final int numOfDecks;
+    private final RingBuffer<int[]> ring;
+    private final AtomicLong roundsPlayed = new AtomicLong();
+    private volatile boolean isDone = false;
+
+    /**
+     * Time a thread spent working and waiting, and what it got done
+     */
+    private static class Stage {
+        private long busyNanos;
+        private long waitNanos;
+        private long shoes;
+        private long rounds;
+        private double net;
+        private double sumOfSquares;
+
+        double utilization()
+        {
+            return busyNanos + waitNanos == 0 ? 0 : (double) busyNanos / (busyNanos + waitNanos);
+        }
+    }
+
+    /**
+     * Constructor for a simulation
+     *
+     * @param  strategy      strategy to play
+     * @param  rules         table rules
+     * @param  numOfDecks    decks in each shoe
+     * @param  ringCapacity  most shuffled shoes waiting to be played
+     */
+    public PipelinedSimulation(Strategy strategy, Rules rules, int numOfDecks, int ringCapacity)
+    {
+        this.strategy = strategy;
+        this.rules = rules;
+        this.numOfDecks = numOfDecks;
+        this.ring = new RingBuffer<>(ringCapacity);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: PipelinedSimulation (chart file) [rounds] [producers] [consumers] [ring size] [rules] [decks]");
+            return;
+        }
+
+        Strategy strategy = Strategy.load(Paths.get(args[0]));
+        long rounds = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000;
+        int numOfProducers = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        int numOfConsumers = args.length > 3 ? Integer.parseInt(args[3])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - numOfProducers);
+        int ringCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+        Rules rules = args.length > 5 ? Rules.parse(args[5]) : Rules.STANDARD;
+        int numOfDecks = args.length > 6 ? Integer.parseInt(args[6]) : 6;
+
+        new PipelinedSimulation(strategy, rules, numOfDecks, ringCapacity)
+                .run(rounds, numOfProducers, numOfConsumers, System.nanoTime());
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Runs the pipeline until about the given number of rounds are
+     * played, and prints the results and each stage's utilization.
+     *
+     * @param  rounds          rounds to play; each consumer finishes its shoe
+     * @param  numOfProducers  shuffling threads, or 0 to shuffle inline
+     * @param  numOfConsumers  playing threads
+     * @param  seed            seed for the shuffles
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public void run(long rounds, int numOfProducers, int numOfConsumers, long seed)
+            throws InterruptedException
+    {
+        List<Thread> threads = new ArrayList<>();
+        List<Stage> producers = new ArrayList<>();
+        List<Stage> consumers = new ArrayList<>();
+
+        for (int i = 0; i < numOfProducers; i++) {
+            Stage stage = new Stage();
+            Rng rng = Rng.stream(seed, i);
+            producers.add(stage);
+            threads.add(new Thread(() -> produce(stage, rng), "shuffle-" + i));
+        }
+        for (int i = 0; i < numOfConsumers; i++) {
+            Stage stage = new Stage();
+            Rng rng = Rng.stream(seed, numOfProducers + i);
+            consumers.add(stage);
+            threads.add(new Thread(() -> consume(stage, rounds, numOfProducers == 0 ? rng : null),
+                    "play-" + i));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) thread.start();
+        for (int i = numOfProducers; i < threads.size(); i++) threads.get(i).join();
+        isDone = true;
+        for (Thread thread : threads) thread.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long played = 0;
+        long shoes = 0;
+        double net = 0;
+        double sumOfSquares = 0;
+        for (Stage stage : consumers) {
+            played += stage.rounds;
+            shoes += stage.shoes;
+            net += stage.net;
+            sumOfSquares += stage.sumOfSquares;
+        }
+        double ev = net / played;
+        double standardError = Math.sqrt((sumOfSquares / played - ev * ev) / played);
+
+        System.out.println(strategy + ", " + rules + ", " + numOfDecks + " decks, "
+                + numOfProducers + " producer(s), " + numOfConsumers + " consumer(s), ring of " + ring.capacity());
+        System.out.printf("%d rounds from %d shoes in %.2f s (%.0f rounds/s)%n",
+                played, shoes, seconds, played / seconds);
+        System.out.printf("EV: %.3f%% +/- %.3f%% per round%n", 100 * ev, 100 * standardError);
+        if (numOfProducers > 0) printUtilization("Shuffling", producers);
+        printUtilization("Playing", consumers);
+    }
+
+    /**
+     * Shuffles shoes into the ring until the consumers are done.
+     *
+     * @param  stage  where to record the time spent
+     * @param  rng    random number generator for the shuffles
+     */
+    private void produce(Stage stage, Rng rng)
+    {
+        while (!isDone) {
+            long start = System.nanoTime();
+            int[] order = OrderedShoe.shuffle(numOfDecks, rng);
+            long shuffled = System.nanoTime();
+            stage.busyNanos += shuffled - start;
+
+            int attempts = 0;
+            while (!ring.offer(order) && !isDone) backOff(attempts++);
+            stage.waitNanos += System.nanoTime() - shuffled;
+            stage.shoes++;
+        }
+    }
+
+    /**
+     * Plays shoes until enough rounds have been played.
+     *
+     * @param  stage   where to record the time spent and the results
+     * @param  rounds  rounds to play in all
+     * @param  rng     random number generator to shuffle inline, or
+     *                 null to take shoes from the ring
+     */
+    private void consume(Stage stage, long rounds, Rng rng)
+    {
+        Blackjack game = new Blackjack(rules);
+        OrderedShoe shoe = null;
+        int cutCard = (int) (PENETRATION * 52 * numOfDecks);
+
+        while (roundsPlayed.get() < rounds) {
+            long start = System.nanoTime();
+            int[] order;
+            if (rng != null) {
+                order = OrderedShoe.shuffle(numOfDecks, rng);
+            } else {
+                int attempts = 0;
+                while ((order = ring.poll()) == null) backOff(attempts++);
+            }
+            long loaded = System.nanoTime();
+            // Shuffling inline is work the consumer does, not waiting
+            if (rng == null) stage.waitNanos += loaded - start;
+
+            if (shoe == null) {
+                shoe = new OrderedShoe(order);
+                game.setShoe(shoe);
+            } else {
+                shoe.load(order);
+            }
+
+            long played = 0;
+            while (shoe.size() >= cutCard) {
+                game.deal();
+                strategy.play(game);
+
+                double net = Strategy.netUnits(game);
+                stage.net += net;
+                stage.sumOfSquares += net * net;
+                played++;
+            }
+
+            stage.busyNanos += System.nanoTime() - (rng == null ? loaded : start);
+            stage.rounds += played;
+            stage.shoes++;
+            roundsPlayed.addAndGet(played);
+        }
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Waits a little longer after each failed attempt on the ring:
+     * spinning, then yielding, then parking.
+     *
+     * @param  attempts  failed attempts so far
+     */
+    private static void backOff(int attempts)
+    {
+        if (attempts < SPINS) {
+            Thread.onSpinWait();
+        } else if (attempts < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Prints the average utilization of a stage's threads.
+     *
+     * @param  name    stage name
+     * @param  stages  the stage's threads
+     */
+    private static void printUtilization(String name, List<Stage> stages)
+    {
+        double total = 0;
+        long shoes = 0;
+        for (Stage stage : stages) {
+            total += stage.utilization();
+            shoes += stage.shoes;
+        }
+        System.out.printf("%s: %d thread(s), %.1f%% busy, %d shoes%n",
+                name, stages.size(), 100 * total / stages.size(), shoes);
+    }
+}
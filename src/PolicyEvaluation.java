@@ -0,0 +1,98 @@
+/**
+ * How a policy (a strategy and a bet ramp) did over many rounds, in
+ * units of the minimum bet, with the risk measures that come from
+ * its win rate and spread of results.
+ *
+ * @param  rounds             rounds played
+ * @param  ev                 average units won per round
+ * @param  standardDeviation  standard deviation of a round's result
+ * @param  averageBet         average units bet per round
+ * @param  bankroll           units the risk of ruin is measured for
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public record PolicyEvaluation(long rounds, double ev, double standardDeviation,
+                               double averageBet, double bankroll)
+{
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the standard error of the EV.
+     *
+     * @return standard error per round
+     */
+    public double standardError()
+    {
+        return standardDeviation / Math.sqrt(rounds);
+    }
+
+    /**
+     * Gets the chance of losing the whole bankroll before it grows
+     * without bound, exp(-2 * ev * bankroll / variance).
+     *
+     * @return risk of ruin, from 0 to 1
+     */
+    public double riskOfRuin()
+    {
+        if (ev <= 0) return 1;
+        return Math.exp(-2 * ev * bankroll / (standardDeviation * standardDeviation));
+    }
+
+    /**
+     * Gets N0, the number of rounds after which the expected win
+     * equals one standard deviation of the results.
+     *
+     * @return rounds to overcome variance
+     */
+    public double roundsToOvercomeVariance()
+    {
+        if (ev <= 0) return Double.POSITIVE_INFINITY;
+        return (standardDeviation / ev) * (standardDeviation / ev);
+    }
+
+    /**
+     * Returns the results, one per line.
+     *
+     * @return readable results
+     */
+    @Override
+    public String toString()
+    {
+        return String.format("""
+                Over %d rounds:
+                EV: %.4f +/- %.4f units per round (%.2f per 100)
+                Average bet: %.3f units (%.3f%% of the amount bet)
+                Standard deviation: %.3f units per round
+                N0: %.0f rounds
+                Risk of ruin with %.0f units: %.3f%%""",
+                rounds, ev, 1.96 * standardError(), 100 * ev,
+                averageBet, averageBet == 0 ? 0 : 100 * ev / averageBet,
+                standardDeviation, roundsToOvercomeVariance(),
+                bankroll, 100 * riskOfRuin());
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Makes an evaluation from the sums of the rounds.
+     *
+     * @param  rounds        rounds played
+     * @param  net           total units won
+     * @param  sumOfSquares  total of each round's result squared
+     * @param  wagered       total units bet
+     * @param  bankroll      units the risk of ruin is measured for
+     * @return               evaluation
+     */
+    public static PolicyEvaluation of(long rounds, double net, double sumOfSquares,
+                                      double wagered, double bankroll)
+    {
+        double ev = net / rounds;
+        double variance = Math.max(0, sumOfSquares / rounds - ev * ev);
+        return new PolicyEvaluation(rounds, ev, Math.sqrt(variance), wagered / rounds, bankroll);
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and many consumers
+ * (Dmitry Vyukov's design). Each slot has a sequence number that
+ * says whether it is ready to be written or read on the current lap,
+ * so a producer or consumer claims a slot with one compare-and-set
+ * on the tail or head and never waits on another thread's lock.
+ *
+ * Offering to a full queue and polling an empty one fail at once;
+ * callers decide how to wait.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class RingBuffer<E> {
+    // Tail and head, 128 bytes apart so they don't share a cache line
+    private static final int TAIL = 15;
+    private static final int HEAD = 31;
+
+    private final int mask;
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray positions = new AtomicLongArray(HEAD + 16);
+
+    /**
+     * Constructor for a queue
+     *
+     * @param  capacity  most elements it holds, rounded up to a power of 2
+     */
+    public RingBuffer(int capacity)
+    {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be from 1 to 2^30");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mask = size - 1;
+        slots = new Object[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the most elements the queue holds.
+     *
+     * @return capacity
+     */
+    public int capacity()
+    {
+        return slots.length;
+    }
+
+    /**
+     * Gets about how many elements are queued. It may be out of date
+     * by the time it returns.
+     *
+     * @return elements queued
+     */
+    public int size()
+    {
+        long size = positions.get(TAIL) - positions.get(HEAD);
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Adds an element if there is room.
+     *
+     * @param  element  element to add
+     * @return          whether it was added
+     */
+    public boolean offer(E element)
+    {
+        long position = positions.get(TAIL);
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (positions.compareAndSet(TAIL, position, position + 1)) {
+                    slots[slot] = element;
+                    // Publishes the element to the consumer that reads this sequence
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = positions.get(TAIL);
+            } else if (difference < 0) {
+                // The slot still holds last lap's element
+                return false;
+            } else {
+                position = positions.get(TAIL);
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element if there is one.
+     *
+     * @return element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll()
+    {
+        long position = positions.get(HEAD);
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+
+            if (difference == 0) {
+                if (positions.compareAndSet(HEAD, position, position + 1)) {
+                    E element = (E) slots[slot];
+                    slots[slot] = null;
+                    // Frees the slot for the producer on the next lap
+                    sequences.set(slot, position + mask + 1);
+                    return element;
+                }
+                position = positions.get(HEAD);
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = positions.get(HEAD);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Streams one record per round to a column-oriented binary file, and
+ * optionally to CSV, for analyzing runs far too long to keep in
+ * memory. Rows are gathered into chunks; in each chunk every column's
+ * values are packed next to each other at the fewest bits the column
+ * needs, so a reader can skip the columns it doesn't want.
+ *
+ * The file is a header (magic, version, then each column's name and
+ * bit width) followed by chunks. A chunk is its row count, then each
+ * column's bits in little-endian 64-bit words. RoundReader reads it.
+ *
+ * Memory use is one chunk of each column and a fixed write buffer,
+ * however many rounds are written.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class RoundExporter implements AutoCloseable {
+    static final int MAGIC = 0x424A5243;
+    static final int VERSION = 1;
+    static final int CHUNK_ROWS = 1 << 16;
+
+    /**
+     * Names of the columns, in the order add takes them
+     */
+    public static final List<String> COLUMNS = List.of(
+            "card1", "card2", "upcard", "action", "hands", "cards",
+            "total", "dealer", "result", "units", "net");
+    // Bits each column is packed into
+    private static final int[] WIDTHS = {4, 4, 4, 3, 4, 4, 5, 5, 3, 6, 10};
+    // Written to the action column when the round ended before a decision
+    public static final int NO_ACTION = 7;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final long[][] WORDS = new long[WIDTHS.length][];
+    private int numOfRows = 0;
+    private long totalRows = 0;
+
+    private final FileChannel csvChannel;
+    private final ByteBuffer csvBuffer;
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * Constructor for an exporter, which creates or replaces its files
+     *
+     * @param  file         binary file to write
+     * @param  csvFile      CSV file to also write, or null
+     * @throws IOException  if a file can't be opened
+     */
+    public RoundExporter(Path file, Path csvFile) throws IOException
+    {
+        int chunkBytes = 4;
+        for (int column = 0; column < WIDTHS.length; column++) {
+            WORDS[column] = new long[wordsFor(CHUNK_ROWS, WIDTHS[column])];
+            chunkBytes += WORDS[column].length * 8;
+        }
+        buffer = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(COLUMNS.size());
+        for (int column = 0; column < WIDTHS.length; column++) {
+            byte[] name = COLUMNS.get(column).getBytes(StandardCharsets.US_ASCII);
+            buffer.put((byte) name.length).put(name).put((byte) WIDTHS[column]);
+        }
+        writeBuffer();
+
+        if (csvFile == null) {
+            csvChannel = null;
+            csvBuffer = null;
+        } else {
+            csvChannel = FileChannel.open(csvFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            csvBuffer = ByteBuffer.allocate(1 << 16);
+            csvBuffer.put((String.join(",", COLUMNS) + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3) {
+            System.out.println("Usage: RoundExporter (chart file) (rounds) (output file) [CSV file or -] [rules] [decks]");
+            return;
+        }
+
+        Strategy strategy = Strategy.load(Paths.get(args[0]));
+        long rounds = Long.parseLong(args[1]);
+        Path csvFile = args.length > 3 && !args[3].equals("-") ? Paths.get(args[3]) : null;
+        Rules rules = args.length > 4 ? Rules.parse(args[4]) : Rules.STANDARD;
+        int numOfDecks = args.length > 5 ? Integer.parseInt(args[5]) : 6;
+
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(numOfDecks);
+
+        long start = System.nanoTime();
+        try (RoundExporter exporter = new RoundExporter(Paths.get(args[2]), csvFile)) {
+            for (long round = 0; round < rounds; round++) {
+                if (game.getShoe().size() < 0.25 * 52 * numOfDecks) {
+                    game.fillShoe();
+                }
+
+                game.deal();
+                int action = NO_ACTION;
+                if (game.isRoundOngoing()) {
+                    action = strategy.decide(game);
+                    Strategy.act(game, action);
+                    strategy.play(game);
+                }
+                exporter.add(game, action);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d rounds in %.1f s (%.0f rounds/s)%n", rounds, seconds, rounds / seconds);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of rows added so far.
+     *
+     * @return rows
+     */
+    public long getNumOfRows()
+    {
+        return totalRows;
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Adds a finished round. The cards, total and result are the
+     * first hand's, which after a split is the hand with the first
+     * of the split cards.
+     *
+     * @param  game    game whose round has ended
+     * @param  action  first action taken, or NO_ACTION
+     * @throws IOException  if writing fails
+     */
+    public void add(Blackjack game, int action) throws IOException
+    {
+        Hand first = game.getPlayerHands().get(0);
+        Hand dealer = game.getDealerHand();
+        List<Card> cards = first.getCards();
+
+        // A split hand's second card was drawn after the split; the pair's is the same rank
+        int secondRank = first.isSplitHand() ? cards.get(0).getRankIndex() : cards.get(1).getRankIndex();
+
+        int units = 0;
+        for (Hand hand : game.getPlayerHands()) units += (int) hand.getBetMultiplier();
+
+        add(cards.get(0).getRankIndex(), secondRank, dealer.getCards().get(0).getRankIndex(), action,
+                game.getPlayerHands().size(), first.numberOfCards(), first.handScore(true),
+                dealer.handScore(true), first.determineHandResult(dealer), units,
+                Strategy.netUnits(game));
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param  card1       rank index of the first card
+     * @param  card2       rank index of the second card
+     * @param  upcard      rank index of the dealer's upcard
+     * @param  action      first action, Strategy.HIT to SURRENDER, or NO_ACTION
+     * @param  hands       hands played after splits
+     * @param  cards       cards in the first hand
+     * @param  total       first hand's final total
+     * @param  dealer      dealer's final total
+     * @param  result      Hand.determineHandResult of the first hand
+     * @param  units       bet multipliers of every hand, added up
+     * @param  net         net units won, kept to a tenth of a unit
+     * @throws IOException  if writing fails
+     */
+    public void add(int card1, int card2, int upcard, int action, int hands, int cards,
+                    int total, int dealer, int result, int units, double net) throws IOException
+    {
+        int tenths = (int) Math.round(net * 10);
+        int[] values = {card1, card2, upcard, action, Math.min(hands, 15), Math.min(cards, 15),
+                Math.min(total, 31), Math.min(dealer, 31), result, Math.min(units, 63),
+                (tenths << 1) ^ (tenths >> 31)};
+        if (values[10] >= 1 << WIDTHS[10]) {
+            throw new IllegalArgumentException("Net result too large to export: " + net);
+        }
+
+        for (int column = 0; column < WIDTHS.length; column++) {
+            pack(WORDS[column], numOfRows, WIDTHS[column], values[column]);
+        }
+        numOfRows++;
+        totalRows++;
+        if (numOfRows == CHUNK_ROWS) writeChunk();
+
+        if (csvBuffer != null) writeCsv(values, net);
+    }
+
+    /**
+     * Writes the last chunk and closes the files.
+     *
+     * @throws IOException  if writing fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            if (numOfRows > 0) writeChunk();
+            if (csvChannel != null) {
+                csvBuffer.flip();
+                while (csvBuffer.hasRemaining()) csvChannel.write(csvBuffer);
+            }
+        } finally {
+            channel.close();
+            if (csvChannel != null) csvChannel.close();
+        }
+    }
+
+    /**
+     * Writes the rows gathered so far as a chunk and starts a new one.
+     */
+    private void writeChunk() throws IOException
+    {
+        buffer.putInt(numOfRows);
+        for (int column = 0; column < WIDTHS.length; column++) {
+            long[] words = WORDS[column];
+            int numOfWords = wordsFor(numOfRows, WIDTHS[column]);
+            for (int i = 0; i < numOfWords; i++) {
+                buffer.putLong(words[i]);
+                words[i] = 0;
+            }
+        }
+
+        writeBuffer();
+        numOfRows = 0;
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Adds a row to the CSV buffer, writing the buffer out when full.
+     */
+    private void writeCsv(int[] values, double net) throws IOException
+    {
+        line.setLength(0);
+        for (int column = 0; column < values.length - 1; column++) {
+            line.append(values[column]).append(',');
+        }
+        line.append(net).append('\n');
+
+        if (csvBuffer.remaining() < line.length()) {
+            csvBuffer.flip();
+            while (csvBuffer.hasRemaining()) csvChannel.write(csvBuffer);
+            csvBuffer.clear();
+        }
+        for (int i = 0; i < line.length(); i++) {
+            csvBuffer.put((byte) line.charAt(i));
+        }
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Packs a value into a column's words.
+     *
+     * @param  words  column's words
+     * @param  row    row of the value
+     * @param  width  bits per value
+     * @param  value  value, less than 2^width
+     */
+    static void pack(long[] words, int row, int width, long value)
+    {
+        long bit = (long) row * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+
+        words[word] |= value << offset;
+        if (offset + width > 64) words[word + 1] |= value >>> (64 - offset);
+    }
+
+    /**
+     * Gets the number of 64-bit words that hold a column of a chunk.
+     *
+     * @param  rows   rows in the chunk
+     * @param  width  bits per value
+     * @return        words
+     */
+    static int wordsFor(int rows, int width)
+    {
+        return (int) (((long) rows * width + 63) >>> 6);
+    }
+
+    /**
+     * Turns a stored net value back into units.
+     *
+     * @param  value  value of the net column
+     * @return        net units won
+     */
+    public static double decodeNet(int value)
+    {
+        return ((value >>> 1) ^ -(value & 1)) / 10.0;
+    }
+}
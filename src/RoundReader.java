@@ -0,0 +1,229 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a file written by RoundExporter through memory-mapped I/O.
+ * A scan decodes only the columns it asks for, one chunk at a time,
+ * so the columns it skips are never read from disk. Files larger
+ * than one mapping are mapped in windows of whole chunks.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class RoundReader implements AutoCloseable {
+    // Largest window mapped at once
+    private static final long WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Integer> widths = new ArrayList<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+    private long numOfRows = 0;
+
+    /**
+     * Where a chunk is: its window, where it starts in the window,
+     * and its row count
+     */
+    private record Chunk(MappedByteBuffer window, int start, int rows)
+    {}
+
+    /**
+     * Constructor for a reader, which maps the file and finds its chunks
+     *
+     * @param  file         file written by RoundExporter
+     * @throws IOException  if it can't be read or isn't such a file
+     */
+    public RoundReader(Path file) throws IOException
+    {
+        channel = FileChannel.open(file);
+        long size = channel.size();
+
+        MappedByteBuffer header = map(0, Math.min(size, 4096));
+        if (size < 12 || header.getInt() != RoundExporter.MAGIC || header.getInt() != RoundExporter.VERSION) {
+            channel.close();
+            throw new IOException("Not a round export: " + file);
+        }
+        int numOfColumns = header.getInt();
+        for (int column = 0; column < numOfColumns; column++) {
+            byte[] name = new byte[header.get()];
+            header.get(name);
+            columns.add(new String(name, StandardCharsets.US_ASCII));
+            widths.add((int) header.get());
+        }
+
+        // Each window starts at a chunk and holds whole chunks
+        long position = header.position();
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        while (position < size) {
+            if (window == null || position + 4 > windowStart + window.capacity()) {
+                windowStart = position;
+                window = map(position, Math.min(size - position, WINDOW_BYTES));
+            }
+
+            int rows = window.getInt((int) (position - windowStart));
+            long chunkBytes = 4;
+            for (int width : widths) {
+                chunkBytes += 8L * RoundExporter.wordsFor(rows, width);
+            }
+            if (position + chunkBytes > size) throw new IOException("Truncated chunk at byte " + position);
+
+            if (position + chunkBytes > windowStart + window.capacity()) {
+                // The chunk runs past the window, so it starts the next one
+                window = null;
+                continue;
+            }
+
+            chunks.add(new Chunk(window, (int) (position - windowStart), rows));
+            numOfRows += rows;
+            position += chunkBytes;
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: RoundReader (file) [columns...]");
+            return;
+        }
+
+        try (RoundReader reader = new RoundReader(Paths.get(args[0]))) {
+            List<String> selected = args.length > 1 ? List.of(args).subList(1, args.length) : reader.getColumns();
+            long[] sums = new long[selected.size()];
+            double[] net = {0};
+            int netIndex = selected.indexOf("net");
+
+            long start = System.nanoTime();
+            reader.scan(selected, row -> {
+                for (int i = 0; i < row.length; i++) sums[i] += row[i];
+                if (netIndex >= 0) net[0] += RoundExporter.decodeNet(row[netIndex]);
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d rows, %d chunks, scanned %s in %.2f s (%.0f rows/s)%n",
+                    reader.getNumOfRows(), reader.chunks.size(), selected, seconds,
+                    reader.getNumOfRows() / seconds);
+            for (int i = 0; i < selected.size(); i++) {
+                double mean = i == netIndex ? net[0] / reader.getNumOfRows()
+                        : (double) sums[i] / reader.getNumOfRows();
+                System.out.printf("  %s: mean %.5f%n", selected.get(i), mean);
+            }
+        }
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the names of the file's columns.
+     *
+     * @return column names
+     */
+    public List<String> getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Gets the number of rows in the file.
+     *
+     * @return rows
+     */
+    public long getNumOfRows()
+    {
+        return numOfRows;
+    }
+
+    /**
+     * Calls back with the selected columns of every row, in order.
+     * The array passed is reused for each row.
+     *
+     * @param  selected  names of the columns to read
+     * @param  visitor   gets each row's values, in the order selected
+     */
+    public void scan(List<String> selected, Consumer<int[]> visitor)
+    {
+        int[] indexes = new int[selected.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columns.indexOf(selected.get(i));
+            if (indexes[i] < 0) throw new IllegalArgumentException("No column " + selected.get(i));
+        }
+
+        int[][] values = new int[indexes.length][RoundExporter.CHUNK_ROWS];
+        int[] row = new int[indexes.length];
+
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < indexes.length; i++) {
+                decode(chunk, indexes[i], values[i]);
+            }
+            for (int r = 0; r < chunk.rows(); r++) {
+                for (int i = 0; i < indexes.length; i++) row[i] = values[i][r];
+                visitor.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Unpacks one column of a chunk.
+     *
+     * @param  chunk   chunk to read
+     * @param  column  index of the column
+     * @param  values  where to put the values
+     */
+    private void decode(Chunk chunk, int column, int[] values)
+    {
+        // Skip the row count and the columns before this one
+        int position = chunk.start() + 4;
+        for (int i = 0; i < column; i++) {
+            position += 8 * RoundExporter.wordsFor(chunk.rows(), widths.get(i));
+        }
+
+        int width = widths.get(column);
+        long mask = (1L << width) - 1;
+        int numOfWords = RoundExporter.wordsFor(chunk.rows(), width);
+        MappedByteBuffer window = chunk.window();
+
+        long word = window.getLong(position);
+        int wordIndex = 0;
+        int offset = 0;
+        for (int r = 0; r < chunk.rows(); r++) {
+            long value = word >>> offset;
+            offset += width;
+            if (offset >= 64) {
+                offset -= 64;
+                wordIndex++;
+                word = wordIndex < numOfWords ? window.getLong(position + 8 * wordIndex) : 0;
+                if (offset > 0) value |= word << (width - offset);
+            }
+            values[r] = (int) (value & mask);
+        }
+    }
+
+    /**
+     * Closes the file. The mappings are released when their buffers
+     * are garbage collected.
+     *
+     * @throws IOException  if closing fails
+     */
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private MappedByteBuffer map(long position, long length) throws IOException
+    {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Record that represents the rules of a blackjack table. A table
+ * is specialized on its rules when it is built, so options that
+ * are not in play cost nothing while the round is running.
+ *
+ * @param  dealerHitsSoft17  whether the dealer hits a soft 17 (H17)
+ *                           instead of standing on it (S17)
+ * @param  doubleAfterSplit  whether hands created by a split may
+ *                           be doubled down
+ * @param  maxSplitHands     the most hands one seat can be split
+ *                           into, including the original
+ * @param  lateSurrender     whether the player may surrender the
+ *                           first two cards for half of the bet
+ * @param  blackjackPayout   profit per unit bet on a blackjack,
+ *                           1.5 for 3:2 and 1.2 for 6:5
+ * @param  dealerPeeks       whether the dealer checks for blackjack
+ *                           before the player acts
+ * @param  insurance         whether insurance, or even money on a
+ *                           blackjack, is offered when the dealer
+ *                           shows an ace
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public record Rules(boolean dealerHitsSoft17, boolean doubleAfterSplit,
+                    int maxSplitHands, boolean lateSurrender,
+                    double blackjackPayout, boolean dealerPeeks,
+                    boolean insurance)
+{
+    /**
+     * Dealer stands on all 17s, peeks for blackjack, doubling
+     * after splits and unlimited splits are allowed, there is no
+     * surrender, blackjack pays 3 to 2, and insurance is not
+     * offered.
+     */
+    public static final Rules STANDARD =
+            new Rules(false, true, Integer.MAX_VALUE, false, 1.5, true, false);
+
+    /**
+     * Constructor for a rule set
+     */
+    public Rules
+    {
+        if (maxSplitHands < 1) {
+            throw new IllegalArgumentException("A seat must be able to hold at least 1 hand");
+        }
+
+        if (blackjackPayout <= 0) {
+            throw new IllegalArgumentException("Blackjack payout must be positive");
+        }
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the lowest soft total the dealer stands on. This is
+     * 18 when the dealer hits soft 17, 17 otherwise.
+     *
+     * @return lowest soft total the dealer stands on
+     */
+    public int dealerSoftStandScore()
+    {
+        return dealerHitsSoft17 ? 18 : 17;
+    }
+
+    /**
+     * Returns a short description of the rules, such as
+     * "S17 DAS SPL3 LS 3:2 peek INS".
+     *
+     * @return summary of the rules
+     */
+    @Override
+    public String toString()
+    {
+        return (dealerHitsSoft17 ? "H17" : "S17")
+                + (doubleAfterSplit ? " DAS" : " NDAS")
+                + (maxSplitHands == Integer.MAX_VALUE ? "" : " SPL" + (maxSplitHands - 1))
+                + (lateSurrender ? " LS" : "")
+                + (blackjackPayout == 1.5 ? " 3:2" : blackjackPayout == 1.2 ? " 6:5"
+                        : " BJ" + blackjackPayout)
+                + (dealerPeeks ? " peek" : " no-peek")
+                + (insurance ? " INS" : "");
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads rules written as space or comma separated tokens, the
+     * same format toString uses, e.g. "H17 NDAS SPL3 LS 6:5 no-peek".
+     * Rules that are not mentioned are the standard ones.
+     *
+     * @param  text  rule tokens
+     * @return       rule set
+     */
+    public static Rules parse(String text)
+    {
+        Rules rules = STANDARD;
+
+        for (String token : text.trim().split("[\\s,]+")) {
+            switch (token.toUpperCase()) {
+                case "" -> { }
+                case "H17" -> rules = rules.withDealerHitsSoft17(true);
+                case "S17" -> rules = rules.withDealerHitsSoft17(false);
+                case "DAS" -> rules = rules.withDoubleAfterSplit(true);
+                case "NDAS" -> rules = rules.withDoubleAfterSplit(false);
+                case "LS" -> rules = rules.withLateSurrender(true);
+                case "NS" -> rules = rules.withLateSurrender(false);
+                case "3:2" -> rules = rules.withBlackjackPayout(1.5);
+                case "6:5" -> rules = rules.withBlackjackPayout(1.2);
+                case "PEEK" -> rules = rules.withDealerPeeks(true);
+                case "NO-PEEK" -> rules = rules.withDealerPeeks(false);
+                case "INS" -> rules = rules.withInsurance(true);
+                case "NI" -> rules = rules.withInsurance(false);
+                default -> {
+                    if (token.toUpperCase().startsWith("SPL")) {
+                        rules = rules.withMaxSplitHands(
+                                Integer.parseInt(token.substring(3)) + 1);
+                    } else if (token.toUpperCase().startsWith("BJ")) {
+                        rules = rules.withBlackjackPayout(
+                                Double.parseDouble(token.substring(2)));
+                    } else {
+                        throw new IllegalArgumentException("Unknown rule: " + token);
+                    }
+                }
+            }
+        }
+
+        return rules;
+    }
+
+    /*
+     * Copies with one rule changed
+     */
+
+    /**
+     * Copies these rules with a different soft 17 rule.
+     *
+     * @param  hits  whether the dealer hits soft 17
+     * @return       new rule set
+     */
+    public Rules withDealerHitsSoft17(boolean hits)
+    {
+        return new Rules(hits, doubleAfterSplit, maxSplitHands,
+                lateSurrender, blackjackPayout, dealerPeeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different double after split rule.
+     *
+     * @param  allowed  whether doubling after splitting is allowed
+     * @return          new rule set
+     */
+    public Rules withDoubleAfterSplit(boolean allowed)
+    {
+        return new Rules(dealerHitsSoft17, allowed, maxSplitHands,
+                lateSurrender, blackjackPayout, dealerPeeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different split limit.
+     *
+     * @param  hands  most hands a seat can be split into
+     * @return        new rule set
+     */
+    public Rules withMaxSplitHands(int hands)
+    {
+        return new Rules(dealerHitsSoft17, doubleAfterSplit, hands,
+                lateSurrender, blackjackPayout, dealerPeeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different surrender rule.
+     *
+     * @param  allowed  whether late surrender is offered
+     * @return          new rule set
+     */
+    public Rules withLateSurrender(boolean allowed)
+    {
+        return new Rules(dealerHitsSoft17, doubleAfterSplit, maxSplitHands,
+                allowed, blackjackPayout, dealerPeeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different blackjack payout.
+     *
+     * @param  payout  profit per unit bet on a blackjack
+     * @return         new rule set
+     */
+    public Rules withBlackjackPayout(double payout)
+    {
+        return new Rules(dealerHitsSoft17, doubleAfterSplit, maxSplitHands,
+                lateSurrender, payout, dealerPeeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different peek rule.
+     *
+     * @param  peeks  whether the dealer peeks for blackjack
+     * @return        new rule set
+     */
+    public Rules withDealerPeeks(boolean peeks)
+    {
+        return new Rules(dealerHitsSoft17, doubleAfterSplit, maxSplitHands,
+                lateSurrender, blackjackPayout, peeks, insurance);
+    }
+
+    /**
+     * Copies these rules with a different insurance rule.
+     *
+     * @param  offered  whether insurance and even money are offered
+     * @return          new rule set
+     */
+    public Rules withInsurance(boolean offered)
+    {
+        return new Rules(dealerHitsSoft17, doubleAfterSplit, maxSplitHands,
+                lateSurrender, blackjackPayout, dealerPeeks, offered);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Ways the Simulator can sample iterations. Every mode estimates
+ * the same rates; the variance-reduction modes get there with fewer
+ * iterations.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public enum SamplingMode {
+    /**
+     * Independent iterations, each drawing random cards.
+     */
+    PLAIN,
+
+    /**
+     * Iterations in pairs, the second drawing with the mirror image
+     * (1 - u) of every random number the first drew, so a high card
+     * in one tends to be a low card in the other.
+     */
+    ANTITHETIC,
+
+    /**
+     * Iterations split by the rank of the card the hand is hit with,
+     * in proportion to each rank's exact probability in the shoe.
+     */
+    STRATIFIED,
+
+    /**
+     * Independent iterations, corrected by how far the average value
+     * of the hit card strayed from its exact expectation in the shoe.
+     */
+    CONTROL_VARIATE
+}
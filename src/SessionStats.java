@@ -0,0 +1,160 @@
+/**
+ * Statistics of a session's rounds, updated as each round is settled
+ * and kept in constant memory: the mean and variance of the net
+ * result (Welford's method), the largest drop from a high point of
+ * the bankroll, and the longest run of losing rounds. Amounts are
+ * kept in minor units (cents) and reported in dollars.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class SessionStats {
+    private long numOfRounds = 0;
+    private long total = 0;
+    // Running mean and sum of squared differences from it, in minor units
+    private double mean = 0;
+    private double sumOfSquares = 0;
+    private long peak;
+    private long maxDrawdown = 0;
+    private int losingStreak = 0;
+    private int longestLosingStreak = 0;
+
+    /**
+     * Constructor for a session
+     *
+     * @param  startingFunds  bankroll at the start, in minor units
+     */
+    public SessionStats(long startingFunds)
+    {
+        peak = startingFunds;
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of rounds settled.
+     *
+     * @return rounds
+     */
+    public long getNumOfRounds()
+    {
+        return numOfRounds;
+    }
+
+    /**
+     * Gets the net result of every round together.
+     *
+     * @return total won, negative if lost
+     */
+    public double getTotal()
+    {
+        return (double) total / Bankroll.MINOR_UNITS;
+    }
+
+    /**
+     * Gets the mean net result of a round.
+     *
+     * @return mean won per round
+     */
+    public double getMean()
+    {
+        return mean / Bankroll.MINOR_UNITS;
+    }
+
+    /**
+     * Gets the sample variance of a round's net result.
+     *
+     * @return variance in dollars squared, 0 before 2 rounds
+     */
+    public double getVariance()
+    {
+        if (numOfRounds < 2) return 0;
+        return sumOfSquares / (numOfRounds - 1) / ((double) Bankroll.MINOR_UNITS * Bankroll.MINOR_UNITS);
+    }
+
+    /**
+     * Gets the sample standard deviation of a round's net result.
+     *
+     * @return standard deviation
+     */
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Gets the largest drop of the bankroll from its highest point
+     * so far, measured at the end of each round.
+     *
+     * @return largest drawdown
+     */
+    public double getMaxDrawdown()
+    {
+        return (double) maxDrawdown / Bankroll.MINOR_UNITS;
+    }
+
+    /**
+     * Gets the number of losing rounds in a row up to now.
+     *
+     * @return current losing streak
+     */
+    public int getLosingStreak()
+    {
+        return losingStreak;
+    }
+
+    /**
+     * Gets the most losing rounds in a row. A push ends a streak.
+     *
+     * @return longest losing streak
+     */
+    public int getLongestLosingStreak()
+    {
+        return longestLosingStreak;
+    }
+
+    /**
+     * Returns the statistics as readable lines.
+     *
+     * @return report
+     */
+    @Override
+    public String toString()
+    {
+        return "Rounds: " + numOfRounds
+                + "\nNet: " + Bankroll.formatMoney(getTotal())
+                + "\nMean per round: " + Bankroll.formatMoney(getMean())
+                + "\nStandard deviation: " + Bankroll.formatMoney(getStandardDeviation())
+                + "\nMax drawdown: " + Bankroll.formatMoney(getMaxDrawdown())
+                + "\nLongest losing streak: " + longestLosingStreak
+                + " (current " + losingStreak + ")";
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Adds a settled round.
+     *
+     * @param  net    net result of the round, in minor units
+     * @param  funds  bankroll after the round, in minor units
+     */
+    public void record(long net, long funds)
+    {
+        numOfRounds++;
+        total += net;
+
+        double delta = net - mean;
+        mean += delta / numOfRounds;
+        sumOfSquares += delta * (net - mean);
+
+        peak = Math.max(peak, funds);
+        maxDrawdown = Math.max(maxDrawdown, peak - funds);
+
+        losingStreak = net < 0 ? losingStreak + 1 : 0;
+        longestLosingStreak = Math.max(longestLosingStreak, losingStreak);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a simulation into shards and runs each one in its own
+ * worker JVM (SimulationWorker), so very large runs are not bound
+ * by one process's heap and garbage collector. Each shard draws
+ * from its own stream of the job's seed, so a shard gives the same
+ * counts wherever and however many times it runs. Jobs and results
+ * travel over the workers' standard input and output in binary,
+ * and a shard whose worker fails is started again.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class ShardedSimulator {
+    /**
+     * Identifies the job and result messages ("BJSH")
+     */
+    public static final int MAGIC = 0x424A5348;
+    public static final int VERSION = 3;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int numOfWorkers;
+    private final int numOfShards;
+    private final long timeoutMillis;
+
+    /**
+     * Constructor for a coordinator
+     *
+     * @param  numOfWorkers   worker JVMs to run at once
+     * @param  numOfShards    number of pieces to split a job into
+     * @param  timeoutMillis  how long a shard may take before its
+     *                        worker is killed and it is retried
+     */
+    public ShardedSimulator(int numOfWorkers, int numOfShards, long timeoutMillis)
+    {
+        if (numOfWorkers < 1 || numOfShards < 1) {
+            throw new IllegalArgumentException("Need at least 1 worker and 1 shard");
+        }
+
+        this.numOfWorkers = numOfWorkers;
+        this.numOfShards = numOfShards;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        long iterations = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        int numOfShards = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int numOfWorkers = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        Blackjack game = new Blackjack();
+        game.deal();
+        System.out.println(game);
+
+        ShardedSimulator coordinator = new ShardedSimulator(numOfWorkers, numOfShards, 600_000);
+        long start = System.nanoTime();
+        SimulationResult result = coordinator.simulate(game, iterations, System.nanoTime());
+
+        System.out.println("\n===== " + result.getIterations() + " in " + numOfShards
+                + " shards, " + (System.nanoTime() - start) / 1_000_000 + " ms =====\n");
+        System.out.println(result);
+    }
+
+    /**
+     * Simulates hitting the current hand of the game, spreading the
+     * iterations over the shards.
+     *
+     * @param  game         game to simulate
+     * @param  iterations   total number of times to hit
+     * @param  seed         seed for the shards' random number streams
+     * @return              merged counts of every shard
+     * @throws IOException  if a shard fails on every attempt
+     */
+    public SimulationResult simulate(Blackjack game, long iterations, long seed) throws IOException
+    {
+        byte[] gameBytes = toBytes(game);
+        ExecutorService executor = Executors.newFixedThreadPool(numOfWorkers);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            List<Future<SimulationResult>> futures = new ArrayList<>();
+            for (int i = 0; i < numOfShards; i++) {
+                // Spread the remainder over the first shards
+                long shardIterations = iterations / numOfShards
+                        + (i < iterations % numOfShards ? 1 : 0);
+                int shardIndex = i;
+                futures.add(executor.submit(
+                        () -> runShard(watchdog, gameBytes, shardIndex, shardIterations, seed)));
+            }
+
+            SimulationResult merged = new SimulationResult();
+            for (Future<SimulationResult> future : futures) {
+                merged.merge(future.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for shards", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Shard failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one shard in a worker JVM, starting it again if the
+     * worker fails.
+     *
+     * @param  watchdog     kills workers that run too long
+     * @param  gameBytes    game written by Blackjack.writeTo
+     * @param  shardIndex   which shard, also its random stream
+     * @param  iterations   number of iterations in the shard
+     * @param  seed         seed for the random streams
+     * @return              counts of the shard
+     * @throws IOException  if every attempt fails
+     */
+    private SimulationResult runShard(ScheduledExecutorService watchdog, byte[] gameBytes,
+                                      int shardIndex, long iterations, long seed)
+            throws IOException
+    {
+        IOException lastFailure = null;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                return runWorker(watchdog, gameBytes, shardIndex, iterations, seed);
+            } catch (IOException e) {
+                lastFailure = e;
+                System.err.println("Shard " + shardIndex + " attempt " + attempt
+                        + " failed: " + e.getMessage());
+            }
+        }
+
+        throw new IOException("Shard " + shardIndex + " failed "
+                + MAX_ATTEMPTS + " times", lastFailure);
+    }
+
+    /**
+     * Starts a worker JVM, sends it one shard and reads back its counts.
+     *
+     * @param  watchdog     kills workers that run too long
+     * @param  gameBytes    game written by Blackjack.writeTo
+     * @param  shardIndex   which shard, also its random stream
+     * @param  iterations   number of iterations in the shard
+     * @param  seed         seed for the random streams
+     * @return              counts of the shard
+     * @throws IOException  if the worker fails or times out
+     */
+    private SimulationResult runWorker(ScheduledExecutorService watchdog, byte[] gameBytes,
+                                       int shardIndex, long iterations, long seed)
+            throws IOException
+    {
+        String java = System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java";
+        Process worker = new ProcessBuilder(java, "-cp",
+                System.getProperty("java.class.path"), "SimulationWorker")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        // A stuck worker is killed, which ends the read below
+        ScheduledFuture<?> kill = watchdog.schedule(
+                worker::destroyForcibly, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(worker.getOutputStream()))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(shardIndex);
+                out.writeLong(seed);
+                out.writeLong(iterations);
+                out.write(gameBytes);
+            }
+
+            SimulationResult result;
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(worker.getInputStream()))) {
+                if (in.readInt() != MAGIC || in.readInt() != shardIndex) {
+                    throw new IOException("Unexpected reply from worker");
+                }
+                result = SimulationResult.readFrom(in);
+            } catch (IOException e) {
+                throw new IOException(kill.isDone() ? "Worker timed out"
+                        : "Worker stopped before replying", e);
+            }
+
+            if (worker.waitFor() != 0) {
+                throw new IOException("Worker exited with " + worker.exitValue());
+            } else if (result.getIterations() != iterations) {
+                throw new IOException("Worker counted " + result.getIterations()
+                        + " of " + iterations + " iterations");
+            }
+
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for worker", e);
+        } finally {
+            kill.cancel(false);
+            worker.destroyForcibly();
+        }
+    }
+
+    /**
+     * Writes a game with Blackjack.writeTo into a byte array.
+     *
+     * @param  game         game to write
+     * @return              bytes of the game
+     * @throws IOException  if writing fails
+     */
+    private static byte[] toBytes(Blackjack game) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            game.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+}
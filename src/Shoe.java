@@ -0,0 +1,326 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The box of cards a table deals from. Every shoe keeps the number
+ * of cards of each rank and of each exact card (rank and suit) it
+ * holds, and a hash of its ranks, all updated as cards leave or
+ * come back, so they can be read in constant time.
+ *
+ * Cards are identified by their codes (Card.toCode): rank index * 4
+ * + suit.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public abstract class Shoe {
+    // Tags for the kinds of shoe in writeTo
+    protected static final int CARD_SHOE = 0;
+    protected static final int COMPOSITION_SHOE = 1;
+    protected static final int ORDERED_SHOE = 2;
+    protected static final int CONTINUOUS_SHOE = 3;
+
+    private final int[] RANK_COUNTS = new int[13];
+    private final int[] CARD_COUNTS = new int[52];
+    private final int[] SUIT_COUNTS = new int[4];
+    // Hi-Lo tag of each rank index: 2-6 are +1, 7-9 are 0, tens and aces are -1
+    private static final int[] HI_LO = {1, 1, 1, 1, 1, 0, 0, 0, -1, -1, -1, -1, -1};
+    private int size = 0;
+    // Sum of the Hi-Lo tags of the cards in the shoe
+    private int hiLoSum = 0;
+    // Sum of Zobrist.shoeKey for every card in the shoe
+    private long hash = 0;
+    protected int numOfDecks;
+
+    /**
+     * Constructor for an empty shoe
+     *
+     * @param  numOfDecks  number of 52-card decks it holds when full
+     */
+    protected Shoe(int numOfDecks)
+    {
+        if (numOfDecks < 1) {
+            throw new IllegalArgumentException("Number of decks must be at least 1");
+        }
+
+        this.numOfDecks = numOfDecks;
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param  shoe  shoe whose counts to copy
+     */
+    protected Shoe(Shoe shoe)
+    {
+        System.arraycopy(shoe.RANK_COUNTS, 0, RANK_COUNTS, 0, 13);
+        System.arraycopy(shoe.CARD_COUNTS, 0, CARD_COUNTS, 0, 52);
+        System.arraycopy(shoe.SUIT_COUNTS, 0, SUIT_COUNTS, 0, 4);
+        size = shoe.size;
+        hiLoSum = shoe.hiLoSum;
+        hash = shoe.hash;
+        numOfDecks = shoe.numOfDecks;
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of cards in the shoe.
+     *
+     * @return cards remaining
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets the number of cards of a rank in the shoe.
+     *
+     * @param  rank  rank index (0-12)
+     * @return       cards of the rank
+     */
+    public int getRankCount(int rank)
+    {
+        return RANK_COUNTS[rank];
+    }
+
+    /**
+     * Gets the number of copies of a card (rank and suit) in the shoe.
+     *
+     * @param  code  card code (0-51)
+     * @return       copies of the card
+     */
+    public int getCardCount(int code)
+    {
+        return CARD_COUNTS[code];
+    }
+
+    /**
+     * Gets the number of cards of a suit in the shoe.
+     *
+     * @param  suit  suit (0-3)
+     * @return       cards of the suit
+     */
+    public int getSuitCount(int suit)
+    {
+        return SUIT_COUNTS[suit];
+    }
+
+    /**
+     * Gets whether drawing leaves the shoe unchanged, so cards are
+     * drawn with replacement.
+     *
+     * @return whether the shoe is infinite
+     */
+    public boolean isInfinite()
+    {
+        return false;
+    }
+
+    /**
+     * Gets the Hi-Lo running count of the cards dealt from the shoe.
+     * A full shoe's tags add up to 0, so this is the negative of the
+     * tags of the cards still in it.
+     *
+     * @return running count
+     */
+    public int getRunningCount()
+    {
+        return -hiLoSum;
+    }
+
+    /**
+     * Gets the Hi-Lo true count: the running count per deck left.
+     *
+     * @return true count
+     */
+    public double getTrueCount()
+    {
+        return size == 0 ? 0 : -hiLoSum * 52.0 / size;
+    }
+
+    /**
+     * Gets a hash of the ranks in the shoe, regardless of order.
+     *
+     * @return hash of the shoe's composition
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Gets the number of decks the shoe holds when full.
+     *
+     * @return number of 52-card decks
+     */
+    public int getNumOfDecks()
+    {
+        return numOfDecks;
+    }
+
+    /**
+     * Returns a short description of how many cards are left.
+     *
+     * @return cards remaining
+     */
+    @Override
+    public String toString()
+    {
+        return String.valueOf(size);
+    }
+
+    /**
+     * Copies the shoe, so the copy can be drawn from without
+     * changing this one.
+     *
+     * @return independent copy
+     */
+    public abstract Shoe copy();
+
+    /**
+     * Writes the shoe in binary, starting with its kind.
+     *
+     * @param  out          where to write
+     * @throws IOException  if writing fails
+     */
+    public abstract void writeTo(DataOutput out) throws IOException;
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Draws a random card and removes it from the shoe.
+     *
+     * @param  rng  random number generator to draw with
+     * @return      card drawn
+     */
+    public abstract Card draw(Rng rng);
+
+    /**
+     * Draws a random card of a given rank and removes it from the shoe.
+     *
+     * @param  rng   random number generator to draw with
+     * @param  rank  rank index (0-12), must be in the shoe
+     * @return       card drawn
+     */
+    public abstract Card draw(Rng rng, int rank);
+
+    /**
+     * Reshuffles the shoe: takes back the cards left in it and puts in
+     * a full set for as many decks as it holds, so it holds exactly
+     * 52 cards per deck whatever was dealt before.
+     */
+    public abstract void fill();
+
+    /**
+     * Takes back a card from a finished round. Only a continuous
+     * shuffler puts discards back in play; other shoes leave them out
+     * until they are filled.
+     *
+     * @param  card  card discarded
+     */
+    public void discard(Card card)
+    {}
+
+    /**
+     * Marks the end of a round's discards.
+     */
+    public void endRound()
+    {}
+
+    /**
+     * Empties the shoe and fills it with a number of decks.
+     *
+     * @param  numOfDecks  number of 52-card decks
+     */
+    public void reset(int numOfDecks)
+    {
+        if (numOfDecks < 1) {
+            throw new IllegalArgumentException("Number of decks must be at least 1");
+        }
+
+        this.numOfDecks = numOfDecks;
+        clear();
+        fill();
+    }
+
+    /**
+     * Removes every card from the shoe.
+     */
+    protected abstract void clear();
+
+    /**
+     * Updates the counts for a card leaving the shoe.
+     *
+     * @param  code  card code (0-51)
+     */
+    protected void countRemoved(int code)
+    {
+        RANK_COUNTS[code >> 2]--;
+        CARD_COUNTS[code]--;
+        SUIT_COUNTS[code & 3]--;
+        size--;
+        hiLoSum -= HI_LO[code >> 2];
+        hash -= Zobrist.shoeKey(code >> 2);
+    }
+
+    /**
+     * Updates the counts for copies of a card entering the shoe.
+     *
+     * @param  code    card code (0-51)
+     * @param  copies  number of copies
+     */
+    protected void countAdded(int code, int copies)
+    {
+        RANK_COUNTS[code >> 2] += copies;
+        CARD_COUNTS[code] += copies;
+        SUIT_COUNTS[code & 3] += copies;
+        size += copies;
+        hiLoSum += copies * HI_LO[code >> 2];
+        hash += copies * Zobrist.shoeKey(code >> 2);
+    }
+
+    /**
+     * Sets every count to 0.
+     */
+    protected void clearCounts()
+    {
+        Arrays.fill(RANK_COUNTS, 0);
+        Arrays.fill(CARD_COUNTS, 0);
+        Arrays.fill(SUIT_COUNTS, 0);
+        size = 0;
+        hiLoSum = 0;
+        hash = 0;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads a shoe written by writeTo.
+     *
+     * @param  in           where to read
+     * @return              shoe in the same state
+     * @throws IOException  if reading fails
+     */
+    public static Shoe readFrom(DataInput in) throws IOException
+    {
+        int kind = in.readUnsignedByte();
+
+        return switch (kind) {
+            case CARD_SHOE -> CardShoe.read(in);
+            case COMPOSITION_SHOE -> CompositionShoe.read(in);
+            case ORDERED_SHOE -> OrderedShoe.read(in);
+            case CONTINUOUS_SHOE -> ContinuousShoe.read(in);
+            default -> throw new IOException("Unknown kind of shoe: " + kind);
+        };
+    }
+}
@@ -0,0 +1,348 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Side bets settled on the first cards of a round. Each one has a
+ * list of winning outcomes, from the lowest paying to the highest,
+ * and pays only the highest outcome a hand qualifies for.
+ *
+ * The chance of each outcome is computed exactly from the shoe's
+ * card, rank and suit counts, which the shoe keeps as cards are
+ * drawn, so it takes the same few arithmetic steps however many
+ * decks are in the shoe. Counts are ordered draws without
+ * replacement, or with replacement for an infinite shoe.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public enum SideBet {
+    /**
+     * The player's first two cards are a pair
+     */
+    PERFECT_PAIRS("pp", "Perfect Pairs",
+            new String[] {"mixed pair", "colored pair", "perfect pair"},
+            new double[] {6, 12, 25}) {
+        @Override
+        public int outcome(List<Card> playerCards, List<Card> dealerCards)
+        {
+            Card first = playerCards.get(0);
+            Card second = playerCards.get(1);
+
+            if (first.getRankIndex() != second.getRankIndex()) return -1;
+            if (first.suit() == second.suit()) return 2;
+            return isRed(first.suit()) == isRed(second.suit()) ? 1 : 0;
+        }
+
+        @Override
+        public double[] probabilities(Shoe shoe)
+        {
+            int d = shoe.isInfinite() ? 0 : 1;
+            double perfect = 0;
+            double colored = 0;
+            double mixed = 0;
+
+            for (int rank = 0; rank < 13; rank++) {
+                int hearts = shoe.getCardCount(rank * 4);
+                int diamonds = shoe.getCardCount(rank * 4 + 1);
+                int clubs = shoe.getCardCount(rank * 4 + 2);
+                int spades = shoe.getCardCount(rank * 4 + 3);
+
+                perfect += pairs(hearts, d) + pairs(diamonds, d) + pairs(clubs, d) + pairs(spades, d);
+                colored += 2.0 * hearts * diamonds + 2.0 * clubs * spades;
+                mixed += 2.0 * (hearts + diamonds) * (clubs + spades);
+            }
+
+            double draws = pairs(shoe.size(), d);
+            return new double[] {mixed / draws, colored / draws, perfect / draws};
+        }
+    },
+
+    /**
+     * The player's first two cards and the dealer's upcard make a
+     * poker hand
+     */
+    TWENTY_ONE_PLUS_THREE("21+3", "21+3",
+            new String[] {"flush", "straight", "three of a kind", "straight flush", "suited trips"},
+            new double[] {5, 10, 30, 40, 100}) {
+        @Override
+        public int outcome(List<Card> playerCards, List<Card> dealerCards)
+        {
+            Card[] cards = {playerCards.get(0), playerCards.get(1), dealerCards.get(0)};
+            boolean isFlush = cards[0].suit() == cards[1].suit() && cards[1].suit() == cards[2].suit();
+
+            int[] ranks = {cards[0].getRankIndex(), cards[1].getRankIndex(), cards[2].getRankIndex()};
+            Arrays.sort(ranks);
+            if (ranks[0] == ranks[2]) return isFlush ? 4 : 2;
+
+            // Aces are high, or low in A-2-3
+            boolean isStraight = ranks[0] + 1 == ranks[1] && ranks[1] + 1 == ranks[2]
+                    || ranks[0] == 0 && ranks[1] == 1 && ranks[2] == 12;
+            if (isStraight) return isFlush ? 3 : 1;
+            return isFlush ? 0 : -1;
+        }
+
+        @Override
+        public double[] probabilities(Shoe shoe)
+        {
+            int d = shoe.isInfinite() ? 0 : 1;
+            double suitedTrips = 0;
+            double trips = 0;
+            double straightFlush = 0;
+            double straight = 0;
+            double flush = 0;
+
+            for (int code = 0; code < 52; code++) {
+                suitedTrips += triples(shoe.getCardCount(code), d);
+            }
+            for (int rank = 0; rank < 13; rank++) {
+                trips += triples(shoe.getRankCount(rank), d);
+            }
+            for (int suit = 0; suit < 4; suit++) {
+                flush += triples(shoe.getSuitCount(suit), d);
+            }
+
+            // A-2-3, 2-3-4, ..., Q-K-A, in any of 6 orders
+            for (int low = -1; low < 11; low++) {
+                int first = low < 0 ? 12 : low;
+                straight += 6.0 * shoe.getRankCount(first)
+                        * shoe.getRankCount(low + 1) * shoe.getRankCount(low + 2);
+                for (int suit = 0; suit < 4; suit++) {
+                    straightFlush += 6.0 * shoe.getCardCount(first * 4 + suit)
+                            * shoe.getCardCount((low + 1) * 4 + suit)
+                            * shoe.getCardCount((low + 2) * 4 + suit);
+                }
+            }
+
+            double draws = triples(shoe.size(), d);
+            return new double[] {
+                    (flush - suitedTrips - straightFlush) / draws,
+                    (straight - straightFlush) / draws,
+                    (trips - suitedTrips) / draws,
+                    straightFlush / draws,
+                    suitedTrips / draws
+            };
+        }
+    },
+
+    /**
+     * The player's first two cards total 20
+     */
+    LUCKY_LADIES("ll", "Lucky Ladies",
+            new String[] {"any 20", "suited 20", "matched 20", "queen of hearts pair",
+                    "queen of hearts pair and dealer blackjack"},
+            new double[] {4, 10, 25, 200, 1000}) {
+        @Override
+        public int outcome(List<Card> playerCards, List<Card> dealerCards)
+        {
+            Card first = playerCards.get(0);
+            Card second = playerCards.get(1);
+            if (first.getValue() + second.getValue() != 20) return -1;
+
+            if (first.toCode() == QUEEN_OF_HEARTS && second.toCode() == QUEEN_OF_HEARTS) {
+                boolean isDealerBlackjack =
+                        dealerCards.get(0).getValue() + dealerCards.get(1).getValue() == 21;
+                return isDealerBlackjack ? 4 : 3;
+            }
+            if (first.toCode() == second.toCode()) return 2;
+            return first.suit() == second.suit() ? 1 : 0;
+        }
+
+        @Override
+        public double[] probabilities(Shoe shoe)
+        {
+            int d = shoe.isInfinite() ? 0 : 1;
+            int tens = 0;
+            double sameCard = 0;
+            double suited = 0;
+
+            for (int suit = 0; suit < 4; suit++) {
+                // Tens of different ranks, and an ace with a 9
+                int suitTens = 0;
+                for (int rank = 8; rank < 12; rank++) {
+                    int count = shoe.getCardCount(rank * 4 + suit);
+                    suitTens += count;
+                    sameCard += pairs(count, d);
+                    suited -= (double) count * count;
+                }
+                suited += (double) suitTens * suitTens
+                        + 2.0 * shoe.getCardCount(12 * 4 + suit) * shoe.getCardCount(7 * 4 + suit);
+                tens += suitTens;
+            }
+
+            double draws = pairs(shoe.size(), d);
+            double twenty = pairs(tens, d) + 2.0 * shoe.getRankCount(12) * shoe.getRankCount(7);
+            double queens = pairs(shoe.getCardCount(QUEEN_OF_HEARTS), d);
+
+            // The dealer's two cards come from what the queens leave
+            double dealerBlackjack = 2.0 * shoe.getRankCount(12) * (tens - 2 * d)
+                    / pairs(shoe.size() - 2 * d, d);
+
+            return new double[] {
+                    (twenty - suited - sameCard) / draws,
+                    suited / draws,
+                    (sameCard - queens) / draws,
+                    queens / draws * (1 - dealerBlackjack),
+                    queens / draws * dealerBlackjack
+            };
+        }
+    };
+
+    // Queen of hearts: rank index 10, suit 0
+    private static final int QUEEN_OF_HEARTS = 10 * 4;
+
+    private final String code;
+    private final String name;
+    private final String[] OUTCOMES;
+    private final double[] PAYOUTS;
+
+    /**
+     * Constructor for a side bet
+     *
+     * @param  code      short name used in commands
+     * @param  name      name of the bet
+     * @param  outcomes  names of the winning outcomes, lowest paying first
+     * @param  payouts   profit per unit bet on each outcome
+     */
+    SideBet(String code, String name, String[] outcomes, double[] payouts)
+    {
+        this.code = code;
+        this.name = name;
+        this.OUTCOMES = outcomes;
+        this.PAYOUTS = payouts;
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Determines which outcome a round's cards win.
+     *
+     * @param  playerCards  the player's hand, at least its first two cards
+     * @param  dealerCards  the dealer's hand, at least its first two cards
+     * @return              winning outcome, or -1 if the bet loses
+     */
+    public abstract int outcome(List<Card> playerCards, List<Card> dealerCards);
+
+    /**
+     * Gets the chance of each winning outcome on the next round.
+     *
+     * @param  shoe  shoe the round will be dealt from
+     * @return       chance of each outcome, lowest paying first
+     */
+    public abstract double[] probabilities(Shoe shoe);
+
+    /**
+     * Gets the expected profit per unit bet on the next round.
+     *
+     * @param  shoe  shoe the round will be dealt from
+     * @return       expected value, positive if the bet favors the player
+     */
+    public double expectedValue(Shoe shoe)
+    {
+        double[] probabilities = probabilities(shoe);
+        double ev = 0;
+        double winChance = 0;
+        for (int i = 0; i < probabilities.length; i++) {
+            ev += probabilities[i] * PAYOUTS[i];
+            winChance += probabilities[i];
+        }
+        return ev - (1 - winChance);
+    }
+
+    /**
+     * Gets the profit per unit bet on an outcome.
+     *
+     * @param  outcome  winning outcome, or -1
+     * @return          profit, -1 if the bet lost
+     */
+    public double getPayout(int outcome)
+    {
+        return outcome < 0 ? -1 : PAYOUTS[outcome];
+    }
+
+    /**
+     * Gets the name of an outcome.
+     *
+     * @param  outcome  winning outcome, or -1
+     * @return          name of the outcome
+     */
+    public String getOutcomeName(int outcome)
+    {
+        return outcome < 0 ? "lost" : OUTCOMES[outcome];
+    }
+
+    /**
+     * Gets the short name used in commands.
+     *
+     * @return code such as pp
+     */
+    public String getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Returns the name of the bet.
+     *
+     * @return name
+     */
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Finds a side bet by its short name.
+     *
+     * @param  code  short name such as pp, 21+3 or ll
+     * @return       side bet, or null if there is none
+     */
+    public static SideBet fromCode(String code)
+    {
+        for (SideBet bet : values()) {
+            if (bet.code.equalsIgnoreCase(code)) return bet;
+        }
+        return null;
+    }
+
+    /**
+     * Counts ordered draws of two cards out of n.
+     *
+     * @param  n  cards
+     * @param  d  1 without replacement, 0 with
+     * @return    n(n - d)
+     */
+    private static double pairs(int n, int d)
+    {
+        return (double) n * (n - d);
+    }
+
+    /**
+     * Counts ordered draws of three cards out of n.
+     *
+     * @param  n  cards
+     * @param  d  1 without replacement, 0 with
+     * @return    n(n - d)(n - 2d)
+     */
+    private static double triples(int n, int d)
+    {
+        return (double) n * (n - d) * (n - 2 * d);
+    }
+
+    /**
+     * Determines whether a suit is red.
+     *
+     * @param  suit  suit (0-3)
+     * @return       whether it is hearts or diamonds
+     */
+    private static boolean isRed(int suit)
+    {
+        return suit < 2;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Record of the rates estimated by a simulation, with how precise
+ * they are. The effective sample size is the number of plain,
+ * independent iterations that would have given the loss rate the
+ * same precision, so it shows how much a sampling mode saved.
+ *
+ * @param  mode                 how the iterations were sampled
+ * @param  rates                estimated rate of each outcome
+ * @param  lossStandardError    standard error of the loss rate
+ * @param  effectiveSampleSize  plain iterations with the same precision
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public record SimulationEstimate(SamplingMode mode, SimulationSnapshot rates,
+                                 double lossStandardError, double effectiveSampleSize)
+{
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets how many times more iterations plain sampling would
+     * need for the same precision.
+     *
+     * @return effective sample size per iteration
+     */
+    public double efficiency()
+    {
+        return effectiveSampleSize / rates.iterations();
+    }
+
+    /**
+     * Returns the percentage of each outcome and the precision.
+     *
+     * @return readable estimate
+     */
+    @Override
+    public String toString()
+    {
+        return rates.toReport()
+                + "\nSampling: " + mode + ", " + rates.iterations() + " iterations"
+                + "\nEffective sample size: " + (Double.isInfinite(effectiveSampleSize)
+                        ? "exact" : Math.round(effectiveSampleSize)
+                                + " (" + Simulator.round(efficiency()) + "x)");
+    }
+}
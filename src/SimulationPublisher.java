@@ -0,0 +1,191 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the partial results of a simulation as it runs. Each
+ * subscriber gets its own run of the simulation, which only moves
+ * forward while the subscriber has requested more snapshots, so a
+ * slow consumer pauses the run instead of piling up results. A
+ * subscriber that has seen enough cancels its subscription, and the
+ * run stops after the piece it is working on.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class SimulationPublisher implements Flow.Publisher<SimulationSnapshot> {
+    private final Blackjack game;
+    private final long totalIterations;
+    private final long iterationsPerSnapshot;
+    private final Executor executor;
+
+    /**
+     * Constructor for a publisher
+     *
+     * @param  game                   game to simulate, which is copied
+     * @param  totalIterations        number of times to hit
+     * @param  iterationsPerSnapshot  iterations between snapshots
+     * @param  executor               runs the simulations
+     */
+    public SimulationPublisher(Blackjack game, long totalIterations,
+                               long iterationsPerSnapshot, Executor executor)
+    {
+        // A run with nothing to do would never emit, so never complete
+        if (totalIterations < 1) {
+            throw new IllegalArgumentException("Need at least 1 iteration");
+        }
+        if (iterationsPerSnapshot < 1) {
+            throw new IllegalArgumentException("Need at least 1 iteration per snapshot");
+        }
+
+        this.game = new Blackjack(game);
+        this.totalIterations = totalIterations;
+        this.iterationsPerSnapshot = iterationsPerSnapshot;
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        Blackjack game = new Blackjack();
+        game.deal();
+        System.out.println(game + "\n");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SimulationPublisher publisher = new SimulationPublisher(game, 10_000_000, 50_000, executor);
+
+        // Stop as soon as every rate is known to within half a percent
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            public void onSubscribe(Flow.Subscription subscription)
+            {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            public void onNext(SimulationSnapshot snapshot)
+            {
+                System.out.println(snapshot);
+                if (snapshot.confidenceWidth() < 0.01) {
+                    subscription.cancel();
+                    executor.shutdown();
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            public void onError(Throwable throwable)
+            {
+                throwable.printStackTrace();
+                executor.shutdown();
+            }
+
+            public void onComplete()
+            {
+                executor.shutdown();
+            }
+        });
+    }
+
+    /**
+     * Starts a run of the simulation for a subscriber. Nothing is
+     * simulated until the subscriber requests snapshots.
+     *
+     * @param  subscriber  receiver of the snapshots
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super SimulationSnapshot> subscriber)
+    {
+        SimulationRun run = new SimulationRun(game, totalIterations, new Rng());
+        subscriber.onSubscribe(new Subscription(subscriber, run));
+    }
+
+    /**
+     * One subscriber's run. Requests add to the demand, and a single
+     * task at a time on the executor simulates a snapshot's worth of
+     * iterations for each unit of demand.
+     */
+    private class Subscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super SimulationSnapshot> subscriber;
+        private final SimulationRun run;
+        private final AtomicLong demand = new AtomicLong();
+        // Number of times drain was asked for while a task was running
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean isCancelled = false;
+
+        /**
+         * Constructor for a subscription
+         *
+         * @param  subscriber  receiver of the snapshots
+         * @param  run         simulation to run for the subscriber
+         */
+        Subscription(Flow.Subscriber<? super SimulationSnapshot> subscriber, SimulationRun run)
+        {
+            this.subscriber = subscriber;
+            this.run = run;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Must request a positive number"));
+                return;
+            }
+
+            // Add to the demand, capping it instead of overflowing
+            demand.getAndAccumulate(n, (current, added) ->
+                    current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            isCancelled = true;
+        }
+
+        /**
+         * Starts a task to meet the demand unless one is running.
+         */
+        private void drain()
+        {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this::emit);
+            }
+        }
+
+        /**
+         * Simulates and sends snapshots while there is demand. The run
+         * ends with a final snapshot and onComplete.
+         */
+        private void emit()
+        {
+            int missed = 1;
+
+            try {
+                do {
+                    while (demand.get() > 0 && !isCancelled && !run.isFinished()) {
+                        run.step(iterationsPerSnapshot);
+                        demand.decrementAndGet();
+                        subscriber.onNext(SimulationSnapshot.of(run.getResult(), totalIterations));
+
+                        if (run.isFinished() && !isCancelled) {
+                            isCancelled = true;
+                            subscriber.onComplete();
+                        }
+                    }
+
+                    missed = pending.addAndGet(-missed);
+                } while (missed != 0);
+            } catch (RuntimeException e) {
+                isCancelled = true;
+                subscriber.onError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Counts of the outcomes of hitting over many simulated iterations.
+ * Results of separate runs (such as shards) can be merged, and
+ * written to or read from a compact binary form.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class SimulationResult {
+    private long better;
+    private long worse;
+    private long blackjack;
+    private long won;
+    private long tied;
+    private long lost;
+
+    /**
+     * Empty constructor
+     */
+    public SimulationResult()
+    {}
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the number of iterations counted.
+     *
+     * @return iterations
+     */
+    public long getIterations()
+    {
+        return better + worse + blackjack + won + tied + lost;
+    }
+
+    /**
+     * Gets the number of iterations where the hand was still
+     * in play and scored at least as well as before.
+     *
+     * @return iterations with a better score
+     */
+    public long getBetter()
+    {
+        return better;
+    }
+
+    /**
+     * Gets the number of iterations where the hand was still
+     * in play and scored worse than before.
+     *
+     * @return iterations with a worse score
+     */
+    public long getWorse()
+    {
+        return worse;
+    }
+
+    /**
+     * Gets the number of iterations won with a blackjack.
+     *
+     * @return blackjack iterations
+     */
+    public long getBlackjack()
+    {
+        return blackjack;
+    }
+
+    /**
+     * Gets the number of iterations won.
+     *
+     * @return won iterations
+     */
+    public long getWon()
+    {
+        return won;
+    }
+
+    /**
+     * Gets the number of iterations tied.
+     *
+     * @return tied iterations
+     */
+    public long getTied()
+    {
+        return tied;
+    }
+
+    /**
+     * Gets the number of iterations lost.
+     *
+     * @return lost iterations
+     */
+    public long getLost()
+    {
+        return lost;
+    }
+
+    /**
+     * Gets the width of the 95% confidence interval of the least
+     * certain outcome rate, from 0 to 1. It narrows as iterations
+     * are added, so it tells how converged the rates are.
+     *
+     * @return widest confidence interval of the rates
+     */
+    public double confidenceWidth()
+    {
+        double iterations = getIterations();
+        if (iterations == 0) return 1;
+
+        double widest = 0;
+        for (long count : new long[] {better, worse, blackjack, won, tied, lost}) {
+            double rate = count / iterations;
+            widest = Math.max(widest, 2 * 1.96 * Math.sqrt(rate * (1 - rate) / iterations));
+        }
+        return widest;
+    }
+
+    /**
+     * Returns the percentage of iterations in each outcome.
+     *
+     * @return readable results
+     */
+    @Override
+    public String toString()
+    {
+        return SimulationSnapshot.of(this, getIterations()).toReport();
+    }
+
+    /**
+     * Writes the counts in binary.
+     *
+     * @param  out          where to write
+     * @throws IOException  if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeLong(better);
+        out.writeLong(worse);
+        out.writeLong(blackjack);
+        out.writeLong(won);
+        out.writeLong(tied);
+        out.writeLong(lost);
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Counts an iteration's outcome.
+     *
+     * @param  outcome  0-5 for better, worse, blackjack, won, tied and
+     *                  lost, the order SimulationSnapshot lists them in
+     */
+    public void count(int outcome)
+    {
+        switch (outcome) {
+            case 0 -> better++;
+            case 1 -> worse++;
+            case 2 -> blackjack++;
+            case 3 -> won++;
+            case 4 -> tied++;
+            case 5 -> lost++;
+        }
+    }
+
+    /**
+     * Adds the counts of another result to this one.
+     *
+     * @param  other  result to add
+     */
+    public void merge(SimulationResult other)
+    {
+        better += other.better;
+        worse += other.worse;
+        blackjack += other.blackjack;
+        won += other.won;
+        tied += other.tied;
+        lost += other.lost;
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads counts written by writeTo.
+     *
+     * @param  in           where to read
+     * @return              result with the counts
+     * @throws IOException  if reading fails
+     */
+    public static SimulationResult readFrom(DataInput in) throws IOException
+    {
+        SimulationResult result = new SimulationResult();
+        result.better = in.readLong();
+        result.worse = in.readLong();
+        result.blackjack = in.readLong();
+        result.won = in.readLong();
+        result.tied = in.readLong();
+        result.lost = in.readLong();
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * A simulation that can be run a piece at a time, with everything
+ * needed to continue it kept in fields: the position, the counts so
+ * far, the number of iterations done and the random number state.
+ * It can write that to a small checkpoint file, and a run resumed
+ * from a checkpoint finishes with exactly the counts it would have
+ * had if it had never stopped.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class SimulationRun {
+    /**
+     * Identifies checkpoint files ("BJCP")
+     */
+    public static final int MAGIC = 0x424A4350;
+    public static final int VERSION = 3;
+
+    // How many iterations to run between checks of the clock
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final Blackjack game;
+    private final Rng rng;
+    private final long totalIterations;
+    private final int currentScore;
+    private SimulationResult result;
+    private long completedIterations = 0;
+
+    /**
+     * Constructor for a new run
+     *
+     * @param  game             game to simulate, which is copied
+     * @param  totalIterations  number of times to hit
+     * @param  seed             seed for the random numbers
+     */
+    public SimulationRun(Blackjack game, long totalIterations, long seed)
+    {
+        this(game, totalIterations, new Rng(seed));
+    }
+
+    /**
+     * Constructor for a run drawing from a given generator
+     *
+     * @param  game             game to simulate, which is copied
+     * @param  totalIterations  number of times to hit
+     * @param  rng              random number generator to draw with
+     */
+    public SimulationRun(Blackjack game, long totalIterations, Rng rng)
+    {
+        this.game = new Blackjack(game);
+        this.rng = rng;
+        this.game.setRng(rng);
+        this.totalIterations = totalIterations;
+        this.currentScore = HandState.score(game.getCurrentHand().getState());
+        this.result = new SimulationResult();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: SimulationRun (checkpoint file) [iterations] [seconds between checkpoints]");
+            return;
+        }
+
+        Path checkpoint = Paths.get(args[0]);
+        long iterations = args.length > 1 ? Long.parseLong(args[1]) : 100_000_000;
+        long interval = args.length > 2 ? Long.parseLong(args[2]) : 60;
+
+        SimulationRun run;
+        if (Files.exists(checkpoint)) {
+            run = resume(checkpoint);
+            System.out.println("Resuming at " + run.getCompletedIterations()
+                    + " of " + run.getTotalIterations() + " iterations");
+        } else {
+            Blackjack game = new Blackjack();
+            game.deal();
+            run = new SimulationRun(game, iterations, System.nanoTime());
+        }
+
+        System.out.println(run.getGame());
+        run.runWithCheckpoints(checkpoint, interval * 1000);
+        System.out.println("\n===== " + run.getCompletedIterations() + " =====\n");
+        System.out.println(run.getResult());
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Gets the position being simulated.
+     *
+     * @return copy of the game the run was made with
+     */
+    public Blackjack getGame()
+    {
+        return game;
+    }
+
+    /**
+     * Gets the counts so far.
+     *
+     * @return counts of each outcome
+     */
+    public SimulationResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * Gets the number of iterations done so far.
+     *
+     * @return completed iterations
+     */
+    public long getCompletedIterations()
+    {
+        return completedIterations;
+    }
+
+    /**
+     * Gets the number of iterations the run will do.
+     *
+     * @return total iterations
+     */
+    public long getTotalIterations()
+    {
+        return totalIterations;
+    }
+
+    /**
+     * Determines whether every iteration has been done.
+     *
+     * @return whether the run is finished
+     */
+    public boolean isFinished()
+    {
+        return completedIterations >= totalIterations;
+    }
+
+    /**
+     * Writes everything needed to continue the run to a file. The
+     * file is replaced in one step, so a crash while writing leaves
+     * the previous checkpoint in place.
+     *
+     * @param  file         where to write the checkpoint
+     * @throws IOException  if writing fails
+     */
+    public void saveCheckpoint(Path file) throws IOException
+    {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(totalIterations);
+            out.writeLong(completedIterations);
+            out.writeLong(rng.getState());
+            result.writeTo(out);
+            game.writeTo(out);
+        }
+
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Runs up to a number of iterations, stopping early if the
+     * run finishes.
+     *
+     * @param  iterations  most iterations to run
+     */
+    public void step(long iterations)
+    {
+        long end = completedIterations + Math.min(iterations,
+                totalIterations - completedIterations);
+
+        while (completedIterations < end) {
+            Simulator.iterate(game, currentScore, result);
+            completedIterations++;
+        }
+    }
+
+    /**
+     * Runs to the end, writing a checkpoint every so often and
+     * once more when it finishes.
+     *
+     * @param  file            where to write checkpoints
+     * @param  intervalMillis  time between checkpoints
+     * @throws IOException     if a checkpoint can't be written
+     */
+    public void runWithCheckpoints(Path file, long intervalMillis) throws IOException
+    {
+        long nextCheckpoint = System.currentTimeMillis() + intervalMillis;
+
+        while (!isFinished()) {
+            step(CHECK_INTERVAL);
+
+            if (System.currentTimeMillis() >= nextCheckpoint) {
+                saveCheckpoint(file);
+                nextCheckpoint = System.currentTimeMillis() + intervalMillis;
+            }
+        }
+
+        saveCheckpoint(file);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Continues a run from a checkpoint written by saveCheckpoint.
+     *
+     * @param  file         checkpoint to read
+     * @return              run in the state it was saved in
+     * @throws IOException  if the file can't be read or isn't a checkpoint
+     */
+    public static SimulationRun resume(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a simulation checkpoint");
+            }
+
+            long totalIterations = in.readLong();
+            long completedIterations = in.readLong();
+            long rngState = in.readLong();
+            SimulationResult result = SimulationResult.readFrom(in);
+            Blackjack game = Blackjack.readFrom(in);
+
+            SimulationRun run = new SimulationRun(game, totalIterations, new Rng());
+            run.rng.setState(rngState);
+            run.result = result;
+            run.completedIterations = completedIterations;
+            return run;
+        }
+    }
+}
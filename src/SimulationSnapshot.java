@@ -0,0 +1,94 @@
+/**
+ * Record of a simulation's partial results, published while the
+ * simulation is still running. Rates are fractions from 0 to 1.
+ *
+ * @param  iterations       iterations done so far
+ * @param  totalIterations  iterations the simulation will do
+ * @param  betterRate       rate of hands still in play with a better score
+ * @param  worseRate        rate of hands still in play with a worse score
+ * @param  blackjackRate    rate of blackjack wins
+ * @param  winRate          rate of wins
+ * @param  tieRate          rate of ties
+ * @param  lossRate         rate of losses
+ * @param  confidenceWidth  width of the widest 95% confidence
+ *                          interval of the rates
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public record SimulationSnapshot(long iterations, long totalIterations,
+                                 double betterRate, double worseRate,
+                                 double blackjackRate, double winRate,
+                                 double tieRate, double lossRate,
+                                 double confidenceWidth)
+{
+    /*
+     * Accessors
+     */
+
+    /**
+     * Determines whether this is the last snapshot of the simulation.
+     *
+     * @return whether every iteration is done
+     */
+    public boolean isFinal()
+    {
+        return iterations >= totalIterations;
+    }
+
+    /**
+     * Returns the progress and the percentage of each outcome.
+     *
+     * @return readable snapshot
+     */
+    @Override
+    public String toString()
+    {
+        return iterations + "/" + totalIterations
+                + " | Better " + Simulator.round(betterRate * 100)
+                + "% Worse " + Simulator.round(worseRate * 100)
+                + "% BJ " + Simulator.round(blackjackRate * 100)
+                + "% Win " + Simulator.round(winRate * 100)
+                + "% Tie " + Simulator.round(tieRate * 100)
+                + "% Loss " + Simulator.round(lossRate * 100)
+                + "% (+/-" + Simulator.round(confidenceWidth * 50) + "%)";
+    }
+
+    /**
+     * Returns the percentage of each outcome, one per line.
+     *
+     * @return readable results
+     */
+    public String toReport()
+    {
+        return "Hitting results in a...\nBetter score: " + Simulator.round(betterRate * 100)
+                + "%\nWorse score: " + Simulator.round(worseRate * 100)
+                + "%\nBlackjack: " + Simulator.round(blackjackRate * 100)
+                + "%\nWin: " + Simulator.round(winRate * 100)
+                + "%\nTie: " + Simulator.round(tieRate * 100)
+                + "%\nLoss: " + Simulator.round(lossRate * 100) + "%";
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Creates a snapshot of a result.
+     *
+     * @param  result           counts so far
+     * @param  totalIterations  iterations the simulation will do
+     * @return                  snapshot of the rates
+     */
+    public static SimulationSnapshot of(SimulationResult result, long totalIterations)
+    {
+        long iterations = result.getIterations();
+        double n = Math.max(1, iterations);
+
+        return new SimulationSnapshot(iterations, totalIterations,
+                result.getBetter() / n, result.getWorse() / n,
+                result.getBlackjack() / n, result.getWon() / n,
+                result.getTied() / n, result.getLost() / n,
+                result.confidenceWidth());
+    }
+}
@@ -0,0 +1,41 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Runs one shard of a ShardedSimulator job. The job is read from
+ * standard input and the counts are written to standard output,
+ * both in binary.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class SimulationWorker {
+    public static void main(String[] args) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+        if (in.readInt() != ShardedSimulator.MAGIC
+                || in.readInt() != ShardedSimulator.VERSION) {
+            System.err.println("Not a simulation job");
+            System.exit(1);
+        }
+
+        int shardIndex = in.readInt();
+        long seed = in.readLong();
+        long iterations = in.readLong();
+        Blackjack game = Blackjack.readFrom(in);
+
+        // Each shard draws from its own stream of the job's seed
+        game.setRng(Rng.stream(seed, shardIndex));
+        SimulationResult result = Simulator.run(game, iterations);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        out.writeInt(ShardedSimulator.MAGIC);
+        out.writeInt(shardIndex);
+        result.writeTo(out);
+        out.flush();
+    }
+}
@@ -1,3 +1,6 @@
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Simulates taking different actions over many iterations
  *
@@ -5,6 +8,20 @@
  * @version 4-4-22
  */
 public class Simulator {
+    // Outcomes of an iteration, in the order SimulationSnapshot lists them
+    private static final int BETTER = 0;
+    private static final int WORSE = 1;
+    private static final int BLACKJACK = 2;
+    private static final int WON = 3;
+    private static final int TIED = 4;
+    private static final int LOST = 5;
+
+    // Results of recent simulations, by position and iteration count
+    private static final BoundedCache<CacheKey, SimulationSnapshot> CACHE =
+            new BoundedCache<>(4096);
+
+    private record CacheKey(long stateHash, long iterations) {}
+
     public static void main(String[] args)
     {
         // Test
@@ -15,56 +32,410 @@ public class Simulator {
         System.out.println(simulate(game, 10000));
         System.out.println("\n===== 10,000 #2 =====\n");
         System.out.println(simulate(game, 10000));
+
+        for (SamplingMode mode : SamplingMode.values()) {
+            System.out.println("\n===== 10,000 " + mode + " =====\n");
+            System.out.println(estimate(game, 10000, mode));
+        }
     }
 
+    /**
+     * Simulates hitting the current hand of the game. A position that
+     * was simulated recently with as many iterations gets the same
+     * results again without simulating.
+     *
+     * @param  game        game to simulate
+     * @param  iterations  number of times to hit
+     * @return             readable results
+     */
     public static String simulate(Blackjack game, int iterations)
     {
-        double better = 0;
-        double worse = 0;
-        double bj = 0;
-        double won = 0;
-        double tied = 0;
-        double lost = 0;
-
-        Hand currentHand = game.getCurrentHand();
-        int currentScore = currentHand.handScore(true);
-
-        for (int i = 0; i < iterations; i++) {
-            Blackjack gameIteration = new Blackjack(game);  // Copy current game
-            Hand iterHand = gameIteration.getCurrentHand();
-
-            // Use only the current hand
-            gameIteration.resetPlayerHands();
-            gameIteration.getPlayerHands().add(new Hand(iterHand));
-            iterHand = gameIteration.getCurrentHand();
-            gameIteration.hit();
-
-            if (gameIteration.isRoundOngoing()) {
-                if (iterHand.handScore(true) >= currentScore) {
-                    better++;
-                } else {
-                    worse++;
-                }
-            } else {
-                switch (iterHand.determineHandResult(gameIteration.getDealerHand())) {
-                    case 0 -> lost++;
-                    case 1 -> won++;
-                    case 2 -> bj++;
-                    case 3 -> tied++;
-                }
+        return CACHE.computeIfAbsent(new CacheKey(game.getStateHash(), iterations),
+                key -> SimulationSnapshot.of(run(game, iterations), iterations)).toReport();
+    }
+
+    /**
+     * Gets the cached results of a simulation.
+     *
+     * @param  stateHash   Blackjack.getStateHash of the position
+     * @param  iterations  number of times the hand was hit
+     * @return             the results, or null if they aren't cached
+     */
+    public static SimulationSnapshot getCached(long stateHash, long iterations)
+    {
+        return CACHE.get(new CacheKey(stateHash, iterations));
+    }
+
+    /**
+     * Caches the final results of a simulation run elsewhere.
+     *
+     * @param  stateHash  Blackjack.getStateHash of the position
+     * @param  results    final snapshot of the simulation
+     */
+    public static void putCached(long stateHash, SimulationSnapshot results)
+    {
+        CACHE.put(new CacheKey(stateHash, results.totalIterations()), results);
+    }
+
+    /**
+     * Simulates hitting the current hand of the game many times.
+     * The cards are drawn with the game's random number generator.
+     *
+     * @param  game        game to copy for each iteration
+     * @param  iterations  number of times to hit
+     * @return             counts of each outcome
+     */
+    public static SimulationResult run(Blackjack game, long iterations)
+    {
+        SimulationResult result = new SimulationResult();
+        int currentScore = HandState.score(game.getCurrentHand().getState());
+
+        for (long i = 0; i < iterations; i++) {
+            iterate(game, currentScore, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Estimates the outcome rates of hitting the current hand of the
+     * game, sampling the iterations in the given way. The cards come
+     * from a stream forked off the game's random number generator,
+     * which is left where it was, so the game deals the same cards after.
+     *
+     * @param  game        game to simulate, which is copied
+     * @param  iterations  number of times to hit
+     * @param  mode        how to sample the iterations
+     * @return             estimated rates and their precision
+     */
+    public static SimulationEstimate estimate(Blackjack game, long iterations, SamplingMode mode)
+    {
+        if (iterations < 2) {
+            throw new IllegalArgumentException("Need at least 2 iterations");
+        }
+
+        // Fork a stream from the caller's state without advancing it
+        Blackjack base = new Blackjack(game);
+        base.setRng(Rng.stream(game.getRng().getState(), 0));
+        int currentScore = HandState.score(game.getCurrentHand().getState());
+
+        return switch (mode) {
+            case PLAIN -> estimateIndependent(base, iterations, currentScore, false);
+            case ANTITHETIC -> estimateAntithetic(base, iterations, currentScore);
+            case STRATIFIED -> estimateStratified(base, iterations, currentScore);
+            case CONTROL_VARIATE -> estimateIndependent(base, iterations, currentScore, true);
+        };
+    }
+
+    /**
+     * Estimates with independent iterations, optionally using the
+     * value of the hit card as a control variate. Its exact mean is
+     * known from the shoe, so the part of each rate's error that is
+     * explained by drawing high or low cards can be subtracted.
+     *
+     * @param  base            game to copy for each iteration
+     * @param  iterations      number of times to hit
+     * @param  currentScore    score of the current hand before hitting
+     * @param  controlVariate  whether to correct with the hit card's value
+     * @return                 estimated rates and their precision
+     */
+    private static SimulationEstimate estimateIndependent(Blackjack base, long iterations,
+                                                          int currentScore, boolean controlVariate)
+    {
+        double[] counts = new double[6];
+        double[] controlSums = new double[6];
+        double controlSum = 0;
+        double controlSquares = 0;
+
+        for (long i = 0; i < iterations; i++) {
+            Blackjack played = hitCopy(base, -1);
+            int outcome = outcomeOf(played, currentScore);
+            int hitValue = hitValueOf(played);
+
+            counts[outcome]++;
+            controlSums[outcome] += hitValue;
+            controlSum += hitValue;
+            controlSquares += hitValue * hitValue;
+        }
+
+        double n = iterations;
+        double[] rates = new double[6];
+        double lossVariance;
+
+        if (controlVariate) {
+            double controlMean = controlSum / n;
+            double controlVariance = controlSquares / n - controlMean * controlMean;
+            double expectedControl = expectedHitValue(base);
+            double lossCovariance = 0;
+
+            for (int k = 0; k < 6; k++) {
+                double mean = counts[k] / n;
+                double covariance = controlSums[k] / n - mean * controlMean;
+                double coefficient = controlVariance > 0 ? covariance / controlVariance : 0;
+                rates[k] = mean - coefficient * (controlMean - expectedControl);
+                if (k == LOST) lossCovariance = covariance;
             }
+
+            double lossRate = counts[LOST] / n;
+            lossVariance = lossRate * (1 - lossRate) - (controlVariance > 0
+                    ? lossCovariance * lossCovariance / controlVariance : 0);
+        } else {
+            for (int k = 0; k < 6; k++) {
+                rates[k] = counts[k] / n;
+            }
+            lossVariance = rates[LOST] * (1 - rates[LOST]);
+        }
+
+        return toEstimate(controlVariate ? SamplingMode.CONTROL_VARIATE : SamplingMode.PLAIN,
+                iterations, rates, Math.max(0, lossVariance) / n);
+    }
+
+    /**
+     * Estimates with pairs of iterations, the second of each pair
+     * drawing with the mirror image of the first's random numbers.
+     *
+     * @param  base          game to copy for each iteration
+     * @param  iterations    number of times to hit, rounded down to even
+     * @param  currentScore  score of the current hand before hitting
+     * @return               estimated rates and their precision
+     */
+    private static SimulationEstimate estimateAntithetic(Blackjack base, long iterations,
+                                                         int currentScore)
+    {
+        AntitheticRng rng = new AntitheticRng(base.getRng().nextLong());
+        base.setRng(rng);
+
+        long pairs = iterations / 2;
+        double[] sums = new double[6];
+        double lossSquares = 0;
+
+        for (long i = 0; i < pairs; i++) {
+            rng.record();
+            int first = outcomeOf(hitCopy(base, -1), currentScore);
+            rng.mirror();
+            int second = outcomeOf(hitCopy(base, -1), currentScore);
+
+            sums[first] += 0.5;
+            sums[second] += 0.5;
+            double pairLoss = ((first == LOST ? 1 : 0) + (second == LOST ? 1 : 0)) / 2.0;
+            lossSquares += pairLoss * pairLoss;
+        }
+
+        double[] rates = new double[6];
+        for (int k = 0; k < 6; k++) {
+            rates[k] = sums[k] / pairs;
         }
 
-        return "Hitting results in a...\nBetter score: " + round(better / iterations * 100)
-                + "%\nWorse score: " + round(worse / iterations * 100)
-                + "%\nBlackjack: " + round(bj / iterations * 100)
-                + "%\nWin: " + round(won / iterations * 100)
-                + "%\nTie: " + round(tied / iterations * 100)
-                + "%\nLoss: " + round(lost / iterations * 100) + "%";
+        double pairVariance = lossSquares / pairs - rates[LOST] * rates[LOST];
+        return toEstimate(SamplingMode.ANTITHETIC, 2 * pairs, rates,
+                Math.max(0, pairVariance) / pairs);
+    }
+
+    /**
+     * Estimates by sampling each rank of the hit card separately, as
+     * many iterations per rank as its share of the shoe, and weighing
+     * each rank's rates by its exact probability.
+     *
+     * @param  base          game to copy for each iteration
+     * @param  iterations    number of times to hit
+     * @param  currentScore  score of the current hand before hitting
+     * @return               estimated rates and their precision
+     */
+    private static SimulationEstimate estimateStratified(Blackjack base, long iterations,
+                                                         int currentScore)
+    {
+        int shoeSize = base.getShoe().size();
+        double[] rates = new double[6];
+        double lossVariance = 0;
+        long done = 0;
+
+        for (int rank = 0; rank < 13; rank++) {
+            if (base.getRankCount(rank) == 0) continue;
+
+            double probability = (double) base.getRankCount(rank) / shoeSize;
+            long stratumIterations = Math.max(2, Math.round(iterations * probability));
+            double[] counts = new double[6];
+
+            for (long i = 0; i < stratumIterations; i++) {
+                counts[outcomeOf(hitCopy(base, rank), currentScore)]++;
+            }
+
+            for (int k = 0; k < 6; k++) {
+                rates[k] += probability * counts[k] / stratumIterations;
+            }
+
+            double stratumLoss = counts[LOST] / stratumIterations;
+            lossVariance += probability * probability
+                    * stratumLoss * (1 - stratumLoss) / stratumIterations;
+            done += stratumIterations;
+        }
+
+        return toEstimate(SamplingMode.STRATIFIED, done, rates, lossVariance);
+    }
+
+    /**
+     * Packs estimated rates into an estimate with its effective
+     * sample size.
+     *
+     * @param  mode          how the iterations were sampled
+     * @param  iterations    number of iterations done
+     * @param  rates         rate of each outcome
+     * @param  lossVariance  variance of the estimated loss rate
+     * @return               estimate
+     */
+    private static SimulationEstimate toEstimate(SamplingMode mode, long iterations,
+                                                 double[] rates, double lossVariance)
+    {
+        double plainVariance = rates[LOST] * (1 - rates[LOST]);
+        // An estimate with no variance is exact, unless there was nothing to estimate
+        double effectiveSampleSize = lossVariance > 0 ? plainVariance / lossVariance
+                : plainVariance > 0 ? Double.POSITIVE_INFINITY : iterations;
+        double standardError = Math.sqrt(lossVariance);
+
+        SimulationSnapshot snapshot = new SimulationSnapshot(iterations, iterations,
+                rates[BETTER], rates[WORSE], rates[BLACKJACK], rates[WON],
+                rates[TIED], rates[LOST], 2 * 1.96 * standardError);
+        return new SimulationEstimate(mode, snapshot, standardError, effectiveSampleSize);
+    }
+
+    /**
+     * Hits the current hand of a copy of the game once. Every way of
+     * sampling, run's included, plays its iterations through this.
+     *
+     * @param  game  game to copy
+     * @param  rank  rank index the hit card must have, -1 for any
+     * @return       the copy after hitting
+     */
+    private static Blackjack hitCopy(Blackjack game, int rank)
+    {
+        Blackjack gameIteration = new Blackjack(game);
+
+        gameIteration.isolateCurrentHand();
+        if (rank >= 0) gameIteration.setNextRank(rank);
+        gameIteration.hit();
+        return gameIteration;
+    }
+
+    /**
+     * Determines the outcome of an iteration.
+     *
+     * @param  played        game after hitting
+     * @param  currentScore  score of the hand before hitting
+     * @return               BETTER, WORSE, BLACKJACK, WON, TIED or LOST
+     */
+    private static int outcomeOf(Blackjack played, int currentScore)
+    {
+        Hand hand = played.getPlayerHands().get(0);
+
+        if (played.isRoundOngoing()) {
+            return HandState.score(hand.getState()) >= currentScore ? BETTER : WORSE;
+        }
+
+        return switch (hand.determineHandResult(played.getDealerHand())) {
+            case 1 -> WON;
+            case 2 -> BLACKJACK;
+            case 3 -> TIED;
+            default -> LOST;
+        };
+    }
+
+    /**
+     * Gets the value of the card the hand was hit with.
+     *
+     * @param  played  game after hitting
+     * @return         value of the hit card, 2-11
+     */
+    private static int hitValueOf(Blackjack played)
+    {
+        List<Card> cards = played.getPlayerHands().get(0).getCards();
+        return HandState.rankValue(cards.get(cards.size() - 1).getRankIndex());
+    }
+
+    /**
+     * Determines the exact expected value of the next card drawn
+     * from the shoe.
+     *
+     * @param  game  game whose shoe to use
+     * @return       expected value of the next card
+     */
+    private static double expectedHitValue(Blackjack game)
+    {
+        double total = 0;
+        for (int rank = 0; rank < 13; rank++) {
+            total += game.getRankCount(rank) * HandState.rankValue(rank);
+        }
+        return total / game.getShoe().size();
+    }
+
+    /**
+     * Hits a copy of the current hand of the game once and counts
+     * the outcome.
+     *
+     * @param  game          game to copy
+     * @param  currentScore  score of the current hand before hitting
+     * @param  result        where to count the outcome
+     */
+    public static void iterate(Blackjack game, int currentScore, SimulationResult result)
+    {
+        result.count(outcomeOf(hitCopy(game, -1), currentScore));
     }
 
     public static double round(double value)
     {
         return ((double) Math.round(value * 100d) / 100d);
     }
+
+    /**
+     * Random number generator for antithetic pairs. While recording it
+     * draws random numbers and remembers them; while mirroring it gives
+     * back 1 - u for each remembered u, in the same order, then random
+     * numbers again if the mirrored iteration draws more cards.
+     */
+    private static class AntitheticRng extends Rng {
+        // Largest double below 1, so mirrored numbers stay below 1
+        private static final double BELOW_ONE = Math.nextDown(1.0);
+
+        private double[] recorded = new double[32];
+        private int size = 0;
+        private int position = 0;
+        private boolean isMirroring = false;
+
+        AntitheticRng(long seed)
+        {
+            super(seed);
+        }
+
+        /**
+         * Starts the first iteration of a pair.
+         */
+        void record()
+        {
+            size = 0;
+            isMirroring = false;
+        }
+
+        /**
+         * Starts the second iteration of a pair.
+         */
+        void mirror()
+        {
+            position = 0;
+            isMirroring = true;
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            if (isMirroring) {
+                return position < size ? BELOW_ONE - recorded[position++] : super.nextDouble();
+            }
+
+            double u = super.nextDouble();
+            if (size == recorded.length) {
+                recorded = Arrays.copyOf(recorded, 2 * size);
+            }
+            recorded[size++] = u;
+            return u;
+        }
+    }
 }
@@ -0,0 +1,599 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A playing strategy read from a chart file and compiled into a flat
+ * table of actions indexed by true count bucket, hand state and
+ * dealer upcard, so deciding what to do is one array access.
+ *
+ * Chart files are CSV or whitespace separated text. Blank lines and
+ * lines starting with # are ignored. An optional header starts with
+ * "hand" and lists the upcards 2 3 4 5 6 7 8 9 10 A. Every other line
+ * is a row or a deviation:
+ *
+ *   H16,S,S,S,S,S,H,H,Rh,Rh,Rh   hard 16 against each upcard
+ *   S13-14,H,H,H,D,D,H,H,H,H,H   a range of soft totals
+ *   P8,P,P,P,P,P,P,P,P,P,P       a pair; P10 is any pair of tens
+ *   dev,H16,10,>=0,S             at true count 0 or more, stand
+ *   dev,H13,2,<=-1,H             at true count -1 or less, hit
+ *
+ * Actions are H (hit), S (stand), D (double, else hit), Ds (double,
+ * else stand), P (split), Rh, Rs and Rp (surrender, else hit, stand
+ * or split). An action the engine doesn't allow at the moment falls
+ * back as written; a pair that can't be split is played by its
+ * hard or soft total row.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class Strategy {
+    /**
+     * Actions returned by decide
+     */
+    public static final int HIT = 0;
+    public static final int STAND = 1;
+    public static final int DOUBLE = 2;
+    public static final int SPLIT = 3;
+    public static final int SURRENDER = 4;
+
+    /**
+     * True counts are floored and clamped to -MAX_COUNT to MAX_COUNT
+     */
+    public static final int MAX_COUNT = 10;
+
+    // Chart entries, each resolved to an action by decide
+    private static final byte CHART_HIT = 0;
+    private static final byte CHART_STAND = 1;
+    private static final byte CHART_DOUBLE_OR_HIT = 2;
+    private static final byte CHART_DOUBLE_OR_STAND = 3;
+    private static final byte CHART_SPLIT = 4;
+    private static final byte CHART_SURRENDER_OR_HIT = 5;
+    private static final byte CHART_SURRENDER_OR_STAND = 6;
+    private static final byte CHART_SURRENDER_OR_SPLIT = 7;
+    private static final String[] CHART_CODES = {"H", "S", "D", "Ds", "P", "Rh", "Rs", "Rp"};
+    private static final byte UNSET = -1;
+
+    // Upcards 2-9, tens and aces
+    private static final int NUM_OF_UPCARDS = 10;
+    private static final int NUM_OF_BUCKETS = 2 * MAX_COUNT + 1;
+
+    // Column of each rank index's upcard
+    private static final int[] UPCARD_COLUMNS = {0, 1, 2, 3, 4, 5, 6, 7, 8, 8, 8, 8, 9};
+    // Hard or soft total state each pair is played as when it can't split
+    private static final int[] PAIR_TOTALS = new int[13];
+
+    static {
+        for (int rank = 0; rank < 13; rank++) {
+            int value = HandState.rankValue(rank);
+            PAIR_TOTALS[rank] = value == 11 ? HandState.SOFT : HandState.HARD + 2 * value;
+        }
+    }
+
+    private final String name;
+    private final byte[] TABLE;
+    // 1 without deviations, so the count is never looked at
+    private final int numOfBuckets;
+
+    /**
+     * Constructor for a compiled strategy
+     *
+     * @param  name          name of the strategy
+     * @param  table         chart entries by bucket, state and upcard
+     * @param  numOfBuckets  number of true count buckets in the table
+     */
+    private Strategy(String name, byte[] table, int numOfBuckets)
+    {
+        this.name = name;
+        this.TABLE = table;
+        this.numOfBuckets = numOfBuckets;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 0) {
+            System.out.println("Usage: Strategy (chart file) [rounds] [rules]");
+            return;
+        }
+
+        Strategy strategy = load(Paths.get(args[0]));
+        long rounds = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        Rules rules = args.length > 2 ? Rules.parse(args[2]) : Rules.STANDARD;
+
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(6);
+        long start = System.nanoTime();
+        double net = 0;
+        double sumOfSquares = 0;
+        for (long i = 0; i < rounds; i++) {
+            double roundNet = strategy.playRound(game, 0.25);
+            net += roundNet;
+            sumOfSquares += roundNet * roundNet;
+        }
+
+        double mean = net / rounds;
+        double standardError = Math.sqrt((sumOfSquares / rounds - mean * mean) / rounds);
+        System.out.println(strategy + ", " + rules + ", 6 decks");
+        System.out.printf("%d rounds in %d ms%n", rounds, (System.nanoTime() - start) / 1_000_000);
+        System.out.printf("EV: %.3f%% +/- %.3f%% per round%n", 100 * mean, 196 * standardError);
+    }
+
+    /*
+     * Accessors
+     */
+
+    /**
+     * Decides what to do with the current hand of a round in play.
+     *
+     * @param  game  game whose current hand to play
+     * @return       HIT, STAND, DOUBLE, SPLIT or SURRENDER
+     */
+    public int decide(Blackjack game)
+    {
+        int state = game.getCurrentHand().getState();
+        int offset = numOfBuckets == 1 ? 0
+                : countBucket(game.getShoe().getTrueCount()) * HandState.NUM_OF_STATES;
+        int column = upcardColumn(game.getUpcard());
+
+        byte entry = TABLE[(offset + state) * NUM_OF_UPCARDS + column];
+
+        if (entry >= CHART_SURRENDER_OR_HIT) {
+            if (game.canSurrender()) return SURRENDER;
+            entry = switch (entry) {
+                case CHART_SURRENDER_OR_HIT -> CHART_HIT;
+                case CHART_SURRENDER_OR_STAND -> CHART_STAND;
+                default -> CHART_SPLIT;
+            };
+        }
+
+        if (entry == CHART_SPLIT) {
+            if (game.canSplit()) return SPLIT;
+            // Play the pair by its total instead
+            state = PAIR_TOTALS[HandState.rankOf(state)];
+            entry = TABLE[(offset + state) * NUM_OF_UPCARDS + column];
+            if (entry >= CHART_SURRENDER_OR_HIT) {
+                entry = entry == CHART_SURRENDER_OR_STAND ? CHART_STAND : CHART_HIT;
+            }
+        }
+
+        return switch (entry) {
+            case CHART_STAND -> STAND;
+            case CHART_DOUBLE_OR_HIT -> game.canDoubleDown() ? DOUBLE : HIT;
+            case CHART_DOUBLE_OR_STAND -> game.canDoubleDown() ? DOUBLE : STAND;
+            default -> HIT;
+        };
+    }
+
+    /**
+     * Determines whether the strategy depends on the true count.
+     *
+     * @return whether the chart has deviations
+     */
+    public boolean hasDeviations()
+    {
+        return numOfBuckets > 1;
+    }
+
+    /**
+     * Returns the name of the strategy.
+     *
+     * @return name
+     */
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Plays the rest of a round with the strategy.
+     *
+     * @param  game  game with a round in play
+     */
+    public void play(Blackjack game)
+    {
+        while (game.isRoundOngoing()) {
+            act(game, decide(game));
+        }
+    }
+
+    /**
+     * Deals and plays a round, refilling the shoe first once it is
+     * down to the cut card.
+     *
+     * @param  game         game to play
+     * @param  penetration  fraction of the shoe left at the cut card
+     * @return              net units won over every hand
+     */
+    public double playRound(Blackjack game, double penetration)
+    {
+        if (game.getShoe().size() < penetration * 52 * game.getNumOfDecks()) {
+            game.fillShoe();
+        }
+
+        game.deal();
+        play(game);
+        return netUnits(game);
+    }
+
+    /*
+     * Static methods
+     */
+
+    /**
+     * Reads and compiles a chart file.
+     *
+     * @param  file                      chart to read
+     * @return                           compiled strategy
+     * @throws IOException               if the file can't be read
+     * @throws IllegalArgumentException  if the chart is not valid
+     */
+    public static Strategy load(Path file) throws IOException
+    {
+        String name = file.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+        return compile(name, Files.readAllLines(file));
+    }
+
+    /**
+     * Compiles the lines of a chart.
+     *
+     * @param  name                      name of the strategy
+     * @param  lines                     lines of the chart
+     * @return                           compiled strategy
+     * @throws IllegalArgumentException  if the chart is not valid
+     */
+    public static Strategy compile(String name, List<String> lines)
+    {
+        byte[] chart = new byte[HandState.NUM_OF_STATES * NUM_OF_UPCARDS];
+        Arrays.fill(chart, UNSET);
+        List<String[]> deviations = new ArrayList<>();
+        List<Integer> deviationLines = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] tokens = line.split("\\s*,\\s*|\\s+");
+            int lineNumber = i + 1;
+
+            try {
+                if (tokens[0].equalsIgnoreCase("hand")) {
+                    checkHeader(tokens);
+                } else if (tokens[0].equalsIgnoreCase("dev")) {
+                    deviations.add(tokens);
+                    deviationLines.add(lineNumber);
+                } else {
+                    addRow(chart, tokens);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+
+        fillDefaults(chart);
+
+        if (deviations.isEmpty()) {
+            return new Strategy(name, chart, 1);
+        }
+
+        // One copy of the chart per bucket, then the deviations on top
+        byte[] table = new byte[NUM_OF_BUCKETS * chart.length];
+        for (int bucket = 0; bucket < NUM_OF_BUCKETS; bucket++) {
+            System.arraycopy(chart, 0, table, bucket * chart.length, chart.length);
+        }
+        for (int i = 0; i < deviations.size(); i++) {
+            try {
+                addDeviation(table, chart.length, deviations.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + deviationLines.get(i) + ": " + e.getMessage());
+            }
+        }
+
+        return new Strategy(name, table, NUM_OF_BUCKETS);
+    }
+
+    /**
+     * Gets the bucket of a true count: its floor, clamped to
+     * -MAX_COUNT to MAX_COUNT and shifted to start at 0.
+     *
+     * @param  trueCount  true count
+     * @return            bucket index
+     */
+    public static int countBucket(double trueCount)
+    {
+        int count = (int) Math.floor(trueCount);
+        return Math.max(-MAX_COUNT, Math.min(MAX_COUNT, count)) + MAX_COUNT;
+    }
+
+    /**
+     * Gets the chart column of a dealer upcard, 0-7 for 2-9, 8 for
+     * tens and 9 for aces.
+     *
+     * @param  upcard  dealer's upcard
+     * @return         column
+     */
+    public static int upcardColumn(Card upcard)
+    {
+        return UPCARD_COLUMNS[upcard.getRankIndex()];
+    }
+
+    /**
+     * Takes an action on the current hand.
+     *
+     * @param  game    game with a round in play
+     * @param  action  HIT, STAND, DOUBLE, SPLIT or SURRENDER
+     */
+    public static void act(Blackjack game, int action)
+    {
+        switch (action) {
+            case STAND -> game.stand();
+            case DOUBLE -> game.doubleDown();
+            case SPLIT -> game.split();
+            case SURRENDER -> game.surrender();
+            default -> game.hit();
+        }
+    }
+
+    /**
+     * Gets how many bets a finished round won or lost over every hand.
+     *
+     * @param  game  game whose round has ended
+     * @return       net units won
+     */
+    public static double netUnits(Blackjack game)
+    {
+        double payout = game.getRules().blackjackPayout();
+        double net = 0;
+        for (Hand hand : game.getPlayerHands()) {
+            net += Bankroll.netUnits(hand.determineHandResult(game.getDealerHand()),
+                    hand.getBetMultiplier(), payout) + hand.insuranceNetUnits(game.getDealerHand());
+        }
+        return net;
+    }
+
+    /**
+     * Checks that a header lists the upcards in order.
+     *
+     * @param  tokens  header line split into tokens
+     */
+    private static void checkHeader(String[] tokens)
+    {
+        if (tokens.length != NUM_OF_UPCARDS + 1) {
+            throw new IllegalArgumentException("Header must list the upcards 2-10 and A");
+        }
+        for (int column = 0; column < NUM_OF_UPCARDS; column++) {
+            if (parseUpcard(tokens[column + 1]) != column) {
+                throw new IllegalArgumentException("Header must list the upcards 2-10 and A in order");
+            }
+        }
+    }
+
+    /**
+     * Adds a row of entries for one or more hands to the chart.
+     *
+     * @param  chart   entries by state and upcard
+     * @param  tokens  row split into tokens
+     */
+    private static void addRow(byte[] chart, String[] tokens)
+    {
+        if (tokens.length != NUM_OF_UPCARDS + 1) {
+            throw new IllegalArgumentException("Expected a hand and " + NUM_OF_UPCARDS
+                    + " actions, found " + tokens.length + " fields");
+        }
+
+        for (int state : parseHands(tokens[0])) {
+            if (chart[state * NUM_OF_UPCARDS] != UNSET) {
+                throw new IllegalArgumentException(label(state) + " is listed twice");
+            }
+            for (int column = 0; column < NUM_OF_UPCARDS; column++) {
+                chart[state * NUM_OF_UPCARDS + column] = parseEntry(tokens[column + 1], state);
+            }
+        }
+    }
+
+    /**
+     * Sets one entry in every count bucket a deviation covers.
+     *
+     * @param  table      chart entries by bucket, state and upcard
+     * @param  chartSize  number of entries in each bucket
+     * @param  tokens     deviation split into tokens
+     */
+    private static void addDeviation(byte[] table, int chartSize, String[] tokens)
+    {
+        if (tokens.length != 5) {
+            throw new IllegalArgumentException("Deviations are: dev, hand, upcard, >=count or <=count, action");
+        }
+
+        int column = parseUpcard(tokens[2]);
+        String condition = tokens[3];
+        boolean isAtLeast = condition.startsWith(">=");
+        if (!isAtLeast && !condition.startsWith("<=")) {
+            throw new IllegalArgumentException("Count must start with >= or <=: " + condition);
+        }
+
+        int count;
+        try {
+            count = Integer.parseInt(condition.substring(2).replace("+", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a count: " + condition);
+        }
+        if (Math.abs(count) > MAX_COUNT) {
+            throw new IllegalArgumentException("Count must be from -" + MAX_COUNT + " to " + MAX_COUNT);
+        }
+
+        int bucket = count + MAX_COUNT;
+        int from = isAtLeast ? bucket : 0;
+        int to = isAtLeast ? NUM_OF_BUCKETS - 1 : bucket;
+        for (int state : parseHands(tokens[1])) {
+            byte entry = parseEntry(tokens[4], state);
+            for (int b = from; b <= to; b++) {
+                table[b * chartSize + state * NUM_OF_UPCARDS + column] = entry;
+            }
+        }
+    }
+
+    /**
+     * Fills in the hands that charts may leave out and checks that
+     * every hand the player can be asked about has a row. 21 always
+     * stands, and hard 4 and soft 12 (only reachable as pairs) hit.
+     *
+     * @param  chart  entries by state and upcard
+     */
+    private static void fillDefaults(byte[] chart)
+    {
+        List<String> missing = new ArrayList<>();
+
+        for (int state = 0; state < HandState.NUM_OF_STATES; state++) {
+            if (chart[state * NUM_OF_UPCARDS] != UNSET || HandState.isPair(state)) continue;
+
+            byte entry;
+            if (state >= HandState.HARD && state <= HandState.HARD + 4 || state == HandState.SOFT) {
+                entry = CHART_HIT;
+            } else if (state > HandState.HARD + 4 && state < HandState.HARD + 21
+                    || state > HandState.SOFT && state < HandState.SOFT + 9) {
+                missing.add(label(state));
+                continue;
+            } else {
+                // Never decided, or always resolved before a decision
+                entry = CHART_STAND;
+            }
+            Arrays.fill(chart, state * NUM_OF_UPCARDS, (state + 1) * NUM_OF_UPCARDS, entry);
+        }
+
+        // Unlisted pairs are played by their totals
+        for (int state = HandState.PAIR; state < HandState.BLACKJACK; state++) {
+            if (chart[state * NUM_OF_UPCARDS] != UNSET) continue;
+            System.arraycopy(chart, PAIR_TOTALS[HandState.rankOf(state)] * NUM_OF_UPCARDS,
+                    chart, state * NUM_OF_UPCARDS, NUM_OF_UPCARDS);
+        }
+
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Chart has no row for " + String.join(", ", missing));
+        }
+    }
+
+    /**
+     * Parses a hand label or range, such as H16, S13-18, P10 or PA,
+     * into the states it covers.
+     *
+     * @param  label  hand label
+     * @return        states of the hands
+     */
+    private static int[] parseHands(String label)
+    {
+        String upper = label.toUpperCase();
+        char kind = upper.isEmpty() ? ' ' : upper.charAt(0);
+        String[] bounds = upper.substring(Math.min(1, upper.length())).split("-");
+
+        int low;
+        int high;
+        try {
+            low = parseTotal(kind, bounds[0]);
+            high = bounds.length > 1 ? parseTotal(kind, bounds[1].replaceFirst("^" + kind, "")) : low;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unknown hand: " + label);
+        }
+
+        boolean isValid = bounds.length <= 2 && low <= high && switch (kind) {
+            case 'H' -> low >= 4 && high <= 21;
+            case 'S' -> low >= 12 && high <= 21;
+            case 'P' -> low >= 2 && high <= 11;
+            default -> false;
+        };
+        if (!isValid) {
+            throw new IllegalArgumentException("Unknown hand: " + label);
+        }
+
+        List<Integer> states = new ArrayList<>();
+        for (int total = low; total <= high; total++) {
+            if (kind == 'H') {
+                states.add(HandState.HARD + total);
+            } else if (kind == 'S') {
+                states.add(HandState.SOFT + total - 12);
+            } else {
+                // Every rank of the value, so P10 covers 10, J, Q and K
+                for (int rank = 0; rank < 13; rank++) {
+                    if (HandState.rankValue(rank) == total) states.add(HandState.PAIR + rank);
+                }
+            }
+        }
+        return states.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Parses a total in a hand label, where A is the value of an ace.
+     *
+     * @param  kind   H, S or P
+     * @param  total  number or A
+     * @return        total
+     */
+    private static int parseTotal(char kind, String total)
+    {
+        return kind == 'P' && total.equals("A") ? 11 : Integer.parseInt(total);
+    }
+
+    /**
+     * Parses an upcard, 2-10, J, Q, K or A, into its chart column.
+     *
+     * @param  upcard  upcard
+     * @return         column
+     */
+    private static int parseUpcard(String upcard)
+    {
+        String upper = upcard.toUpperCase();
+        for (int rank = 0; rank < 13; rank++) {
+            if (Card.RANKS[rank].equals(upper)) return UPCARD_COLUMNS[rank];
+        }
+        throw new IllegalArgumentException("Unknown upcard: " + upcard);
+    }
+
+    /**
+     * Parses an action and checks it is one the engine can take
+     * with the hand.
+     *
+     * @param  code   action code
+     * @param  state  state of the hand in the row
+     * @return        chart entry
+     */
+    private static byte parseEntry(String code, int state)
+    {
+        byte entry = UNSET;
+        for (byte i = 0; i < CHART_CODES.length; i++) {
+            if (CHART_CODES[i].equalsIgnoreCase(code)) entry = i;
+        }
+
+        if (entry == UNSET) {
+            throw new IllegalArgumentException("Unknown action: " + code);
+        } else if ((entry == CHART_SPLIT || entry == CHART_SURRENDER_OR_SPLIT)
+                && !HandState.isPair(state)) {
+            throw new IllegalArgumentException("Only pairs can split, not " + label(state));
+        } else if (HandState.score(state) == 21 && entry != CHART_STAND) {
+            // The engine resolves a hand as soon as it reaches 21
+            throw new IllegalArgumentException(label(state) + " always stands");
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the chart label of a hand state.
+     *
+     * @param  state  state of a hand
+     * @return        label such as H16, S18 or P8
+     */
+    public static String label(int state)
+    {
+        if (HandState.isPair(state)) {
+            int value = HandState.rankValue(HandState.rankOf(state));
+            return "P" + (value == 11 ? "A" : value);
+        }
+        return (HandState.isSoft(state) ? "S" : "H") + HandState.score(state);
+    }
+}
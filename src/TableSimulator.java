@@ -0,0 +1,259 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates a full table: every seat plays its own strategy, and all
+ * of them draw from one shoe in deal order, so each seat's cards
+ * depend on what the seats before it took. Simulator.simulate, by
+ * contrast, plays only the current hand.
+ *
+ * Rounds are split over workers that each play their own shoes, and
+ * the report gives each seat's EV along with how many rounds a shoe
+ * lasts and how many cards a round takes. A sweep plays the first
+ * strategy at tables of 1 seat up to the full table, to show how the
+ * number of seats changes those.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public class TableSimulator {
+    // Fraction of the shoe left at the cut card
+    private static final double PENETRATION = 0.25;
+
+    private final Strategy[] SEATS;
+    private final Rules rules;
+    private final int numOfDecks;
+
+    /**
+     * Results of a run
+     *
+     * @param  rounds        rounds played
+     * @param  shoes         shoes played, counting the last partial one
+     * @param  cards         cards dealt
+     * @param  net           net units won by each seat
+     * @param  sumOfSquares  sum of the squared round results of each seat
+     */
+    public record Result(long rounds, long shoes, long cards, double[] net, double[] sumOfSquares)
+    {
+        /**
+         * Gets a seat's expected net units per round.
+         *
+         * @param  seat  seat, 0 for the first dealt to
+         * @return       EV per round
+         */
+        public double ev(int seat)
+        {
+            return net[seat] / rounds;
+        }
+
+        /**
+         * Gets the standard error of a seat's EV.
+         *
+         * @param  seat  seat, 0 for the first dealt to
+         * @return       standard error
+         */
+        public double standardError(int seat)
+        {
+            double ev = ev(seat);
+            return Math.sqrt((sumOfSquares[seat] / rounds - ev * ev) / rounds);
+        }
+
+        /**
+         * Gets the average number of rounds dealt from a shoe.
+         *
+         * @return rounds per shoe
+         */
+        public double roundsPerShoe()
+        {
+            return (double) rounds / shoes;
+        }
+
+        /**
+         * Gets the average number of cards dealt in a round.
+         *
+         * @return cards per round
+         */
+        public double cardsPerRound()
+        {
+            return (double) cards / rounds;
+        }
+
+        /**
+         * Adds another run's results to this one's.
+         *
+         * @param  other  results over the same seats
+         * @return        combined results
+         */
+        Result plus(Result other)
+        {
+            double[] totalNet = net.clone();
+            double[] totalSquares = sumOfSquares.clone();
+            for (int seat = 0; seat < net.length; seat++) {
+                totalNet[seat] += other.net[seat];
+                totalSquares[seat] += other.sumOfSquares[seat];
+            }
+            return new Result(rounds + other.rounds, shoes + other.shoes, cards + other.cards,
+                    totalNet, totalSquares);
+        }
+    }
+
+    /**
+     * Constructor for a table
+     *
+     * @param  seats       strategy of each seat, in deal order
+     * @param  rules       table rules
+     * @param  numOfDecks  decks in the shoe
+     */
+    public TableSimulator(Strategy[] seats, Rules rules, int numOfDecks)
+    {
+        if (seats.length == 0) {
+            throw new IllegalArgumentException("A table needs at least 1 seat");
+        }
+
+        this.SEATS = seats.clone();
+        this.rules = rules;
+        this.numOfDecks = numOfDecks;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 4) {
+            System.out.println("Usage: TableSimulator (rounds) (rules) (decks) (chart file per seat...) [--sweep]");
+            return;
+        }
+
+        long rounds = Long.parseLong(args[0]);
+        Rules rules = Rules.parse(args[1]);
+        int numOfDecks = Integer.parseInt(args[2]);
+        boolean isSweep = args[args.length - 1].equals("--sweep");
+
+        List<Strategy> seats = new ArrayList<>();
+        for (int i = 3; i < args.length - (isSweep ? 1 : 0); i++) {
+            seats.add(Strategy.load(Paths.get(args[i])));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            long seed = System.nanoTime();
+            TableSimulator table = new TableSimulator(seats.toArray(new Strategy[0]), rules, numOfDecks);
+            Result result = table.run(rounds, seed, executor);
+
+            System.out.println(seats.size() + " seat(s), " + rules + ", " + numOfDecks + " decks");
+            for (int seat = 0; seat < seats.size(); seat++) {
+                System.out.printf("Seat %d (%s): EV %+.3f%% +/- %.3f%% per round%n", seat + 1,
+                        seats.get(seat), 100 * result.ev(seat), 100 * result.standardError(seat));
+            }
+            System.out.printf("%.1f rounds per shoe, %.2f cards per round%n",
+                    result.roundsPerShoe(), result.cardsPerRound());
+
+            if (isSweep) {
+                System.out.println("\nSeats  Rounds/shoe  Cards/round  Seat 1 EV");
+                for (int numOfSeats = 1; numOfSeats <= seats.size(); numOfSeats++) {
+                    Strategy[] same = new Strategy[numOfSeats];
+                    Arrays.fill(same, seats.get(0));
+                    Result sweep = new TableSimulator(same, rules, numOfDecks).run(rounds, seed, executor);
+                    System.out.printf("%5d  %11.1f  %11.2f  %+.3f%%%n", numOfSeats,
+                            sweep.roundsPerShoe(), sweep.cardsPerRound(), 100 * sweep.ev(0));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Mutators
+     */
+
+    /**
+     * Plays rounds over workers, each with its own shoes.
+     *
+     * @param  rounds    rounds to play
+     * @param  seed      seed for the workers' random number streams
+     * @param  executor  runs the workers
+     * @return           combined results
+     */
+    public Result run(long rounds, long seed, ExecutorService executor)
+    {
+        int numOfWorkers = Runtime.getRuntime().availableProcessors();
+        List<Callable<Result>> tasks = new ArrayList<>();
+        for (int i = 0; i < numOfWorkers; i++) {
+            long workerRounds = rounds / numOfWorkers + (i < rounds % numOfWorkers ? 1 : 0);
+            Rng rng = Rng.stream(seed, i);
+            tasks.add(() -> play(workerRounds, rng));
+        }
+
+        try {
+            Result total = null;
+            for (Future<Result> future : executor.invokeAll(tasks)) {
+                total = total == null ? future.get() : total.plus(future.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        }
+    }
+
+    /**
+     * Plays rounds at the table from fresh shoes.
+     *
+     * @param  rounds  rounds to play
+     * @param  rng     random number generator for the cards
+     * @return         results
+     */
+    public Result play(long rounds, Rng rng)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(numOfDecks);
+        game.setNumOfHands(SEATS.length);
+        game.setRng(rng);
+
+        double payout = rules.blackjackPayout();
+        double[] net = new double[SEATS.length];
+        double[] sumOfSquares = new double[SEATS.length];
+        double[] roundNet = new double[SEATS.length];
+        long shoes = 1;
+        long cards = 0;
+
+        for (long round = 0; round < rounds; round++) {
+            // Reshuffle to a full shoe at the cut card
+            if (game.getShoe().size() < PENETRATION * 52 * numOfDecks) {
+                game.fillShoe();
+                shoes++;
+            }
+
+            game.deal();
+            while (game.isRoundOngoing()) {
+                Strategy strategy = SEATS[game.getCurrentHand().getSeat()];
+                Strategy.act(game, strategy.decide(game));
+            }
+
+            // Count the cards on the table, since the shoe may have been refilled mid-round
+            cards += game.getDealerHand().getCards().size();
+
+            Arrays.fill(roundNet, 0);
+            for (Hand hand : game.getPlayerHands()) {
+                roundNet[hand.getSeat()] += Bankroll.netUnits(hand.determineHandResult(game.getDealerHand()),
+                        hand.getBetMultiplier(), payout) + hand.insuranceNetUnits(game.getDealerHand());
+                cards += hand.getCards().size();
+            }
+            for (int seat = 0; seat < SEATS.length; seat++) {
+                net[seat] += roundNet[seat];
+                sumOfSquares[seat] += roundNet[seat] * roundNet[seat];
+            }
+        }
+
+        return new Result(rounds, shoes, cards, net, sumOfSquares);
+    }
+}
@@ -0,0 +1,121 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs the engine's hot paths (dealing, drawing, scoring and the
+ * simulation loop) on a throwaway game so the JIT compiles them
+ * before the player needs them. Main starts it in the background
+ * while the settings prompts are shown.
+ *
+ * The main method measures startup and the latency of the first
+ * simulation, with or without a warm-up during a pretend prompt.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class Warmup {
+    private static final int ROUNDS = 5_000;
+    private static final int ITERATIONS = 200_000;
+
+    private Warmup()
+    {}
+
+    public static void main(String[] args)
+    {
+        long startup = System.currentTimeMillis()
+                - ManagementFactory.getRuntimeMXBean().getStartTime();
+        boolean isWarmedUp = args.length > 0 && args[0].equals("--warm-up");
+        long promptMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        // The player takes a moment to answer the prompts either way
+        Thread warmup = isWarmedUp ? start(Rules.STANDARD) : null;
+        try {
+            Thread.sleep(promptMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Blackjack game = new Blackjack();
+        game.deal();
+        while (!game.isRoundOngoing()) game.deal();
+
+        long first = timeSimulation(game, iterations);
+        long second = timeSimulation(game, iterations);
+
+        System.out.println("Startup to main: " + startup + " ms");
+        System.out.println("Warm-up: " + (warmup == null ? "off"
+                : warmup.isAlive() ? "still running" : "done"));
+        System.out.printf("First simulate (%d): %.2f ms%n", iterations, first / 1e6);
+        System.out.printf("Second simulate (%d): %.2f ms%n", iterations, second / 1e6);
+    }
+
+    /**
+     * Starts warming up in a low priority daemon thread.
+     *
+     * @param  rules  rules of the table that will be played
+     * @return        thread doing the warm-up
+     */
+    public static Thread start(Rules rules)
+    {
+        Thread thread = new Thread(() -> run(rules), "warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Plays and simulates rounds on a throwaway game.
+     *
+     * @param  rules  rules of the table that will be played
+     */
+    public static void run(Rules rules)
+    {
+        Blackjack game = new Blackjack(rules);
+        game.setNumOfDecks(6);
+        game.setRng(new Rng(1));
+
+        // Rounds through the same calls the prompt loop makes
+        int length = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            game.deal();
+            while (game.isRoundOngoing()) {
+                if (HandState.score(game.getCurrentHand().getState()) < 17) {
+                    game.hit();
+                } else {
+                    game.stand();
+                }
+                length += game.getRoundMetadata().length();
+            }
+            length += game.toString().length();
+        }
+
+        // One position simulated the way the simulate command does it
+        game.deal();
+        while (!game.isRoundOngoing()) game.deal();
+        game.getStateHash();
+        SimulationRun run = new SimulationRun(game, ITERATIONS, new Rng(2));
+        run.step(ITERATIONS);
+        length += SimulationSnapshot.of(run.getResult(), ITERATIONS).toReport().length();
+
+        // Keeps the work from being optimized away
+        if (length == 0) System.out.print("");
+    }
+
+    /**
+     * Times one simulation of the current hand, the way the simulate
+     * command runs it.
+     *
+     * @param  game        game to simulate
+     * @param  iterations  number of times to hit
+     * @return             nanoseconds taken
+     */
+    private static long timeSimulation(Blackjack game, int iterations)
+    {
+        long start = System.nanoTime();
+        SimulationRun run = new SimulationRun(game, iterations, new Rng());
+        run.step(iterations);
+        SimulationSnapshot.of(run.getResult(), iterations).toReport();
+        return System.nanoTime() - start;
+    }
+}
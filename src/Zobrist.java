@@ -0,0 +1,73 @@
+/**
+ * Random keys for hashing game states incrementally. Compositions
+ * (the ranks in a shoe or a hand) are hashed by adding one key per
+ * card, so drawing a card changes the hash with one subtraction or
+ * addition no matter the order the cards came in. Single features
+ * (dealer upcard, number of decks, rules) are XORed in.
+ *
+ * @author Daniel Kim
+ * @version 10-19-26
+ */
+public final class Zobrist {
+    private static final long[] SHOE_KEYS = new long[13];
+    private static final long[] HAND_KEYS = new long[13];
+    private static final long[] UPCARD_KEYS = new long[13];
+
+    static {
+        // Fixed seed, so hashes are the same in every process
+        Rng rng = new Rng(0x5EED_B1AC_4ACEL);
+        for (int rank = 0; rank < 13; rank++) {
+            SHOE_KEYS[rank] = rng.nextLong();
+            HAND_KEYS[rank] = rng.nextLong();
+            UPCARD_KEYS[rank] = rng.nextLong();
+        }
+    }
+
+    private Zobrist()
+    {}
+
+    /**
+     * Gets the key added for each card of a rank in the shoe.
+     *
+     * @param  rank  rank index (0-12)
+     * @return       key of the rank
+     */
+    public static long shoeKey(int rank)
+    {
+        return SHOE_KEYS[rank];
+    }
+
+    /**
+     * Gets the key added for each card of a rank in a hand.
+     *
+     * @param  rank  rank index (0-12)
+     * @return       key of the rank
+     */
+    public static long handKey(int rank)
+    {
+        return HAND_KEYS[rank];
+    }
+
+    /**
+     * Gets the key for the dealer's upcard.
+     *
+     * @param  rank  rank index (0-12) of the upcard
+     * @return       key of the upcard
+     */
+    public static long upcardKey(int rank)
+    {
+        return UPCARD_KEYS[rank];
+    }
+
+    /**
+     * Gets the key for a setting such as the number of decks.
+     *
+     * @param  kind   which setting
+     * @param  value  value of the setting
+     * @return        key of the setting
+     */
+    public static long settingKey(int kind, long value)
+    {
+        return Rng.mix(Rng.mix(kind + 1) ^ value);
+    }
+}